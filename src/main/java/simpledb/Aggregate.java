@@ -1,5 +1,6 @@
 package simpledb;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -7,7 +8,7 @@ import java.util.NoSuchElementException;
  * min). Note that we only support aggregates over a single column, grouped by a
  * single column.
  */
-public class Aggregate extends Operator {
+public class Aggregate extends Operator implements BatchIterator {
 
     private static final long serialVersionUID = 1L;
 
@@ -17,6 +18,11 @@ public class Aggregate extends Operator {
     private Aggregator.Op aop;
     private Aggregator agg;
     private DbIterator output;
+    /**
+     * The result when read in batches, and the next batch of it
+     */
+    private transient List<TupleBatch> batches;
+    private transient int nextBatch;
 
     /**
      * Constructor.
@@ -37,6 +43,13 @@ public class Aggregate extends Operator {
         this.aggsFieldNum = afield;
         this.groupFieldNum = gfield;
         this.aop = aop;
+    }
+
+    /**
+     * @return an empty aggregator for the fields and operator of this
+     * aggregate
+     */
+    private Aggregator newAggregator() {
         TupleDesc tupleDesc = child.getTupleDesc();
         Type aggFieldType = tupleDesc.getFieldType(aggsFieldNum);
         Type groupByFieldType = null;
@@ -44,9 +57,9 @@ public class Aggregate extends Operator {
             groupByFieldType = tupleDesc.getFieldType(groupFieldNum);
         }
         if (aggFieldType == Type.INT_TYPE) {
-            agg = new IntegerAggregator(groupFieldNum, groupByFieldType, aggsFieldNum, aop);
+            return new IntegerAggregator(groupFieldNum, groupByFieldType, aggsFieldNum, aop);
         } else {
-            agg = new StringAggregator(groupFieldNum, groupByFieldType, aggsFieldNum, aop);
+            return new StringAggregator(groupFieldNum, groupByFieldType, aggsFieldNum, aop);
         }
     }
 
@@ -73,7 +86,7 @@ public class Aggregate extends Operator {
         // some code goes here
         String name = null;
         if (groupFieldNum != Aggregator.NO_GROUPING) {
-            name = output.getTupleDesc().getFieldName(groupFieldNum);
+            name = getTupleDesc().getFieldName(0);
         }
         return name;
     }
@@ -92,7 +105,7 @@ public class Aggregate extends Operator {
      */
     public String aggregateFieldName() {
         // some code goes here
-        return output.getTupleDesc().getFieldName(aggsFieldNum);
+        return getTupleDesc().getFieldName(groupFieldNum == Aggregator.NO_GROUPING ? 0 : 1);
     }
 
     /**
@@ -106,12 +119,13 @@ public class Aggregate extends Operator {
     public void open() throws NoSuchElementException, DbException,
             TransactionAbortedException {
         // some code goes here
+        // the child is drained by the first fetchNext or nextBatch, so it
+        // can be read either way
+        agg = newAggregator();
+        output = null;
+        batches = null;
+        child.open();
         super.open();
-        while (child.hasNext()) {
-            agg.mergeTupleIntoGroup(child.next());
-        }
-        output = agg.iterator();
-        output.open();
     }
 
     /**
@@ -123,16 +137,47 @@ public class Aggregate extends Operator {
      */
     protected Tuple fetchNext() throws TransactionAbortedException, DbException {
         // some code goes here
+        if (output == null) {
+            while (child.hasNext()) {
+                agg.mergeTupleIntoGroup(child.next());
+            }
+            output = agg.iterator();
+            output.open();
+        }
         if (output.hasNext()) {
             return output.next();
         }
         return null;
     }
 
+    /**
+     * Returns the next batch of result rows, in the format of
+     * {@link #fetchNext()}. The rows of the child are read in batches and
+     * aggregated column by column, see {@link BatchAggregator}. The result
+     * is kept for rewind, so each call returns a view of it with its own
+     * selection, which the parent may narrow.
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (batches == null) {
+            BatchAggregator batchAgg = new BatchAggregator(groupFieldNum, aggsFieldNum,
+                    child.getTupleDesc().getFieldType(aggsFieldNum), aop);
+            BatchIterator in = BatchIterator.of(child);
+            TupleBatch batch;
+            while ((batch = in.nextBatch()) != null) {
+                batchAgg.merge(batch);
+            }
+            batches = batchAgg.result(getTupleDesc());
+            nextBatch = 0;
+        }
+        return nextBatch < batches.size() ? batches.get(nextBatch++).duplicate() : null;
+    }
+
     public void rewind() throws DbException, TransactionAbortedException {
         // some code goes here
 //        dbIterator.rewind();
-        output.rewind();
+        if (output != null)
+            output.rewind();
+        nextBatch = 0;
     }
 
     /**
@@ -148,26 +193,32 @@ public class Aggregate extends Operator {
      */
     public TupleDesc getTupleDesc() {
         TupleDesc desc = null;
-        if (aggsFieldNum != Aggregator.NO_GROUPING) { // when there is "Group By"
+        if (groupFieldNum != Aggregator.NO_GROUPING) { // when there is "Group By"
             Type[] types = new Type[2];
             String[] names = new String[2];
             types[0] = child.getTupleDesc().getFieldType(groupFieldNum);
-            types[1] = child.getTupleDesc().getFieldType(aggsFieldNum);
+            types[1] = Type.INT_TYPE;
             names[0] = child.getTupleDesc().getFieldName(groupFieldNum);
             names[1] = aop.toString() + " (" + child.getTupleDesc().getFieldName(aggsFieldNum) + ")";
             desc = new TupleDesc(types, names);
         } else { // when there is no grouping
             Type[] type = new Type[1];
             String[] name = new String[1];
-            type[0] = child.getTupleDesc().getFieldType(aggsFieldNum);
+            type[0] = Type.INT_TYPE;
             name[0] = aop.toString() + " (" + child.getTupleDesc().getFieldName(aggsFieldNum) + ")";
+            desc = new TupleDesc(type, name);
         }
         return desc;
     }
 
     public void close() {
         // some code goes here
-        output.close();
+        if (output != null)
+            output.close();
+        output = null;
+        agg = null;
+        batches = null;
+        child.close();
         super.close();
     }
 
@@ -0,0 +1,145 @@
+package simpledb;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BatchAggregator computes an aggregate over the rows of TupleBatches, for
+ * {@link Aggregate#nextBatch()}. Without grouping it keeps a count, sum,
+ * minimum and maximum in local variables over the int column of each batch;
+ * with grouping it keeps them per group value. Like the Aggregators, it
+ * supports all operators on INT_TYPE fields and COUNT on other fields.
+ */
+public class BatchAggregator implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int gfield;
+    private final int afield;
+    private final Aggregator.Op op;
+
+    // the state of the aggregate without grouping
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    /**
+     * Count, sum, minimum and maximum of each group, in order of first
+     * appearance
+     */
+    private final Map<Field, long[]> groups = new LinkedHashMap<Field, long[]>();
+
+    /**
+     * @param gfield the group by field, or {@link Aggregator#NO_GROUPING}
+     * @param afield the aggregate field
+     * @param afieldType the type of the aggregate field
+     * @param op     the aggregation operator
+     * @throws IllegalArgumentException if op is not COUNT and the aggregate
+     *                                  field is not an int field
+     */
+    public BatchAggregator(int gfield, int afield, Type afieldType, Aggregator.Op op) {
+        if (afieldType != Type.INT_TYPE && op != Aggregator.Op.COUNT)
+            throw new IllegalArgumentException("only support COUNT");
+        this.gfield = gfield;
+        this.afield = afield;
+        this.op = op;
+    }
+
+    /**
+     * Add the selected rows of a batch to the aggregate.
+     */
+    public void merge(TupleBatch batch) {
+        int n = batch.numRows();
+        boolean countOnly = op == Aggregator.Op.COUNT;
+        if (gfield == Aggregator.NO_GROUPING) {
+            count += n;
+            if (countOnly)
+                return;
+            int[] values = batch.getIntColumn(afield);
+            long s = sum;
+            int lo = min;
+            int hi = max;
+            for (int k = 0; k < n; k++) {
+                int v = values[batch.row(k)];
+                s += v;
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+            sum = s;
+            min = lo;
+            max = hi;
+            return;
+        }
+        int[] values = countOnly ? null : batch.getIntColumn(afield);
+        for (int k = 0; k < n; k++) {
+            int row = batch.row(k);
+            Field key = batch.getField(gfield, row);
+            long[] state = groups.get(key);
+            if (state == null) {
+                state = new long[]{0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE};
+                groups.put(key, state);
+            }
+            state[0]++;
+            if (!countOnly) {
+                int v = values[row];
+                state[1] += v;
+                state[2] = Math.min(state[2], v);
+                state[3] = Math.max(state[3], v);
+            }
+        }
+    }
+
+    private int value(long count, long sum, long min, long max) {
+        switch (op) {
+        case COUNT:
+            return (int) count;
+        case SUM:
+            return (int) sum;
+        case AVG:
+            return (int) (sum / count);
+        case MIN:
+            return (int) min;
+        case MAX:
+            return (int) max;
+        }
+        throw new UnsupportedOperationException("unknown operator " + op);
+    }
+
+    /**
+     * Returns the result rows: (group value, aggregate value) per group, or
+     * a single (aggregate value) without grouping. Without grouping and
+     * without rows, there is a result row only for COUNT.
+     *
+     * @param td the schema of the result rows
+     * @return batches of at most {@link TupleBatch#DEFAULT_CAPACITY} rows
+     */
+    public List<TupleBatch> result(TupleDesc td) {
+        List<TupleBatch> batches = new ArrayList<TupleBatch>();
+        TupleBatch batch = new TupleBatch(td);
+        if (gfield == Aggregator.NO_GROUPING) {
+            if (count > 0 || op == Aggregator.Op.COUNT) {
+                batch.add(value(count, sum, min, max));
+                batches.add(batch);
+            }
+            return batches;
+        }
+        for (Map.Entry<Field, long[]> group : groups.entrySet()) {
+            if (batch.isFull()) {
+                batches.add(batch);
+                batch = new TupleBatch(td);
+            }
+            long[] state = group.getValue();
+            Tuple t = new Tuple(td);
+            t.setField(0, group.getKey());
+            t.setInt(1, value(state[0], state[1], state[2], state[3]));
+            batch.add(t);
+        }
+        if (batch.size() > 0)
+            batches.add(batch);
+        return batches;
+    }
+}
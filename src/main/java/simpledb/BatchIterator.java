@@ -0,0 +1,96 @@
+package simpledb;
+
+import java.io.Serializable;
+
+/**
+ * BatchIterator is the batch-at-a-time counterpart of {@link DbIterator}:
+ * instead of one tuple per call, {@link #nextBatch()} returns a
+ * {@link TupleBatch} of up to {@link TupleBatch#DEFAULT_CAPACITY} rows,
+ * which the caller processes column by column. SeqScan, Filter, Project and
+ * Aggregate implement both interfaces; an open operator should be read
+ * through one of them only.
+ * <p>
+ * Operators that do not implement BatchIterator are read in batches through
+ * {@link #of(DbIterator)}, and a BatchIterator is read tuple by tuple
+ * through a {@link BatchTupleIterator}, so both kinds of operators compose.
+ */
+public interface BatchIterator extends Serializable {
+
+    /**
+     * Opens the iterator. This must be called before any of the other methods.
+     *
+     * @throws DbException when there are problems opening/accessing the database.
+     */
+    void open() throws DbException, TransactionAbortedException;
+
+    /**
+     * Returns the next batch of rows. The batch may be reused by the next
+     * call, so its rows must be consumed before calling nextBatch again.
+     *
+     * @return a batch of at least one selected row, or null if there are no
+     * more rows
+     */
+    TupleBatch nextBatch() throws DbException, TransactionAbortedException;
+
+    /**
+     * Resets the iterator to the start.
+     */
+    void rewind() throws DbException, TransactionAbortedException;
+
+    /**
+     * @return the schema of the rows of the batches
+     */
+    TupleDesc getTupleDesc();
+
+    /**
+     * Closes the iterator.
+     */
+    void close();
+
+    /**
+     * Returns child itself if it implements BatchIterator, and otherwise an
+     * adapter that collects its tuples into batches. The adapter opens,
+     * rewinds and closes child when it is opened, rewound and closed.
+     *
+     * @param child the operator to read in batches
+     */
+    static BatchIterator of(DbIterator child) {
+        if (child instanceof BatchIterator)
+            return (BatchIterator) child;
+        return new BatchIterator() {
+            private static final long serialVersionUID = 1L;
+
+            private TupleBatch batch;
+
+            @Override
+            public void open() throws DbException, TransactionAbortedException {
+                child.open();
+            }
+
+            @Override
+            public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+                if (batch == null)
+                    batch = new TupleBatch(child.getTupleDesc());
+                batch.clear();
+                while (!batch.isFull() && child.hasNext())
+                    batch.add(child.next());
+                return batch.size() == 0 ? null : batch;
+            }
+
+            @Override
+            public void rewind() throws DbException, TransactionAbortedException {
+                child.rewind();
+            }
+
+            @Override
+            public TupleDesc getTupleDesc() {
+                return child.getTupleDesc();
+            }
+
+            @Override
+            public void close() {
+                child.close();
+            }
+        };
+    }
+}
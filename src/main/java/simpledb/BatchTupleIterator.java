@@ -0,0 +1,64 @@
+package simpledb;
+
+/**
+ * BatchTupleIterator is an operator that returns the selected rows of the
+ * batches of a {@link BatchIterator} one tuple at a time, so operators that
+ * only implement DbIterator can consume a batch pipeline.
+ */
+public class BatchTupleIterator extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    private BatchIterator child;
+    private TupleBatch batch;
+    private int next;
+
+    /**
+     * @param child the batch operator to read
+     */
+    public BatchTupleIterator(BatchIterator child) {
+        this.child = child;
+    }
+
+    public TupleDesc getTupleDesc() {
+        return child.getTupleDesc();
+    }
+
+    public void open() throws DbException, TransactionAbortedException {
+        child.open();
+        batch = null;
+        super.open();
+    }
+
+    public void close() {
+        super.close();
+        batch = null;
+        child.close();
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child.rewind();
+        batch = null;
+    }
+
+    protected Tuple fetchNext() throws DbException, TransactionAbortedException {
+        while (batch == null || next >= batch.numRows()) {
+            batch = child.nextBatch();
+            next = 0;
+            if (batch == null)
+                return null;
+        }
+        return batch.getTuple(batch.row(next++));
+    }
+
+    @Override
+    public DbIterator[] getChildren() {
+        return child instanceof DbIterator ? new DbIterator[]{(DbIterator) child} : new DbIterator[0];
+    }
+
+    @Override
+    public void setChildren(DbIterator[] children) {
+        if (children.length > 0 && children[0] instanceof BatchIterator)
+            child = (BatchIterator) children[0];
+    }
+}
@@ -1,8 +1,19 @@
 package simpledb;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * BufferPool manages the reading and writing of pages into memory from
@@ -12,36 +23,236 @@ import java.util.Map;
  * The BufferPool is also responsible for locking;  when a transaction fetches
  * a page, BufferPool checks that the transaction has the appropriate
  * locks to read/write the page.
+ * <p>
+ * The page table is a ConcurrentHashMap, so requests for resident pages do
+ * not block each other. Misses are serialized per lock stripe (pages hash to
+ * one of {@link #NUM_STRIPES} stripes), so a page is read from disk only once
+ * even if several threads ask for it, while misses on different stripes read
+ * in parallel. Hits take no lock at all: they are recorded in a concurrent
+ * access buffer, which is replayed into the eviction policy under the
+ * BufferPool monitor before the policy is asked for a victim. Only the
+ * installation or removal of frames is done under the monitor; dirty
+ * victims are written back after it is released, and kept aside until
+ * then so that a concurrent miss on them does not read a stale page.
  */
 public class BufferPool {
     /**
-     * Bytes per page, including header.
+     * Bytes per page, including header. This is the default page size of a
+     * DbFile and the size of a frame of the buffer pool; files with other
+     * page sizes set their own with {@link DbFile#getPageSize}.
      */
     public static final int PAGE_SIZE = 4096;
+    /**
+     * The largest page size a DbFile may use.
+     */
+    public static final int MAX_PAGE_SIZE = 65536;
     /**
      * Default number of pages passed to the constructor. This is used by
      * other classes. BufferPool should use the numPages argument to the
      * constructor instead.
      */
     public static final int DEFAULT_PAGES = 50;
+    /**
+     * Default fraction of the pool a table must exceed before sequential
+     * scans over it use a private BufferRing. By default only tables that
+     * cannot fit in the pool at all are scanned through a ring, so repeated
+     * scans of smaller tables are still served from the pool.
+     */
+    public static final double DEFAULT_SCAN_RING_THRESHOLD = 1.0;
+    /**
+     * Default number of frames in a scan ring.
+     */
+    public static final int DEFAULT_SCAN_RING_SIZE = 8;
+    /**
+     * Number of lock stripes used to serialize reads of missing pages.
+     */
+    public static final int NUM_STRIPES = 64;
+    /**
+     * Number of accesses the access buffer holds per frame of the pool.
+     * When it is full, the oldest access is dropped, so a workload of hits
+     * only does not grow it without bound.
+     */
+    public static final int ACCESSES_PER_FRAME = 4;
+    /**
+     * Prefetch reads are served by a single background thread, which keeps
+     * read-ahead I/O sequential and in page order.
+     */
+    private static final ExecutorService PREFETCH_EXECUTOR =
+            Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "simpledb-prefetch");
+                t.setDaemon(true);
+                return t;
+            });
     private final int maxBufSize;
-    private Map<PageId, Page> buf;
+    private final long maxBytes;
+    /**
+     * Bytes of pages in the page table, guarded by the BufferPool monitor
+     */
+    private long residentBytes = 0;
+    private final ConcurrentHashMap<PageId, Page> buf;
+    private final Object[] stripes;
+    private final ConcurrentHashMap<PageId, Future<Page>> inFlight = new ConcurrentHashMap<>();
+    private final EvictionPolicy policy;
+    /**
+     * Hits not yet reported to the policy, oldest first
+     */
+    private final ConcurrentLinkedQueue<PageId> accesses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingAccesses = new AtomicInteger();
+    private final int maxPendingAccesses;
+    /**
+     * Dirty pages that were evicted and are being written back
+     */
+    private final ConcurrentHashMap<PageId, Page> writeBack = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private volatile double scanRingThreshold = DEFAULT_SCAN_RING_THRESHOLD;
+    private volatile int scanRingSize = DEFAULT_SCAN_RING_SIZE;
 
     /**
-     * Creates a BufferPool that caches up to numPages pages.
+     * Creates a BufferPool that caches up to numPages pages. The pool holds
+     * numPages frames of PAGE_SIZE bytes; a page of a file with a larger
+     * page size takes up as many frames as it needs.
      *
      * @param numPages maximum number of pages in this buffer pool.
      */
     public BufferPool(int numPages) {
+        this(numPages, EvictionPolicy.Kind.fromSystemProperty().create(numPages));
+    }
+
+    /**
+     * Creates a BufferPool that caches up to numPages pages and uses the
+     * given policy to choose pages to evict.
+     *
+     * @param numPages maximum number of pages in this buffer pool.
+     * @param policy   the eviction policy of this buffer pool.
+     */
+    public BufferPool(int numPages, EvictionPolicy policy) {
         // some code goes here
         this.maxBufSize = numPages;
-        buf = new HashMap<>();
+        this.maxBytes = (long) numPages * PAGE_SIZE;
+        this.policy = policy;
+        this.maxPendingAccesses = Math.max(64, numPages * ACCESSES_PER_FRAME);
+        buf = new ConcurrentHashMap<>(numPages * 2, 0.75f, NUM_STRIPES);
+        stripes = new Object[NUM_STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
     }
 
     public BufferPool() {
         this(DEFAULT_PAGES);
     }
 
+    /**
+     * @return the eviction policy used by this buffer pool
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of getPage requests served by a resident page
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of getPage requests that had to read the page
+     * from its DbFile
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of bytes held by the pages resident in this buffer
+     * pool. A page that has only been read costs one page of memory; a page
+     * that has been dirtied also holds its before image.
+     * @see Page#getMemorySize
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Page p : buf.values()) {
+            bytes += p.getMemorySize();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reset the hit and miss counters, e.g. between two traces.
+     */
+    public void resetStats() {
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * @return the maximum number of pages of PAGE_SIZE bytes in this buffer
+     * pool
+     */
+    public int getNumPages() {
+        return maxBufSize;
+    }
+
+    /**
+     * @return the number of frames of PAGE_SIZE bytes not used by resident
+     * pages
+     */
+    public synchronized int getNumFreePages() {
+        return (int) Math.max(0, (maxBytes - residentBytes) / PAGE_SIZE);
+    }
+
+    /**
+     * @return the number of bytes of this buffer pool not used by resident
+     * pages
+     */
+    public synchronized long getNumFreeBytes() {
+        return Math.max(0, maxBytes - residentBytes);
+    }
+
+    /**
+     * Configure when sequential scans bypass the shared pool.
+     *
+     * @param threshold a scan over a table larger than threshold times the
+     *                  size of the pool gets a private ring; use a value above the table
+     *                  size ratio (e.g. Double.MAX_VALUE) to disable rings
+     * @param ringSize  the number of frames in each ring
+     */
+    public void setScanRingPolicy(double threshold, int ringSize) {
+        if (ringSize < 1)
+            throw new IllegalArgumentException("ringSize must be positive");
+        this.scanRingThreshold = threshold;
+        this.scanRingSize = ringSize;
+    }
+
+    /**
+     * Returns a BufferRing for a sequential scan over a table with the given
+     * number of pages, or null if the table is small enough to be scanned
+     * through the shared pool.
+     *
+     * @param tablePages the number of pages in the scanned table
+     */
+    public BufferRing getScanRing(int tablePages) {
+        return getScanRing(tablePages, PAGE_SIZE);
+    }
+
+    /**
+     * Returns a BufferRing for a sequential scan over a table with the given
+     * number of pages of the given size, or null if the table is small
+     * enough to be scanned through the shared pool.
+     *
+     * @param tablePages the number of pages in the scanned table
+     * @param pageSize   the page size of the scanned table
+     */
+    public BufferRing getScanRing(int tablePages, int pageSize) {
+        if ((long) tablePages * pageSize <= scanRingThreshold * maxBytes)
+            return null;
+        return new BufferRing(Math.min(scanRingSize, tablePages));
+    }
+
     /**
      * Retrieve the specified page with the associated permissions.
      * Will acquire a lock and may block if that lock is held by another
@@ -61,19 +272,205 @@ public class BufferPool {
             throws TransactionAbortedException, DbException {
 
         Page page = buf.get(pid);
+        if (page != null) {
+            hit(pid);
+            return page;
+        }
 
-        if (page != null) return page;
+        synchronized (stripeFor(pid)) {
+            // another thread may have read the page while we were waiting
+            page = buf.get(pid);
+            if (page != null) {
+                hit(pid);
+                return page;
+            }
+            missCount.incrementAndGet();
 
-        if (buf.size() == maxBufSize) {
-            evictPage();
+            Page readPage = readPage(pid);
+            install(readPage);
+            return readPage;
         }
+    }
 
+    /**
+     * Read a page that is not resident, using the result of a prefetch if
+     * one was issued for it.
+     */
+    private Page readPage(PageId pid) {
+        // an evicted page that is still being written back is newer than
+        // the one on disk
+        Page evicted = writeBack.get(pid);
+        if (evicted != null)
+            return evicted;
+        Future<Page> prefetched = inFlight.remove(pid);
+        if (prefetched != null) {
+            try {
+                Page page = prefetched.get();
+                if (page != null)
+                    return page;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | CancellationException e) {
+                // fall through and read the page ourselves
+            }
+        }
         DbFile dbFile = Database.getCatalog().getDbFile(pid.getTableId());
+        return dbFile.readPage(pid);
+    }
+
+    /**
+     * Start reading the specified page in the background. The page is kept
+     * aside until a getPage call for it arrives, which then installs it (in
+     * the pool, or in the ring of the requesting scan) without waiting for
+     * the disk. Nothing is done if the page is resident or already being
+     * read.
+     *
+     * @param pid the ID of the page that is expected to be requested soon
+     * @return the pending read, or null if no read was started
+     * @see ReadAheadPrefetcher
+     */
+    public Future<Page> prefetchPage(final PageId pid) {
+        final DbFile dbFile = Database.getCatalog().getDbFile(pid.getTableId());
+        FutureTask<Page> read = new FutureTask<>(() -> dbFile.readPage(pid));
+        // registered under the stripe lock, so a miss on the page either
+        // finds the read or has already installed the page
+        synchronized (stripeFor(pid)) {
+            if (buf.containsKey(pid) || writeBack.containsKey(pid) || inFlight.containsKey(pid))
+                return null;
+            inFlight.put(pid, read);
+        }
+        PREFETCH_EXECUTOR.execute(read);
+        return read;
+    }
+
+    /**
+     * Abandon a read started by {@link #prefetchPage} that will not be
+     * consumed after all.
+     *
+     * @param pid  the ID of the prefetched page
+     * @param read the pending read returned by prefetchPage
+     */
+    public void cancelPrefetch(PageId pid, Future<Page> read) {
+        if (inFlight.remove(pid, read))
+            read.cancel(false);
+    }
+
+    private Object stripeFor(PageId pid) {
+        return stripes[(pid.hashCode() & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * Record a hit in the access buffer without taking any lock.
+     */
+    private void hit(PageId pid) {
+        hitCount.incrementAndGet();
+        accesses.add(pid);
+        if (pendingAccesses.incrementAndGet() > maxPendingAccesses && accesses.poll() != null) {
+            pendingAccesses.decrementAndGet();
+        }
+    }
+
+    /**
+     * Report the buffered hits to the policy, in the order they happened.
+     * Must be called under the BufferPool monitor.
+     */
+    private void drainAccesses() {
+        PageId pid;
+        while ((pid = accesses.poll()) != null) {
+            pendingAccesses.decrementAndGet();
+            policy.pageAccessed(pid);
+        }
+    }
+
+    /**
+     * Make room for page and put it into the page table, then write back
+     * the dirty pages evicted to make room.
+     */
+    private void install(Page page) throws DbException {
+        writeBack(admit(page));
+    }
+
+    /**
+     * Evict pages until page fits and put it into the page table.
+     *
+     * @return the evicted pages that must be written back
+     */
+    private synchronized List<Page> admit(Page page) throws DbException {
+        drainAccesses();
+        List<Page> dirty = new ArrayList<>();
+        int size = frameSize(page.getId());
+        // a page larger than the whole pool is still admitted, alone
+        while (!buf.isEmpty() && residentBytes + size > maxBytes) {
+            Page victim = evictPage();
+            if (victim != null)
+                dirty.add(victim);
+        }
+        buf.put(page.getId(), page);
+        residentBytes += size;
+        policy.pageAdmitted(page.getId());
+        return dirty;
+    }
+
+    /**
+     * Write evicted dirty pages to disk, outside of the BufferPool monitor.
+     * A page that cannot be written is marked dirty again and stays in the
+     * write back set, from which a later miss reinstalls it.
+     */
+    private void writeBack(List<Page> pages) throws DbException {
+        DbException failure = null;
+        for (Page page : pages) {
+            PageId pid = page.getId();
+            TransactionId dirtier = page.isDirty();
+            page.markDirty(false, null);
+            try {
+                Database.getCatalog().getDbFile(pid.getTableId()).writePage(page);
+                writeBack.remove(pid, page);
+            } catch (IOException e) {
+                page.markDirty(true, dirtier);
+                if (failure == null)
+                    failure = new DbException("could not flush page " + pid + " before eviction: " + e.getMessage());
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * @return the number of bytes the page with the given id takes in the
+     * pool, which is the page size of its file
+     */
+    private int frameSize(PageId pid) {
+        return Database.getCatalog().getDbFile(pid.getTableId()).getPageSize();
+    }
+
+    /**
+     * Retrieve the specified page like {@link #getPage(TransactionId, PageId, Permissions)},
+     * but keep it in the given ring instead of the shared pool if it is not
+     * resident yet. Pages that are already resident are served from the pool
+     * and keep their place in it. The ring is ignored for anything but
+     * READ_ONLY requests.
+     *
+     * @param tid  the ID of the transaction requesting the page
+     * @param pid  the ID of the requested page
+     * @param perm the requested permissions on the page
+     * @param ring the private ring of the requesting scan, or null
+     */
+    public Page getPage(TransactionId tid, PageId pid, Permissions perm, BufferRing ring)
+            throws TransactionAbortedException, DbException {
+        if (ring == null || perm != Permissions.READ_ONLY || buf.containsKey(pid)) {
+            return getPage(tid, pid, perm);
+        }
 
-        Page readPage = dbFile.readPage(pid);
-        Page put = buf.put(pid, readPage);
-//        System.out.println("put data:"+put);
-        return readPage;
+        Page page = ring.get(pid);
+        if (page != null) {
+            hitCount.incrementAndGet();
+            return page;
+        }
+        missCount.incrementAndGet();
+
+        page = readPage(pid);
+        ring.add(page);
+        return page;
     }
 
     /**
@@ -167,9 +564,9 @@ public class BufferPool {
      * break simpledb if running in NO STEAL mode.
      */
     public synchronized void flushAllPages() throws IOException {
-        // some code goes here
-        // not necessary for proj1
-
+        for (PageId pid : buf.keySet()) {
+            flushPage(pid);
+        }
     }
 
     /**
@@ -179,8 +576,16 @@ public class BufferPool {
      * cache.
      */
     public synchronized void discardPage(PageId pid) {
-        // some code goes here
-        // not necessary for proj1
+        drainAccesses();
+        writeBack.remove(pid);
+        Future<Page> prefetched = inFlight.remove(pid);
+        if (prefetched != null) {
+            prefetched.cancel(false);
+        }
+        if (buf.remove(pid) != null) {
+            residentBytes -= frameSize(pid);
+            policy.pageRemoved(pid);
+        }
     }
 
     /**
@@ -189,8 +594,13 @@ public class BufferPool {
      * @param pid an ID indicating the page to flush
      */
     private synchronized void flushPage(PageId pid) throws IOException {
-        // some code goes here
-        // not necessary for proj1
+        Page page = buf.get(pid);
+        if (page == null || page.isDirty() == null) {
+            return;
+        }
+        DbFile dbFile = Database.getCatalog().getDbFile(pid.getTableId());
+        dbFile.writePage(page);
+        page.markDirty(false, null);
     }
 
     /**
@@ -202,12 +612,37 @@ public class BufferPool {
     }
 
     /**
-     * Discards a page from the buffer pool.
-     * Flushes the page to disk to ensure dirty pages are updated on disk.
+     * Discards a page from the buffer pool. A dirty page is moved to the
+     * write back set; the caller writes it to disk once it has released the
+     * BufferPool monitor.
+     *
+     * @return the evicted page if it was dirty, or null
      */
-    private synchronized void evictPage() throws DbException {
-        // some code goes here
-        // not necessary for proj1
+    private synchronized Page evictPage() throws DbException {
+        while (true) {
+            Iterator<PageId> victims = policy.victims();
+            if (!victims.hasNext()) {
+                throw new DbException("no page can be evicted from the buffer pool");
+            }
+            PageId victim = victims.next();
+            Page page = buf.get(victim);
+            if (page == null) {
+                // the policy tracks a page that is not resident: forget it
+                // and try the next victim, without freeing any bytes
+                policy.pageRemoved(victim);
+                continue;
+            }
+            boolean dirty = page.isDirty() != null;
+            if (dirty) {
+                // before removing it, so a miss always finds one or the other
+                writeBack.put(victim, page);
+            }
+            if (buf.remove(victim) != null) {
+                residentBytes -= frameSize(victim);
+            }
+            policy.pageRemoved(victim);
+            return dirty ? page : null;
+        }
     }
 
 }
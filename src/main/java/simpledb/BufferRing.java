@@ -0,0 +1,65 @@
+package simpledb;
+
+/**
+ * BufferRing is a small, private set of page frames handed to a large
+ * sequential scan (in the spirit of PostgreSQL's BufferAccessStrategy).
+ * Pages the scan reads that are not already resident in the shared
+ * BufferPool are kept in the ring instead, and the ring recycles its own
+ * frames round robin, so a scan over a table much larger than the pool does
+ * not flush the pages other queries are working on.
+ * <p>
+ * A ring belongs to a single iterator and is only used for READ_ONLY
+ * requests; it is not thread safe.
+ *
+ * @see BufferPool#getScanRing
+ */
+public class BufferRing {
+
+    private final Page[] frames;
+    private int next = 0;
+
+    /**
+     * @param numFrames the number of pages this ring can hold
+     */
+    public BufferRing(int numFrames) {
+        if (numFrames < 1)
+            throw new IllegalArgumentException("a ring needs at least one frame");
+        frames = new Page[numFrames];
+    }
+
+    /**
+     * @return the number of frames in this ring
+     */
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * @return the page with the given id if it is held by this ring, or null
+     */
+    public Page get(PageId pid) {
+        for (Page p : frames) {
+            if (p != null && p.getId().equals(pid))
+                return p;
+        }
+        return null;
+    }
+
+    /**
+     * Put a page into the next frame of the ring, replacing the page that
+     * has been in the ring the longest.
+     */
+    public void add(Page p) {
+        frames[next] = p;
+        next = (next + 1) % frames.length;
+    }
+
+    /**
+     * Drop every page held by this ring.
+     */
+    public void clear() {
+        for (int i = 0; i < frames.length; i++)
+            frames[i] = null;
+        next = 0;
+    }
+}
@@ -6,6 +6,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 
+import com.jcraft.jzlib.JZlib;
+
 /**
  * The Catalog keeps track of all available tables in the database and their
  * associated schemas.
@@ -15,6 +17,11 @@ import java.util.*;
  */
 public class Catalog {
 
+    /**
+     * Compression level of tables without the compressed option
+     */
+    private static final int NOT_COMPRESSED = -2;
+
     private final Map<Integer, DbFile> id2file = new HashMap<>();
     private final Map<Integer, String> id2name = new HashMap<>();
     private final Map<Integer, String> id2pkey = new HashMap<>();
@@ -60,6 +67,19 @@ public class Catalog {
         addTable(file, (UUID.randomUUID()).toString());
     }
 
+    /**
+     * Remove a table from the catalog, e.g. a temporary table that is no
+     * longer used. Its file is left alone.
+     *
+     * @param tableid the id of the table, as specified by the DbFile.getId()
+     *                function passed to addTable
+     */
+    public void removeTable(int tableid) {
+        id2file.remove(tableid);
+        id2name.remove(tableid);
+        id2pkey.remove(tableid);
+    }
+
     /**
      * Return the id of the table with a specified name,
      *
@@ -133,6 +153,23 @@ public class Catalog {
 
     /**
      * Reads the schema from a file and creates the appropriate tables in the database.
+     * <p>
+     * Each line describes one table as <code>name (field type [pk], ...) [options]</code>.
+     * The optional, whitespace separated table options are:
+     * <ul>
+     * <li><code>mmap</code> -- read the table through a {@link MappedHeapFile}</li>
+     * <li><code>slotted</code> -- store the table in {@link SlottedPage}s, with
+     * variable length strings</li>
+     * <li><code>pax</code> -- store the table in columnar {@link PaxPage}s</li>
+     * <li><code>compressed</code> -- deflate the pages of the table, see
+     * {@link CompressedHeapFile}; <code>compressed=N</code> uses compression
+     * level N from 0 to 9</li>
+     * <li><code>dict</code> -- store the table in {@link DictionaryPage}s, with
+     * dictionary and run-length encoded strings</li>
+     * <li><code>pagesize=N</code> -- use pages of N bytes (N may end in
+     * <code>k</code> for kilobytes, e.g. <code>pagesize=16k</code>) instead of
+     * {@link BufferPool#PAGE_SIZE}</li>
+     * </ul>
      *
      * @param catalogFile
      */
@@ -171,10 +208,48 @@ public class Catalog {
                         }
                     }
                 }
+                boolean mmap = false;
+                int level = NOT_COMPRESSED;
+                PageLayout layout = PageLayout.HEAP;
+                int pageSize = BufferPool.PAGE_SIZE;
+                String options = line.substring(line.indexOf(")") + 1).trim();
+                for (String option : options.split("\\s+")) {
+                    if (option.isEmpty())
+                        continue;
+                    if (option.equals("mmap"))
+                        mmap = true;
+                    else if (option.equals("slotted"))
+                        layout = PageLayout.SLOTTED;
+                    else if (option.equals("pax"))
+                        layout = PageLayout.PAX;
+                    else if (option.equals("dict"))
+                        layout = PageLayout.DICTIONARY;
+                    else if (option.equals("compressed"))
+                        level = JZlib.Z_DEFAULT_COMPRESSION;
+                    else if (option.startsWith("compressed="))
+                        level = parseLevel(option.substring("compressed=".length()));
+                    else if (option.startsWith("pagesize="))
+                        pageSize = parsePageSize(option.substring("pagesize=".length()));
+                    else {
+                        System.out.println("Unknown table option " + option);
+                        System.exit(0);
+                    }
+                }
                 Type[] typeAr = types.toArray(new Type[0]);
                 String[] namesAr = names.toArray(new String[0]);
                 TupleDesc t = new TupleDesc(typeAr, namesAr);
-                HeapFile tabHf = new HeapFile(new File(baseFolder + "/" + name + ".dat"), t);
+                File dataFile = new File(baseFolder + "/" + name + ".dat");
+                if (mmap && level != NOT_COMPRESSED) {
+                    System.out.println("Table " + name + " cannot be both mmap and compressed");
+                    System.exit(0);
+                }
+                HeapFile tabHf;
+                if (mmap)
+                    tabHf = new MappedHeapFile(dataFile, t, layout, pageSize, MappedHeapFile.DEFAULT_SEGMENT_SIZE);
+                else if (level != NOT_COMPRESSED)
+                    tabHf = new CompressedHeapFile(dataFile, t, layout, pageSize, level);
+                else
+                    tabHf = new HeapFile(dataFile, t, layout, pageSize);
                 addTable(tabHf, name, primaryKey);
                 System.out.println("Added table : " + name + " with schema " + t);
             }
@@ -186,5 +261,41 @@ public class Catalog {
             System.exit(0);
         }
     }
-}
 
+    /**
+     * Parse the value of a compressed table option, exiting on invalid
+     * values like the rest of loadSchema.
+     */
+    private static int parseLevel(String value) {
+        try {
+            int level = Integer.parseInt(value);
+            if (level >= JZlib.Z_NO_COMPRESSION && level <= JZlib.Z_BEST_COMPRESSION)
+                return level;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.out.println("Invalid compression level " + value + ", must be between 0 and 9");
+        System.exit(0);
+        return JZlib.Z_DEFAULT_COMPRESSION;
+    }
+
+    /**
+     * Parse the value of a pagesize table option, exiting on invalid values
+     * like the rest of loadSchema.
+     */
+    private static int parsePageSize(String value) {
+        try {
+            int pageSize = value.endsWith("k") || value.endsWith("K")
+                    ? Integer.parseInt(value.substring(0, value.length() - 1)) * 1024
+                    : Integer.parseInt(value);
+            if (pageSize > 0 && Integer.bitCount(pageSize) == 1 && pageSize <= BufferPool.MAX_PAGE_SIZE)
+                return pageSize;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.out.println("Invalid page size " + value + ", must be a power of two of at most "
+                + BufferPool.MAX_PAGE_SIZE + " bytes");
+        System.exit(0);
+        return BufferPool.PAGE_SIZE;
+    }
+}
@@ -0,0 +1,118 @@
+package simpledb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CLOCK (second chance) eviction. Every resident page sits in a frame on a
+ * circular list together with a reference bit that is set whenever the page
+ * is accessed. To pick a victim the clock hand sweeps the frames, clearing
+ * set reference bits and offering the first page whose bit was already clear.
+ */
+public class ClockEvictionPolicy implements EvictionPolicy {
+
+    private final ArrayList<PageId> frames = new ArrayList<>();
+    private final ArrayList<Boolean> referenced = new ArrayList<>();
+    private final Map<PageId, Integer> frameOf = new HashMap<>();
+    private final Deque<Integer> freeFrames = new ArrayDeque<>();
+    private int hand = 0;
+
+    @Override
+    public String getName() {
+        return "CLOCK";
+    }
+
+    @Override
+    public void pageAdmitted(PageId pid) {
+        if (frameOf.containsKey(pid)) {
+            pageAccessed(pid);
+            return;
+        }
+        int frame;
+        if (freeFrames.isEmpty()) {
+            frame = frames.size();
+            frames.add(pid);
+            referenced.add(Boolean.TRUE);
+        } else {
+            frame = freeFrames.poll();
+            frames.set(frame, pid);
+            referenced.set(frame, Boolean.TRUE);
+        }
+        frameOf.put(pid, frame);
+    }
+
+    @Override
+    public void pageAccessed(PageId pid) {
+        Integer frame = frameOf.get(pid);
+        if (frame != null)
+            referenced.set(frame, Boolean.TRUE);
+    }
+
+    @Override
+    public void pageRemoved(PageId pid) {
+        Integer frame = frameOf.remove(pid);
+        if (frame != null) {
+            frames.set(frame, null);
+            referenced.set(frame, Boolean.FALSE);
+            freeFrames.add(frame);
+        }
+    }
+
+    @Override
+    public Iterator<PageId> victims() {
+        return new Iterator<PageId>() {
+            // two full sweeps are enough to clear every reference bit and
+            // offer every resident page once
+            private int stepsLeft = 2 * frames.size();
+            private final Set<PageId> offered = new HashSet<>();
+            private PageId next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null)
+                    return true;
+                while (offered.size() < frameOf.size() && stepsLeft > 0) {
+                    stepsLeft--;
+                    int frame = hand;
+                    hand = (hand + 1) % frames.size();
+                    PageId pid = frames.get(frame);
+                    if (pid == null || offered.contains(pid))
+                        continue;
+                    if (referenced.get(frame)) {
+                        referenced.set(frame, Boolean.FALSE);
+                        continue;
+                    }
+                    offered.add(pid);
+                    next = pid;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public PageId next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                PageId result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public void clear() {
+        frames.clear();
+        referenced.clear();
+        frameOf.clear();
+        freeFrames.clear();
+        hand = 0;
+    }
+}
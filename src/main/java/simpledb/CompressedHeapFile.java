@@ -0,0 +1,346 @@
+package simpledb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.jcraft.jzlib.JZlib;
+import com.jcraft.jzlib.ZStream;
+
+/**
+ * CompressedHeapFile is a HeapFile whose pages are deflated (with the
+ * bundled jzlib) when they are written and inflated when they are read. It
+ * is meant for cold, archival tables, where reading fewer bytes from disk
+ * is worth the CPU time spent on inflating them.
+ * <p>
+ * Compressed pages have different sizes, so the data file is a sequence of
+ * deflated pages and a page offset index, stored next to it in a file with
+ * the suffix <code>.idx</code>, records the offset and compressed length of
+ * every page as a long and an int. A page of length 0 is an empty page. A
+ * rewritten page is stored in place if it still fits there and appended to
+ * the data file otherwise; the space it used before is not reclaimed.
+ * <p>
+ * Pages are handed to the BufferPool decompressed and take frames of their
+ * uncompressed size there. In addition the file keeps the inflated bytes of
+ * the last {@link #DEFAULT_CACHE_PAGES} pages it read, so a page evicted
+ * from the pool and read again soon is not inflated again.
+ * <p>
+ * Enable it for a table by adding the <code>compressed</code> option (or
+ * <code>compressed=N</code> for compression level N) after the schema in the
+ * catalog file.
+ *
+ * @see Catalog#loadSchema
+ */
+public class CompressedHeapFile extends HeapFile {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of inflated pages kept by each file
+     */
+    public static final int DEFAULT_CACHE_PAGES = 64;
+
+    /**
+     * Bytes per page in the index: offset and compressed length
+     */
+    static final int INDEX_ENTRY_SIZE = 12;
+
+    private final File indexFile;
+    private final int level;
+    private final int cachePages;
+
+    private transient FileChannel indexWriteChannel;
+    private transient long[] offsets;
+    private transient int[] lengths;
+    private transient int numPages;
+    private transient long dataEnd;
+    private transient Map<Integer, byte[]> cache;
+
+    /**
+     * Constructs a compressed heap file with heap pages of the default size,
+     * compressed at the default level.
+     *
+     * @param f  the file that stores the compressed pages; the page index is
+     *           stored in f with the suffix <code>.idx</code>
+     * @param td the schema of the table
+     */
+    public CompressedHeapFile(File f, TupleDesc td) {
+        this(f, td, PageLayout.HEAP, BufferPool.PAGE_SIZE, JZlib.Z_DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param f        the file that stores the compressed pages; the page
+     *                 index is stored in f with the suffix <code>.idx</code>
+     * @param td       the schema of the table
+     * @param layout   the format of the pages of the file
+     * @param pageSize the size of the uncompressed pages in bytes
+     * @param level    the compression level, from 0 (none) to 9 (best), or
+     *                 -1 for the default level
+     */
+    public CompressedHeapFile(File f, TupleDesc td, PageLayout layout, int pageSize, int level) {
+        this(f, td, layout, pageSize, level, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * @param cachePages the number of inflated pages to keep, or 0 for none
+     * @see #CompressedHeapFile(File, TupleDesc, PageLayout, int, int)
+     */
+    public CompressedHeapFile(File f, TupleDesc td, PageLayout layout, int pageSize, int level, int cachePages) {
+        super(f, td, layout, pageSize);
+        if (level < JZlib.Z_DEFAULT_COMPRESSION || level > JZlib.Z_BEST_COMPRESSION)
+            throw new IllegalArgumentException("compression level must be between -1 and 9, not " + level);
+        if (cachePages < 0)
+            throw new IllegalArgumentException("cache size must not be negative");
+        this.indexFile = new File(f.getPath() + ".idx");
+        this.level = level;
+        this.cachePages = cachePages;
+    }
+
+    /**
+     * @return the file holding the page offset index
+     */
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * @return the compression level pages are written with
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Read the page index on first use. The index is opened read-only, so
+     * tables that are only read may be read-only; it is opened for writing
+     * by the first write, see {@link #getWritableIndexChannel()}. An empty
+     * data file needs no index yet.
+     *
+     * @throws java.nio.file.NoSuchFileException if the data file holds
+     *                                           pages but the index is missing
+     */
+    private void loadIndex() throws IOException {
+        if (offsets != null)
+            return;
+        ByteBuffer index = ByteBuffer.allocate(0);
+        if (indexFile.exists() || getFile().length() > 0) {
+            try (FileChannel c = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+                index = ByteBuffer.allocate((int) (c.size() / INDEX_ENTRY_SIZE) * INDEX_ENTRY_SIZE);
+                while (index.hasRemaining() && c.read(index, index.position()) >= 0)
+                    ;
+            }
+            index.flip();
+        }
+        numPages = index.remaining() / INDEX_ENTRY_SIZE;
+        offsets = new long[Math.max(16, numPages)];
+        lengths = new int[offsets.length];
+        for (int i = 0; i < numPages; i++) {
+            offsets[i] = index.getLong();
+            lengths[i] = index.getInt();
+            dataEnd = Math.max(dataEnd, offsets[i] + lengths[i]);
+        }
+        cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > cachePages;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of pages in this file, according to the page index.
+     */
+    @Override
+    public synchronized int numPages() {
+        try {
+            loadIndex();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read page index " + indexFile.getName(), e);
+        }
+        return numPages;
+    }
+
+    /**
+     * @return the number of bytes all pages take in the data file
+     */
+    public synchronized long getCompressedSize() throws IOException {
+        loadIndex();
+        long size = 0;
+        for (int i = 0; i < numPages; i++)
+            size += lengths[i];
+        return size;
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public Page readPage(PageId pid) {
+        int pageNo = pid.pageNumber();
+        if (pageNo < 0 || pageNo >= numPages()) {
+            throw new IllegalArgumentException("page " + pageNo + " does not exist in " + getFile().getName());
+        }
+        try {
+            // the pages never modify their bytes, so they can share the
+            // cached array
+            return getLayout().createPage((HeapPageId) pid, ByteBuffer.wrap(pageData(pageNo)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read page " + pageNo + " from file " + getFile().getName(), e);
+        }
+    }
+
+    /**
+     * @return the inflated bytes of the given page
+     */
+    private byte[] pageData(int pageNo) throws IOException {
+        long offset;
+        int length;
+        synchronized (this) {
+            // reopen the index if the file was closed
+            loadIndex();
+            byte[] data = cache.get(pageNo);
+            if (data != null)
+                return data;
+            offset = offsets[pageNo];
+            length = lengths[pageNo];
+        }
+        byte[] data = new byte[getPageSize()];
+        if (length > 0) {
+            byte[] compressed = new byte[length];
+            readFully(ByteBuffer.wrap(compressed), offset);
+            inflate(compressed, data);
+        }
+        synchronized (this) {
+            // a concurrent write of the page wins; a concurrent close()
+            // drops the index and cache
+            if (offsets != null && offsets[pageNo] == offset && lengths[pageNo] == length)
+                cache.put(pageNo, data);
+        }
+        return data;
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public synchronized void writePage(Page page) throws IOException {
+        loadIndex();
+        int pageNo = page.getId().pageNumber();
+        byte[] data = page.getPageData();
+        byte[] compressed = deflate(data, level);
+
+        if (pageNo >= offsets.length) {
+            int capacity = Math.max(pageNo + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        long offset;
+        if (pageNo < numPages && compressed.length <= lengths[pageNo]) {
+            offset = offsets[pageNo];
+        } else {
+            offset = dataEnd;
+            dataEnd += compressed.length;
+        }
+        writeFully(getWritableChannel(), ByteBuffer.wrap(compressed), offset);
+
+        // pages between the old end and this one are empty
+        int first = Math.min(pageNo, numPages);
+        ByteBuffer index = ByteBuffer.allocate((pageNo + 1 - first) * INDEX_ENTRY_SIZE);
+        for (int i = first; i < pageNo; i++) {
+            index.putLong(0).putInt(0);
+        }
+        index.putLong(offset).putInt(compressed.length);
+        index.flip();
+        writeFully(getWritableIndexChannel(), index, (long) first * INDEX_ENTRY_SIZE);
+
+        offsets[pageNo] = offset;
+        lengths[pageNo] = compressed.length;
+        numPages = Math.max(numPages, pageNo + 1);
+        cache.put(pageNo, data);
+    }
+
+    /**
+     * Returns the channel the index is written through, opening it, and
+     * creating the index of a new table, on the first write.
+     */
+    private FileChannel getWritableIndexChannel() throws IOException {
+        if (indexWriteChannel == null || !indexWriteChannel.isOpen())
+            indexWriteChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE);
+        return indexWriteChannel;
+    }
+
+    private static void writeFully(FileChannel c, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining())
+            c.write(buf, position + buf.position());
+    }
+
+    /**
+     * Closes the data and index files and drops the cached pages.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (indexWriteChannel != null) {
+            indexWriteChannel.close();
+            indexWriteChannel = null;
+        }
+        offsets = null;
+        lengths = null;
+        cache = null;
+        dataEnd = 0;
+        super.close();
+    }
+
+    /**
+     * Deflate a page.
+     *
+     * @param data  the bytes to compress
+     * @param level the compression level
+     * @return the compressed bytes
+     */
+    static byte[] deflate(byte[] data, int level) throws IOException {
+        ZStream z = new ZStream();
+        // deflate never grows its input by more than 5 bytes per 16 KB block
+        // plus a header
+        byte[] out = new byte[data.length + 5 * (data.length / 16384 + 1) + 16];
+        z.next_in = data;
+        z.next_in_index = 0;
+        z.avail_in = data.length;
+        z.next_out = out;
+        z.next_out_index = 0;
+        z.avail_out = out.length;
+        try {
+            if (z.deflateInit(level) != JZlib.Z_OK || z.deflate(JZlib.Z_FINISH) != JZlib.Z_STREAM_END)
+                throw new IOException("cannot deflate page: " + z.msg);
+            return Arrays.copyOf(out, (int) z.total_out);
+        } finally {
+            z.deflateEnd();
+        }
+    }
+
+    /**
+     * Inflate a page.
+     *
+     * @param compressed the bytes written by {@link #deflate}
+     * @param out        the array to inflate into, of the page size
+     */
+    static void inflate(byte[] compressed, byte[] out) throws IOException {
+        ZStream z = new ZStream();
+        z.next_in = compressed;
+        z.next_in_index = 0;
+        z.avail_in = compressed.length;
+        z.next_out = out;
+        z.next_out_index = 0;
+        z.avail_out = out.length;
+        try {
+            if (z.inflateInit() != JZlib.Z_OK || z.inflate(JZlib.Z_FINISH) != JZlib.Z_STREAM_END
+                    || z.total_out != out.length)
+                throw new IOException("corrupt compressed page: " + z.msg);
+        } finally {
+            z.inflateEnd();
+        }
+    }
+}
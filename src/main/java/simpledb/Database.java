@@ -21,6 +21,7 @@ public class Database {
 
     private Database() {
         _catalog = new Catalog();
+        // the eviction policy is read from the simpledb.evictionPolicy property
         _bufferpool = new BufferPool(BufferPool.DEFAULT_PAGES);
         try {
             _logfile = new LogFile(new File(LOGFILENAME));
@@ -62,6 +63,15 @@ public class Database {
         return _instance._bufferpool;
     }
 
+    /**
+     * Create a new instance of the buffer pool that evicts pages with the
+     * given policy and return it
+     */
+    public static BufferPool resetBufferPool(int pages, EvictionPolicy policy) {
+        _instance._bufferpool = new BufferPool(pages, policy);
+        return _instance._bufferpool;
+    }
+
     //reset the database, used for unit tests only.
     public static void reset() {
         _instance = new Database();
@@ -3,6 +3,7 @@ package simpledb;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The interface for database files on disk. Each table is represented by a
@@ -63,6 +64,37 @@ public interface DbFile extends Serializable {
      */
     DbFileIterator iterator(TransactionId tid);
 
+    /**
+     * Returns an iterator over the tuples stored in this DbFile that satisfy
+     * all of the given predicates. Files that can test predicates before
+     * they decode tuples override this; by default the tuples of
+     * {@link #iterator(TransactionId)} are filtered.
+     *
+     * @param predicates predicates on the fields of this file
+     * @return an iterator over the matching tuples stored in this DbFile.
+     */
+    default DbFileIterator iterator(TransactionId tid, List<Predicate> predicates) {
+        return iterator(tid, predicates, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples stored in this DbFile that satisfy
+     * all of the given predicates, holding only the given fields. Files that
+     * can decode single fields override this; by default whole tuples are
+     * filtered and then projected.
+     *
+     * @param predicates predicates on the fields of this file
+     * @param columns    the indexes of the fields to return, or null for all
+     * @return an iterator over the matching tuples stored in this DbFile,
+     * with the fields given by {@link TupleDesc#project}
+     */
+    default DbFileIterator iterator(TransactionId tid, List<Predicate> predicates, int[] columns) {
+        if (predicates.isEmpty() && columns == null)
+            return iterator(tid);
+        return new FilteredDbFileIterator(iterator(tid), predicates, columns,
+                columns == null ? null : TupleDesc.project(getTupleDesc(), columns));
+    }
+
     /**
      * Returns a unique ID used to identify this DbFile in the Catalog. This id
      * can be used to look up the table via {@link Catalog#getDbFile} and
@@ -84,4 +116,13 @@ public interface DbFile extends Serializable {
      * @return TupleDesc of this DbFile.
      */
     TupleDesc getTupleDesc();
+
+    /**
+     * Returns the size in bytes of the pages of this file.
+     *
+     * @return the page size of this file
+     */
+    default int getPageSize() {
+        return BufferPool.PAGE_SIZE;
+    }
 }
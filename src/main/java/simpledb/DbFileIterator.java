@@ -32,6 +32,20 @@ public interface DbFileIterator extends Serializable {
     public Tuple next()
             throws DbException, TransactionAbortedException, NoSuchElementException;
 
+    /**
+     * Appends the next tuples to batch until it is full or there are no
+     * more. Iterators over pages override this to decode the pages straight
+     * into the columns of the batch; by default tuples are copied from
+     * next(). An open iterator should be read either with next() or with
+     * this method, not both.
+     *
+     * @param batch an empty batch of the schema of the returned tuples
+     */
+    default void fill(TupleBatch batch) throws DbException, TransactionAbortedException {
+        while (!batch.isFull() && hasNext())
+            batch.add(next());
+    }
+
     /**
      * Resets the iterator to the start.
      *
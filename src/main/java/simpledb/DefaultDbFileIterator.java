@@ -1,26 +1,67 @@
 package simpledb;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 public class DefaultDbFileIterator implements DbFileIterator {
 
     private HeapFile dbFile;
     private TransactionId tid;
+    private Evaluator filter;
+    private int[] columns;
+    private TupleDesc projected;
     private int pageCursor = 0;
     private Iterator<Tuple> tupleIterable;
+    /**
+     * The page read by fill, and the position in it to continue from
+     */
+    private TuplePage batchPage;
+    private int batchPosition;
+    private BufferRing ring;
+    private ReadAheadPrefetcher prefetcher;
 
     public DefaultDbFileIterator(HeapFile dbFile, TransactionId tid) {
+        this(dbFile, tid, Collections.<Predicate>emptyList(), null);
+    }
+
+    /**
+     * An iterator over the tuples of dbFile that satisfy all predicates,
+     * which the pages test before they decode a tuple, holding the fields
+     * given by columns (all of them if columns is null).
+     */
+    public DefaultDbFileIterator(HeapFile dbFile, TransactionId tid, List<Predicate> predicates, int[] columns) {
         this.dbFile = dbFile;
         this.tid = tid;
+        // compiled once for the scan; every page tests it on its slots
+        if (!predicates.isEmpty())
+            filter = Evaluator.compile(predicates);
+        this.columns = columns;
+        if (columns != null)
+            projected = TupleDesc.project(dbFile.getTupleDesc(), columns);
     }
 
     @Override
     public void open() throws DbException, TransactionAbortedException {
         try {
-            HeapPage page = (HeapPage) Database.getBufferPool().getPage(tid, new HeapPageId(dbFile.getId(), pageCursor), Permissions.READ_ONLY);
-            tupleIterable = page.iterator();
+            pageCursor = 0;
+            batchPage = null;
+            batchPosition = 0;
+            // large tables are scanned through a private ring so they do not
+            // flush the shared pool
+            BufferPool pool = Database.getBufferPool();
+            ring = pool.getScanRing(dbFile.numPages(), dbFile.getPageSize());
+            if (prefetcher != null) {
+                prefetcher.cancel();
+            }
+            prefetcher = new ReadAheadPrefetcher(pool, dbFile.getId(), dbFile.numPages());
+            // an empty table has no page to read
+            if (dbFile.numPages() == 0)
+                tupleIterable = Collections.<Tuple>emptyIterator();
+            else
+                tupleIterable = readPage(pageCursor).iterator(filter, columns, projected);
             Debug.log("Database.getBufferPool().getPage");
         } catch (TransactionAbortedException | DbException e) {
             e.printStackTrace();
@@ -32,15 +73,19 @@ public class DefaultDbFileIterator implements DbFileIterator {
         if (tupleIterable == null) {
             return false;
         }
-        if (!tupleIterable.hasNext() && pageCursor >= dbFile.numPages() - 1) {
-            return false;
-        }
-        if (!tupleIterable.hasNext()) {
+        // skip over empty pages
+        while (!tupleIterable.hasNext()) {
+            if (pageCursor >= dbFile.numPages() - 1) {
+                return false;
+            }
             pageCursor++;
-            tupleIterable = ((HeapPage) Database.getBufferPool().getPage(tid, new HeapPageId(dbFile.getId(), pageCursor), Permissions.READ_ONLY)).iterator();
+            tupleIterable = readPage(pageCursor).iterator(filter, columns, projected);
         }
-//        System.out.println("pageCursor:"+pageCursor);
-        return tupleIterable.hasNext();
+        return true;
+    }
+
+    private TuplePage readPage(int pageNo) throws DbException, TransactionAbortedException {
+        return (TuplePage) prefetcher.getPage(tid, pageNo, ring);
     }
 
     @Override
@@ -51,6 +96,29 @@ public class DefaultDbFileIterator implements DbFileIterator {
         return tupleIterable.next();
     }
 
+    /**
+     * Appends the next tuples to batch, decoding them from the pages
+     * straight into its columns, see {@link TuplePage#fill}.
+     */
+    @Override
+    public void fill(TupleBatch batch) throws DbException, TransactionAbortedException {
+        if (tupleIterable == null)
+            return;
+        while (!batch.isFull()) {
+            if (batchPage == null) {
+                if (pageCursor >= dbFile.numPages())
+                    return;
+                batchPage = readPage(pageCursor);
+                batchPosition = 0;
+            }
+            batchPosition = batchPage.fill(batch, batchPosition, filter, columns);
+            if (batchPosition < 0) {
+                batchPage = null;
+                pageCursor++;
+            }
+        }
+    }
+
     @Override
     public void rewind() throws DbException, TransactionAbortedException {
         open();
@@ -62,6 +130,12 @@ public class DefaultDbFileIterator implements DbFileIterator {
             Database.getBufferPool().transactionComplete(tid);
             pageCursor = 0;
             tupleIterable = null;
+            batchPage = null;
+            ring = null;
+            if (prefetcher != null) {
+                prefetcher.cancel();
+                prefetcher = null;
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
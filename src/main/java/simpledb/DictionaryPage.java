@@ -0,0 +1,756 @@
+package simpledb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * DictionaryPage is a columnar page layout that compresses STRING_TYPE
+ * columns. Each string column of a page is stored either plain, as the
+ * length and bytes of every value without padding, or, when that is
+ * smaller, as a dictionary of the distinct values of the page followed by
+ * run-length encoded dictionary codes. A column of a few distinct values,
+ * like a status code or a country name, then takes a few bytes per run of
+ * equal values instead of 132 bytes per tuple, and a page holds many times
+ * more tuples than a HeapPage.
+ * <p>
+ * The page starts with the number of slots, the offset of every column
+ * and a slot bitmap as in HeapPage. An INT_TYPE column is an encoding byte
+ * followed by one int per slot. A plain string column is an encoding byte,
+ * the length of the value of every slot as an unsigned short and then the
+ * bytes of all values. A dictionary column is an encoding byte, the number
+ * of entries as an unsigned short, each entry as length and bytes, the
+ * number of runs as an int and then every run as code and length, both
+ * unsigned shorts. Empty slots continue the run before them.
+ * <p>
+ * Pages read from disk are decoded lazily: a column is only parsed when a
+ * value of it is needed, and tuples are only built when asked for. Dictionary
+ * entries are decoded once and shared by all tuples that use them, and
+ * {@link #iterator(Predicate)} answers equality predicates on a dictionary
+ * column by comparing codes, without decoding any strings. A page that is
+ * modified is decoded completely; the encoding of every column is chosen
+ * again when it is written.
+ *
+ * @see PageLayout#DICTIONARY
+ */
+public class DictionaryPage implements TuplePage {
+
+    /**
+     * Run lengths and dictionary codes are unsigned shorts.
+     */
+    static final int MAX_SLOTS = 65535;
+    static final byte PLAIN = 0;
+    static final byte DICTIONARY = 1;
+
+    final HeapPageId pid;
+    final TupleDesc td;
+    final int pageSize;
+
+    /**
+     * The bytes the page was created from; never modified. A read-only
+     * buffer is replaced by a copy before the page is first modified or
+     * overwritten on disk, see {@link #detach()}
+     */
+    volatile ByteBuffer data;
+    final int[] columnOffsets;
+    private final StringColumn[] columns;
+
+    int numSlots;
+    SlotBitmap header;
+
+    /**
+     * Decoded tuples; a null entry of a used slot means the tuple has not
+     * been decoded from data yet. Once the page is modified, every tuple is
+     * decoded and data is only used for the before image.
+     */
+    Tuple[] tuples;
+    boolean modified = false;
+
+    // upper bounds of the encoded size of each string column, kept while
+    // the page is modified
+    private int[] plainBytes;
+    private int[] dictionaryBytes;
+    private int[] runs;
+    private ArrayList<HashSet<String>> dictionaries;
+
+    /**
+     * The before image, or null while it is still equal to data
+     */
+    byte[] oldData;
+    TransactionId dirtier;
+
+    private static final byte[] ZEROS = new byte[BufferPool.MAX_PAGE_SIZE];
+
+    /**
+     * Create a DictionaryPage from a set of bytes of data read from disk. A
+     * page of zero bytes is an empty page.
+     *
+     * @see #DictionaryPage(HeapPageId, ByteBuffer)
+     */
+    public DictionaryPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a DictionaryPage from a buffer holding the bytes of the page.
+     * The page keeps the buffer (not a copy), so the bytes must not change
+     * while the page is in use; the buffer's position and limit are left
+     * alone.
+     */
+    public DictionaryPage(HeapPageId id, ByteBuffer data) throws IOException {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.data = data.slice();
+        this.pageSize = this.data.remaining();
+        if (pageSize < headerSize(td.numFields(), 0))
+            throw new IOException("page " + id.pageNumber() + " of " + pageSize + " bytes is too small");
+
+        numSlots = this.data.getInt(0);
+        if (numSlots < 0 || numSlots > MAX_SLOTS || headerSize(td.numFields(), numSlots) > pageSize)
+            throw new IOException("page " + id.pageNumber() + " has a corrupt header");
+        columnOffsets = new int[td.numFields()];
+        for (int j = 0; j < columnOffsets.length; j++) {
+            columnOffsets[j] = this.data.getInt(4 + 4 * j);
+            if (numSlots > 0 && (columnOffsets[j] <= 0 || columnOffsets[j] >= pageSize))
+                throw new IOException("page " + id.pageNumber() + " has a corrupt column offset");
+        }
+        header = SlotBitmap.read(this.data, 4 + 4 * columnOffsets.length, numSlots);
+        columns = new StringColumn[td.numFields()];
+        tuples = new Tuple[numSlots];
+    }
+
+    /**
+     * @return the size of the header of a page with the given number of
+     * fields and slots
+     */
+    private static int headerSize(int numFields, int numSlots) {
+        return 4 + 4 * numFields + SlotBitmap.byteLength(numSlots);
+    }
+
+    /**
+     * A decoded string column of data.
+     */
+    private final class StringColumn {
+        final boolean dictionary;
+        /**
+         * Plain: offset of the bytes of each slot, and the end offset
+         */
+        int[] starts;
+        /**
+         * Dictionary: the entries, and the end slot (exclusive) and code of
+         * every run
+         */
+        StringField[] entries;
+        int[] runEnds;
+        int[] runCodes;
+
+        StringColumn(int offset) {
+            dictionary = data.get(offset) == DICTIONARY;
+            int pos = offset + 1;
+            if (!dictionary) {
+                starts = new int[numSlots + 1];
+                int bytes = pos + 2 * numSlots;
+                for (int i = 0; i < numSlots; i++) {
+                    starts[i] = bytes;
+                    bytes += data.getShort(pos + 2 * i) & 0xFFFF;
+                }
+                starts[numSlots] = bytes;
+            } else {
+                entries = new StringField[data.getShort(pos) & 0xFFFF];
+                pos += 2;
+                for (int c = 0; c < entries.length; c++) {
+                    int len = data.getShort(pos) & 0xFFFF;
+                    entries[c] = new StringField(readString(pos + 2, len), Type.STRING_LEN);
+                    pos += 2 + len;
+                }
+                int count = data.getInt(pos);
+                pos += 4;
+                runEnds = new int[count];
+                runCodes = new int[count];
+                int end = 0;
+                for (int r = 0; r < count; r++) {
+                    runCodes[r] = data.getShort(pos) & 0xFFFF;
+                    end += data.getShort(pos + 2) & 0xFFFF;
+                    runEnds[r] = end;
+                    pos += 4;
+                }
+            }
+        }
+
+        /**
+         * @return the run that holds slot
+         */
+        int run(int slot) {
+            int lo = 0;
+            int hi = runEnds.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runEnds[mid] > slot)
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            return lo;
+        }
+
+        Field get(int slot) {
+            if (dictionary)
+                return entries[runCodes[run(slot)]];
+            return new StringField(readString(starts[slot], starts[slot + 1] - starts[slot]), Type.STRING_LEN);
+        }
+
+        /**
+         * @return the dictionary code of value, or -1 if it is not in the
+         * dictionary
+         */
+        int codeOf(Field value) {
+            for (int c = 0; c < entries.length; c++) {
+                if (entries[c].equals(value))
+                    return c;
+            }
+            return -1;
+        }
+    }
+
+    private String readString(int offset, int len) {
+        byte[] bs = new byte[len];
+        for (int i = 0; i < len; i++)
+            bs[i] = data.get(offset + i);
+        return new String(bs);
+    }
+
+    private StringColumn stringColumn(int j) {
+        if (columns[j] == null)
+            columns[j] = new StringColumn(columnOffsets[j]);
+        return columns[j];
+    }
+
+    /**
+     * Decode the tuple in the given slot from the page data.
+     */
+    private Tuple readTuple(int slotId) {
+        Tuple t = new Tuple(td);
+        t.setRecordId(new RecordId(pid, slotId));
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.INT_TYPE)
+                t.setInt(j, data.getInt(columnOffsets[j] + 1 + 4 * slotId));
+            else
+                t.setField(j, stringColumn(j).get(slotId));
+        }
+        return t;
+    }
+
+    /**
+     * @return the PageId associated with this page.
+     */
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /**
+     * Return a view of this page before it was modified
+     * -- used by recovery
+     */
+    public DictionaryPage getBeforeImage() {
+        try {
+            if (oldData == null)
+                return new DictionaryPage(pid, data);
+            return new DictionaryPage(pid, oldData);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public void setBeforeImage() {
+        oldData = getPageData();
+    }
+
+    /**
+     * Replace data by a private copy if it is a read-only buffer, e.g. a
+     * view into a memory mapped file. Called before the page is modified,
+     * and by the file before it overwrites the page: once it does, the view
+     * holds the new bytes, while the tuples this page has not decoded yet
+     * and its before image must still come from the old ones. Pages that
+     * are only read keep the view.
+     */
+    @Override
+    public void detach() {
+        if (data.isReadOnly()) {
+            byte[] copy = new byte[pageSize];
+            data.duplicate().get(copy);
+            data = ByteBuffer.wrap(copy);
+        }
+    }
+
+    /**
+     * Marks this page as dirty/not dirty and record that transaction
+     * that did the dirtying. The before image is copied out of the original
+     * bytes the first time the page is dirtied.
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        if (dirty && dirtier == null && oldData == null) {
+            detach();
+            oldData = new byte[pageSize];
+            data.duplicate().get(oldData);
+        }
+        dirtier = dirty ? tid : null;
+    }
+
+    /**
+     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
+     */
+    public TransactionId isDirty() {
+        return dirtier;
+    }
+
+    public int getMemorySize() {
+        return oldData == null ? pageSize : pageSize + oldData.length;
+    }
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public boolean isSlotUsed(int i) {
+        return i < numSlots && header.get(i);
+    }
+
+    /**
+     * Returns the tuple in the given slot, decoding it if this has not
+     * happened yet.
+     *
+     * @param slotId the slot to read
+     * @return the tuple in that slot, or null if the slot is empty
+     */
+    public Tuple getTuple(int slotId) {
+        if (!isSlotUsed(slotId))
+            return null;
+        Tuple t = tuples[slotId];
+        if (t == null) {
+            t = readTuple(slotId);
+            tuples[slotId] = t;
+        }
+        return t;
+    }
+
+    /**
+     * @return true if string field j of the page bytes is dictionary encoded
+     */
+    public boolean isDictionaryEncoded(int j) {
+        return !modified && numSlots > 0 && td.getFieldType(j) == Type.STRING_TYPE
+                && stringColumn(j).dictionary;
+    }
+
+    /**
+     * Decode every tuple and set up the size bounds, before the first
+     * modification.
+     */
+    private void materialize() {
+        if (modified)
+            return;
+        for (int i = header.nextUsed(0); i >= 0; i = header.nextUsed(i + 1))
+            getTuple(i);
+        int n = td.numFields();
+        plainBytes = new int[n];
+        dictionaryBytes = new int[n];
+        runs = new int[n];
+        dictionaries = new ArrayList<HashSet<String>>();
+        for (int j = 0; j < n; j++) {
+            HashSet<String> dictionary = new HashSet<String>();
+            dictionaries.add(dictionary);
+            if (td.getFieldType(j) != Type.STRING_TYPE)
+                continue;
+            plainBytes[j] = 2 * numSlots;
+            dictionaryBytes[j] = 2;
+            String last = null;
+            for (int i = header.nextUsed(0); i >= 0; i = header.nextUsed(i + 1)) {
+                String s = ((StringField) tuples[i].getField(j)).getValue();
+                plainBytes[j] += s.length();
+                if (dictionary.add(s))
+                    dictionaryBytes[j] += 2 + s.length();
+                if (!s.equals(last))
+                    runs[j]++;
+                last = s;
+            }
+        }
+        modified = true;
+    }
+
+    /**
+     * @return an upper bound of the encoded size of this page
+     */
+    private int encodedSizeBound(int slots, int[] plain, int[] dictionary, int[] runCount) {
+        int size = headerSize(td.numFields(), slots);
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.STRING_TYPE)
+                size += 1 + Math.min(plain[j], dictionary[j] + 4 + 4 * runCount[j]);
+            else
+                size += 1 + td.getFieldType(j).getLen() * slots;
+        }
+        return size;
+    }
+
+    /**
+     * @return the slot a new tuple goes to
+     */
+    private int freeSlot() {
+        int slot = header.nextFree(0);
+        return slot < 0 ? numSlots : slot;
+    }
+
+    /**
+     * @return the last used slot before slot, or -1
+     */
+    private int previousUsed(int slot) {
+        int i = slot - 1;
+        while (i >= 0 && !header.get(i))
+            i--;
+        return i;
+    }
+
+    /**
+     * Returns true if the page still fits in pageSize after adding t in the
+     * given slot, and the size bounds after adding it in plain, dictionary
+     * and runCount.
+     */
+    private boolean fits(Tuple t, int slot, int[] plain, int[] dictionary, int[] runCount) {
+        int slots = Math.max(numSlots, slot + 1);
+        if (slots > MAX_SLOTS)
+            return false;
+        int previous = previousUsed(slot);
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) != Type.STRING_TYPE)
+                continue;
+            String s = ((StringField) t.getField(j)).getValue();
+            plain[j] = plainBytes[j] + s.length() + (slots > numSlots ? 2 : 0);
+            dictionary[j] = dictionaryBytes[j] + (dictionaries.get(j).contains(s) ? 0 : 2 + s.length());
+            if (previous >= 0 && tuples[previous].getField(j).equals(t.getField(j)))
+                runCount[j] = runs[j];
+            else if (slot == numSlots)
+                runCount[j] = runs[j] + 1;
+            else
+                // a tuple in an empty slot may split a run in three
+                runCount[j] = runs[j] + 2;
+        }
+        return encodedSizeBound(slots, plain, dictionary, runCount) <= pageSize;
+    }
+
+    /**
+     * Returns the number of empty slots on this page: the free slots of the
+     * page, and for a modified page the number of tuples that certainly fit
+     * at the end of it. Use {@link #hasRoomFor} to check a given tuple.
+     */
+    public int getNumEmptySlots() {
+        int free = numSlots - header.cardinality();
+        if (!modified)
+            return free;
+        int perTuple = 0;
+        for (int j = 0; j < td.numFields(); j++) {
+            // the worst case: a new, distinct string of full length
+            perTuple += td.getFieldType(j) == Type.STRING_TYPE ? 2 + Type.STRING_LEN + 4 : td.getFieldType(j).getLen();
+        }
+        int room = pageSize - encodedSizeBound(numSlots, plainBytes, dictionaryBytes, runs);
+        return free + Math.max(0, Math.min(MAX_SLOTS - numSlots, room / (perTuple + 1)));
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        if (!td.equals(t.getTupleDesc()))
+            return false;
+        materialize();
+        int n = td.numFields();
+        return fits(t, freeSlot(), new int[n], new int[n], new int[n]);
+    }
+
+    /**
+     * Adds the specified tuple to the page;  the tuple should be updated to reflect
+     * that it is now stored on this page.
+     *
+     * @param t The tuple to add.
+     * @throws DbException if the tuple does not fit on the page or tupledesc
+     *                     is mismatch.
+     */
+    public void insertTuple(Tuple t) throws DbException {
+        detach();
+        if (!td.equals(t.getTupleDesc()))
+            throw new DbException("tupledesc is mismatch");
+        materialize();
+        int n = td.numFields();
+        int[] plain = new int[n];
+        int[] dictionary = new int[n];
+        int[] runCount = new int[n];
+        int slot = freeSlot();
+        if (!fits(t, slot, plain, dictionary, runCount))
+            throw new DbException("no room for tuple on page " + pid.pageNumber());
+
+        if (slot == numSlots) {
+            numSlots++;
+            header = header.resize(numSlots);
+            if (numSlots > tuples.length)
+                tuples = Arrays.copyOf(tuples, Math.max(16, tuples.length * 2));
+        }
+        for (int j = 0; j < n; j++) {
+            if (td.getFieldType(j) == Type.STRING_TYPE)
+                dictionaries.get(j).add(((StringField) t.getField(j)).getValue());
+        }
+        plainBytes = plain;
+        dictionaryBytes = dictionary;
+        runs = runCount;
+        header.set(slot, true);
+        tuples[slot] = t;
+        t.setRecordId(new RecordId(pid, slot));
+    }
+
+    /**
+     * Delete the specified tuple from the page;  the tuple should be updated to reflect
+     * that it is no longer stored on any page.
+     *
+     * @param t The tuple to delete
+     * @throws DbException if this tuple is not on this page, or tuple slot is
+     *                     already empty.
+     */
+    public void deleteTuple(Tuple t) throws DbException {
+        detach();
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId()))
+            throw new DbException("tuple is not on page " + pid.pageNumber());
+        int slot = rid.tupleno();
+        if (slot < 0 || !isSlotUsed(slot))
+            throw new DbException("slot " + slot + " is already empty");
+        materialize();
+        for (int j = 0; j < td.numFields(); j++) {
+            // the dictionary and run bounds stay valid: an empty slot
+            // continues the run before it
+            if (td.getFieldType(j) == Type.STRING_TYPE)
+                plainBytes[j] -= ((StringField) tuples[slot].getField(j)).getValue().length();
+        }
+        header.set(slot, false);
+        tuples[slot] = null;
+        t.setRecordId(null);
+    }
+
+    /**
+     * Generates a byte array representing the contents of this page.
+     * Used to serialize this page to disk.
+     *
+     * @return A byte array correspond to the bytes of this page.
+     * @see #DictionaryPage
+     */
+    public byte[] getPageData() {
+        byte[] out = new byte[pageSize];
+        writeTo(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    public void writeTo(ByteBuffer buf) {
+        if (!modified) {
+            buf.put(data.duplicate());
+            return;
+        }
+        int start = buf.position();
+        buf.putInt(numSlots);
+        int offsets = buf.position();
+        buf.put(ZEROS, 0, 4 * td.numFields());
+        header.write(buf);
+        for (int j = 0; j < td.numFields(); j++) {
+            buf.putInt(offsets + 4 * j, buf.position() - start);
+            if (td.getFieldType(j) == Type.STRING_TYPE) {
+                writeStringColumn(buf, j);
+            } else {
+                buf.put(PLAIN);
+                for (int i = 0; i < numSlots; i++) {
+                    if (isSlotUsed(i))
+                        td.getFieldType(j).write(buf, tuples[i], j);
+                    else
+                        buf.put(ZEROS, 0, td.getFieldType(j).getLen());
+                }
+            }
+        }
+        buf.put(ZEROS, 0, pageSize - (buf.position() - start));
+    }
+
+    /**
+     * Write string column j in whichever encoding is smaller.
+     */
+    private void writeStringColumn(ByteBuffer buf, int j) {
+        String[] values = new String[numSlots];
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        ArrayList<String> entries = new ArrayList<String>();
+        int plain = 2 * numSlots;
+        int dictionary = 2;
+        int runCount = 0;
+        int lastCode = -1;
+        for (int i = 0; i < numSlots; i++) {
+            if (!isSlotUsed(i))
+                continue;
+            String s = ((StringField) tuples[i].getField(j)).getValue();
+            values[i] = s;
+            plain += s.length();
+            Integer code = codes.get(s);
+            if (code == null) {
+                code = entries.size();
+                codes.put(s, code);
+                entries.add(s);
+                dictionary += 2 + s.length();
+            }
+            if (code != lastCode)
+                runCount++;
+            lastCode = code;
+        }
+        if (runCount == 0)
+            runCount = 1;
+
+        if (plain <= dictionary + 4 + 4 * runCount) {
+            buf.put(PLAIN);
+            for (int i = 0; i < numSlots; i++)
+                buf.putShort((short) (values[i] == null ? 0 : values[i].length()));
+            for (int i = 0; i < numSlots; i++) {
+                if (values[i] != null)
+                    putString(buf, values[i]);
+            }
+            return;
+        }
+
+        buf.put(DICTIONARY);
+        buf.putShort((short) entries.size());
+        for (String s : entries) {
+            buf.putShort((short) s.length());
+            putString(buf, s);
+        }
+        buf.putInt(runCount);
+        // empty slots continue the current run; leading ones join the first
+        int code = -1;
+        int length = 0;
+        for (int i = 0; i < numSlots; i++) {
+            if (values[i] != null) {
+                int c = codes.get(values[i]);
+                if (code >= 0 && c != code) {
+                    buf.putShort((short) code);
+                    buf.putShort((short) length);
+                    length = 0;
+                }
+                code = c;
+            }
+            length++;
+        }
+        buf.putShort((short) Math.max(code, 0));
+        buf.putShort((short) length);
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        for (int i = 0; i < s.length(); i++)
+            buf.put((byte) s.charAt(i));
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on this iterator throws an UnsupportedOperationException)
+     */
+    public Iterator<Tuple> iterator() {
+        return new SlotIterator() {
+            @Override
+            int nextSlot(int from) {
+                return header.nextUsed(from);
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy p. An
+     * EQUALS or NOT_EQUALS predicate on a dictionary encoded column is
+     * evaluated on the dictionary codes of the runs, so neither the strings
+     * nor the tuples that do not match are decoded.
+     *
+     * @param p the predicate to apply
+     */
+    public Iterator<Tuple> iterator(final Predicate p) {
+        final int field = p.getField();
+        final Predicate.Op op = p.getOp();
+        if ((op == Predicate.Op.EQUALS || op == Predicate.Op.NOT_EQUALS) && isDictionaryEncoded(field)) {
+            final StringColumn column = stringColumn(field);
+            final int code = column.codeOf(p.getOperand());
+            final boolean equals = op == Predicate.Op.EQUALS;
+            return new SlotIterator() {
+                @Override
+                int nextSlot(int from) {
+                    int slot = header.nextUsed(from);
+                    while (slot >= 0) {
+                        int run = column.run(slot);
+                        if ((column.runCodes[run] == code) == equals)
+                            return slot;
+                        // skip the rest of the run
+                        slot = header.nextUsed(column.runEnds[run]);
+                    }
+                    return -1;
+                }
+            };
+        }
+        return new SlotIterator() {
+            @Override
+            int nextSlot(int from) {
+                int slot = header.nextUsed(from);
+                while (slot >= 0 && !p.filter(getTuple(slot)))
+                    slot = header.nextUsed(slot + 1);
+                return slot;
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy filter.
+     * The first EQUALS or NOT_EQUALS predicate of filter (see
+     * {@link Evaluator#predicates()}) on a dictionary encoded column is
+     * evaluated on the dictionary codes, as in {@link #iterator(Predicate)};
+     * filter is tested on the tuples that pass it.
+     */
+    @Override
+    public Iterator<Tuple> iterator(Evaluator filter, int[] columns, TupleDesc td) {
+        Iterator<Tuple> it = null;
+        for (Predicate p : filter == null ? Collections.<Predicate>emptyList() : filter.predicates()) {
+            if ((p.getOp() == Predicate.Op.EQUALS || p.getOp() == Predicate.Op.NOT_EQUALS)
+                    && isDictionaryEncoded(p.getField())) {
+                it = iterator(p);
+                break;
+            }
+        }
+        if (it == null)
+            it = iterator();
+        if (filter != null)
+            it = TuplePage.filter(it, filter);
+        return columns == null ? it : TuplePage.project(it, columns, td);
+    }
+
+    /**
+     * An iterator over the tuples of the slots returned by nextSlot.
+     */
+    private abstract class SlotIterator implements Iterator<Tuple> {
+        private int slot = -2;
+
+        /**
+         * @return the next slot to return at or after from, or -1
+         */
+        abstract int nextSlot(int from);
+
+        @Override
+        public boolean hasNext() {
+            if (slot == -2)
+                slot = nextSlot(0);
+            return slot >= 0;
+        }
+
+        @Override
+        public Tuple next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Tuple t = getTuple(slot);
+            slot = nextSlot(slot + 1);
+            return t;
+        }
+    }
+}
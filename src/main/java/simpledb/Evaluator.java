@@ -0,0 +1,150 @@
+package simpledb;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled predicate: a test of a tuple specialized for the type of the
+ * field, the operator and the operand of a Predicate, or for a conjunction of
+ * them. Evaluators are created by {@link #compile(Predicate)} and
+ * {@link #and}; each (type, operator) pair is its own class, so a call site
+ * that always sees the same kind of predicate stays monomorphic and the JIT
+ * can inline the comparison.
+ */
+public interface Evaluator extends Serializable {
+
+    /**
+     * @param t the tuple to test, which pages may pass as a view of a slot
+     *          that has not been decoded
+     * @return true if t satisfies the predicate
+     */
+    boolean eval(TupleView t);
+
+    /**
+     * @return the predicates this evaluator was compiled from by
+     * {@link #compile(List)}, so a page can answer some of them in its own
+     * encoding (see {@link DictionaryPage}), or an empty list
+     */
+    default List<Predicate> predicates() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Compile a predicate. The comparison, the operand and, for int
+     * fields, the unboxed access to the field are fixed when the evaluator
+     * is created, instead of being looked up for every tuple as in
+     * {@link Field#compare}.
+     *
+     * @param p the predicate to compile
+     */
+    static Evaluator compile(Predicate p) {
+        final int field = p.getField();
+        Field operand = p.getOperand();
+        if (operand instanceof IntField) {
+            final int v = ((IntField) operand).getValue();
+            switch (p.getOp()) {
+            case EQUALS:
+            case LIKE:
+                return t -> t.getInt(field) == v;
+            case NOT_EQUALS:
+                return t -> t.getInt(field) != v;
+            case GREATER_THAN:
+                return t -> t.getInt(field) > v;
+            case GREATER_THAN_OR_EQ:
+                return t -> t.getInt(field) >= v;
+            case LESS_THAN:
+                return t -> t.getInt(field) < v;
+            case LESS_THAN_OR_EQ:
+                return t -> t.getInt(field) <= v;
+            }
+        } else if (operand instanceof StringField) {
+            final String s = ((StringField) operand).getValue();
+            switch (p.getOp()) {
+            case EQUALS:
+                return t -> ((StringField) t.getField(field)).getValue().equals(s);
+            case NOT_EQUALS:
+                return t -> !((StringField) t.getField(field)).getValue().equals(s);
+            case GREATER_THAN:
+                return t -> ((StringField) t.getField(field)).getValue().compareTo(s) > 0;
+            case GREATER_THAN_OR_EQ:
+                return t -> ((StringField) t.getField(field)).getValue().compareTo(s) >= 0;
+            case LESS_THAN:
+                return t -> ((StringField) t.getField(field)).getValue().compareTo(s) < 0;
+            case LESS_THAN_OR_EQ:
+                return t -> ((StringField) t.getField(field)).getValue().compareTo(s) <= 0;
+            case LIKE:
+                return t -> ((StringField) t.getField(field)).getValue().contains(s);
+            }
+        }
+        final Predicate.Op op = p.getOp();
+        return t -> t.getField(field).compare(op, operand);
+    }
+
+    /**
+     * @param predicates the terms of a conjunction
+     * @return an evaluator that is true if the tuple satisfies all
+     * predicates, see {@link #and}, and returns them from
+     * {@link #predicates()}
+     */
+    static Evaluator compile(List<Predicate> predicates) {
+        Evaluator[] terms = new Evaluator[predicates.size()];
+        for (int i = 0; i < terms.length; i++)
+            terms[i] = predicates.get(i).evaluator();
+        return new Conjunction(predicates, and(terms));
+    }
+
+    /**
+     * @param evaluators the evaluators of the terms of a conjunction
+     * @return an evaluator that is true if all terms are, testing them in
+     * order and stopping at the first false one
+     */
+    static Evaluator and(Evaluator... evaluators) {
+        final Evaluator[] terms = evaluators.clone();
+        switch (terms.length) {
+        case 0:
+            return t -> true;
+        case 1:
+            return terms[0];
+        case 2:
+            final Evaluator first = terms[0];
+            final Evaluator second = terms[1];
+            return t -> first.eval(t) && second.eval(t);
+        default:
+            return t -> {
+                for (Evaluator e : terms) {
+                    if (!e.eval(t))
+                        return false;
+                }
+                return true;
+            };
+        }
+    }
+
+    /**
+     * A compiled conjunction that remembers its predicates.
+     */
+    final class Conjunction implements Evaluator {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Predicate> predicates;
+        private final Evaluator body;
+
+        Conjunction(List<Predicate> predicates, Evaluator body) {
+            this.predicates = Collections.unmodifiableList(new ArrayList<Predicate>(predicates));
+            this.body = body;
+        }
+
+        @Override
+        public boolean eval(TupleView t) {
+            return body.eval(t);
+        }
+
+        @Override
+        public List<Predicate> predicates() {
+            return predicates;
+        }
+    }
+}
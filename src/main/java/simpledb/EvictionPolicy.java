@@ -0,0 +1,120 @@
+package simpledb;
+
+import java.util.Iterator;
+
+/**
+ * EvictionPolicy decides which page the BufferPool should throw out when it
+ * runs out of frames. The BufferPool reports every page it admits, every hit
+ * on a resident page and every page it drops; the policy keeps whatever
+ * recency or frequency information it needs to rank the resident pages.
+ * <p>
+ * Policies are not thread safe; the BufferPool serializes all calls into
+ * its policy.
+ *
+ * @see BufferPool
+ */
+public interface EvictionPolicy {
+
+    /**
+     * @return a short, human readable name of this policy (e.g. "LRU").
+     */
+    String getName();
+
+    /**
+     * Called when a page that was not resident is brought into the pool.
+     *
+     * @param pid the id of the page that was admitted
+     */
+    void pageAdmitted(PageId pid);
+
+    /**
+     * Called when a request is served by a page that is already resident.
+     *
+     * @param pid the id of the page that was accessed
+     */
+    void pageAccessed(PageId pid);
+
+    /**
+     * Called when a page leaves the pool, either because it was evicted or
+     * because it was discarded.
+     *
+     * @param pid the id of the page that was removed
+     */
+    void pageRemoved(PageId pid);
+
+    /**
+     * Returns the resident pages in the order in which they should be
+     * evicted, best candidate first. The BufferPool takes the first candidate
+     * it is able to evict and then reports it through {@link #pageRemoved}.
+     * Walking the iterator may update internal state of the policy (e.g. the
+     * reference bits of CLOCK), but must not remove pages from it.
+     *
+     * @return an iterator over eviction candidates
+     */
+    Iterator<PageId> victims();
+
+    /**
+     * Forget every page tracked by this policy.
+     */
+    void clear();
+
+    /**
+     * The eviction policies shipped with SimpleDB. The policy of the global
+     * BufferPool is picked from the <code>simpledb.evictionPolicy</code>
+     * system property when the Database is constructed.
+     */
+    enum Kind {
+        LRU {
+            @Override
+            public EvictionPolicy create(int numPages) {
+                return new LruEvictionPolicy();
+            }
+        }, CLOCK {
+            @Override
+            public EvictionPolicy create(int numPages) {
+                return new ClockEvictionPolicy();
+            }
+        }, TWO_Q {
+            @Override
+            public EvictionPolicy create(int numPages) {
+                return new TwoQueueEvictionPolicy(numPages);
+            }
+        }, LRU_K {
+            @Override
+            public EvictionPolicy create(int numPages) {
+                return new LruKEvictionPolicy(LruKEvictionPolicy.DEFAULT_K);
+            }
+        };
+
+        public static final String PROPERTY = "simpledb.evictionPolicy";
+
+        /**
+         * Create a new policy of this kind for a pool of the given size.
+         *
+         * @param numPages the number of frames in the BufferPool
+         */
+        public abstract EvictionPolicy create(int numPages);
+
+        /**
+         * Look up a policy kind by name, ignoring case and accepting "2Q"
+         * and "LRU-K" as spellings of TWO_Q and LRU_K.
+         *
+         * @param name the name of the policy
+         * @throws IllegalArgumentException if no policy has that name
+         */
+        public static Kind getKind(String name) {
+            String n = name.trim().toUpperCase().replace('-', '_');
+            if (n.equals("2Q"))
+                return TWO_Q;
+            return valueOf(n);
+        }
+
+        /**
+         * @return the policy kind configured through {@link #PROPERTY}, or
+         * LRU if the property is not set.
+         */
+        public static Kind fromSystemProperty() {
+            return getKind(System.getProperty(PROPERTY, LRU.name()));
+        }
+    }
+}
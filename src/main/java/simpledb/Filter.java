@@ -1,16 +1,23 @@
 package simpledb;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
- * Filter is an operator that implements a relational select.
+ * Filter is an operator that implements a relational select. It may apply a
+ * conjunction of predicates, which are compiled into one {@link Evaluator}
+ * when the Filter is created. Read in batches, it narrows the selection of
+ * the batches of its child instead of copying the tuples that pass.
  */
-public class Filter extends Operator {
+public class Filter extends Operator implements BatchIterator {
 
     private static final long serialVersionUID = 1L;
 
-    private Predicate predicate;
+    private final List<Predicate> predicates;
+    private final Evaluator evaluator;
     private DbIterator dbIterator;
+    private transient BatchIterator batchChild;
 
     /**
      * Constructor accepts a predicate to apply and a child operator to read
@@ -21,13 +28,37 @@ public class Filter extends Operator {
      */
     public Filter(Predicate p, DbIterator child) {
         // some code goes here
-        this.predicate = p;
+        this(Arrays.asList(p), child);
+    }
+
+    /**
+     * Constructor for a filter that returns the tuples that satisfy all of
+     * the given predicates.
+     *
+     * @param ps    The predicates, at least one; they are tested in order
+     * @param child The child operator
+     */
+    public Filter(List<Predicate> ps, DbIterator child) {
+        if (ps.isEmpty())
+            throw new IllegalArgumentException("a filter needs a predicate");
+        this.predicates = ps;
         this.dbIterator = child;
+        this.evaluator = Evaluator.compile(ps);
     }
 
+    /**
+     * @return the (first) predicate of this filter
+     */
     public Predicate getPredicate() {
         // some code goes here
-        return predicate;
+        return predicates.get(0);
+    }
+
+    /**
+     * @return all predicates of this filter
+     */
+    public List<Predicate> getPredicates() {
+        return predicates;
     }
 
     public TupleDesc getTupleDesc() {
@@ -39,16 +70,18 @@ public class Filter extends Operator {
             TransactionAbortedException {
         // some code goes here
         dbIterator.open();
+        super.open();
     }
 
     public void close() {
         // some code goes here
+        super.close();
         dbIterator.close();
     }
 
     public void rewind() throws DbException, TransactionAbortedException {
         // some code goes here
-        dbIterator.close();
+        dbIterator.rewind();
     }
 
     /**
@@ -63,7 +96,29 @@ public class Filter extends Operator {
     protected Tuple fetchNext() throws NoSuchElementException,
             TransactionAbortedException, DbException {
         // some code goes here
-        return dbIterator.next();
+        while (dbIterator.hasNext()) {
+            Tuple t = dbIterator.next();
+            if (evaluator.eval(t))
+                return t;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the next batch of the child with at least one row that
+     * passes the predicate, with only those rows selected. The rows are
+     * tested with the same compiled Evaluator as in {@link #fetchNext()}.
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (batchChild == null)
+            batchChild = BatchIterator.of(dbIterator);
+        TupleBatch batch;
+        while ((batch = batchChild.nextBatch()) != null) {
+            batch.filter(evaluator);
+            if (batch.numRows() > 0)
+                return batch;
+        }
+        return null;
     }
 
     @Override
@@ -77,6 +132,7 @@ public class Filter extends Operator {
         // some code goes here
         if (this.dbIterator != children[0]) {
             this.dbIterator = children[0];
+            this.batchChild = null;
         }
     }
 
@@ -0,0 +1,81 @@
+package simpledb;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * FilteredDbFileIterator returns the tuples of another DbFileIterator that
+ * satisfy a list of predicates, optionally projected onto some of their
+ * fields. It is the default for files that cannot evaluate predicates or
+ * decode single fields on their pages, see
+ * {@link DbFile#iterator(TransactionId, List, int[])}.
+ */
+public class FilteredDbFileIterator implements DbFileIterator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DbFileIterator child;
+    private final Evaluator evaluator;
+    private final int[] columns;
+    private final TupleDesc td;
+    private Tuple next;
+
+    /**
+     * @param child      the iterator to filter
+     * @param predicates the predicates the returned tuples satisfy
+     */
+    public FilteredDbFileIterator(DbFileIterator child, List<Predicate> predicates) {
+        this(child, predicates, null, null);
+    }
+
+    /**
+     * @param child      the iterator to filter
+     * @param predicates the predicates the returned tuples satisfy
+     * @param columns    the indexes of the fields to return, or null for all
+     * @param td         the schema of the returned tuples if columns is not
+     *                   null
+     */
+    public FilteredDbFileIterator(DbFileIterator child, List<Predicate> predicates, int[] columns, TupleDesc td) {
+        this.child = child;
+        this.columns = columns;
+        this.td = td;
+        this.evaluator = Evaluator.compile(predicates);
+    }
+
+    @Override
+    public void open() throws DbException, TransactionAbortedException {
+        next = null;
+        child.open();
+    }
+
+    @Override
+    public boolean hasNext() throws DbException, TransactionAbortedException {
+        while (next == null && child.hasNext()) {
+            Tuple t = child.next();
+            if (evaluator.eval(t))
+                next = columns == null ? t : t.project(columns, td);
+        }
+        return next != null;
+    }
+
+    @Override
+    public Tuple next() throws DbException, TransactionAbortedException, NoSuchElementException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Tuple t = next;
+        next = null;
+        return t;
+    }
+
+    @Override
+    public void rewind() throws DbException, TransactionAbortedException {
+        next = null;
+        child.rewind();
+    }
+
+    @Override
+    public void close() {
+        next = null;
+        child.close();
+    }
+}
@@ -0,0 +1,441 @@
+package simpledb;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * HashJoin joins its children on the equality of a field of each. It
+ * builds a hash table on the join field of the smaller input and probes it
+ * with the tuples of the other one, so each input is read once instead of
+ * comparing every pair of tuples as a nested loops join does.
+ * <p>
+ * The hash table must fit in a memory budget, counted as the size of the
+ * build tuples on disk. The inner child (child2) is read first; if it fits,
+ * it is the build side and the outer child is probed tuple by tuple.
+ * Otherwise the outer child is read up to the budget, and if it fits it is
+ * the build side instead. If neither does, both inputs are split into
+ * {@link #NUM_PARTITIONS} partitions by the hash of the join field, which
+ * are written to {@link SpillFile}s (a Grace hash join), and the matching
+ * partitions are joined one pair at a time, building on the smaller one.
+ * A partition that still exceeds the budget is split again with another
+ * hash, up to {@link #MAX_DEPTH} times; after that, e.g. for a single key
+ * with more tuples than the budget holds, it is built in memory anyway.
+ * <p>
+ * The result tuples are the same as those of {@link Join}, in another
+ * order.
+ */
+public class HashJoin extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The memory budget of joins created without one, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 16L << 20;
+
+    /**
+     * The number of partitions an input is split into when the build side
+     * exceeds the memory budget
+     */
+    public static final int NUM_PARTITIONS = 16;
+
+    /**
+     * The number of times a partition is split again before it is built
+     * regardless of the budget
+     */
+    public static final int MAX_DEPTH = 3;
+
+    private final JoinPredicate joinPredicate;
+    private final long memoryBudget;
+    private DbIterator child1;
+    private DbIterator child2;
+
+    /**
+     * The hash table of the build side, by join field
+     */
+    private transient JoinHashTable table;
+    /**
+     * True if the build side is child1, so probe tuples come from child2
+     */
+    private transient boolean buildIsOuter;
+    /**
+     * Probe tuples read before the build side was chosen, or those of the
+     * current partition; returned before the ones of probeChild
+     */
+    private transient Iterator<Tuple> pendingProbe;
+    /**
+     * The child the rest of the probe tuples come from, or null
+     */
+    private transient DbIterator probeChild;
+    /**
+     * Partition pairs still to be joined
+     */
+    private transient Deque<PartitionPair> partitions;
+    /**
+     * The partition pair being probed
+     */
+    private transient PartitionPair current;
+    private transient boolean spilled;
+
+    private transient TupleDesc td;
+    private transient Tuple probeTuple;
+    private transient List<Tuple> matches;
+    private transient int matchIndex;
+
+    /**
+     * The partitions of both inputs with the same hash values
+     */
+    private static final class PartitionPair {
+        final SpillFile outer;
+        final SpillFile inner;
+        final int depth;
+
+        PartitionPair(SpillFile outer, SpillFile inner, int depth) {
+            this.outer = outer;
+            this.inner = inner;
+            this.depth = depth;
+        }
+
+        void delete() {
+            outer.delete();
+            inner.delete();
+        }
+    }
+
+    /**
+     * Constructor. Accepts two children to join on an EQUALS predicate,
+     * with the default memory budget.
+     *
+     * @param p      The predicate to use to join the children
+     * @param child1 Iterator for the left(outer) relation to join
+     * @param child2 Iterator for the right(inner) relation to join
+     * @throws IllegalArgumentException if the operator of p is not EQUALS
+     */
+    public HashJoin(JoinPredicate p, DbIterator child1, DbIterator child2) {
+        this(p, child1, child2, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget the number of bytes of build tuples to keep in
+     *                     memory before the inputs are partitioned
+     * @see #HashJoin(JoinPredicate, DbIterator, DbIterator)
+     */
+    public HashJoin(JoinPredicate p, DbIterator child1, DbIterator child2, long memoryBudget) {
+        if (p.getOperator() != Predicate.Op.EQUALS)
+            throw new IllegalArgumentException("hash joins need an EQUALS predicate, not " + p.getOperator());
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("memory budget must be positive");
+        this.joinPredicate = p;
+        this.child1 = child1;
+        this.child2 = child2;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return joinPredicate;
+    }
+
+    /**
+     * @return the memory budget of the hash table, in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * @return true if the last open or rewind had to partition the inputs
+     */
+    public boolean hasSpilled() {
+        return spilled;
+    }
+
+    /**
+     * @return the field name of join field1. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField1Name() {
+        return child1.getTupleDesc().getFieldName(joinPredicate.getField1());
+    }
+
+    /**
+     * @return the field name of join field2. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField2Name() {
+        return child2.getTupleDesc().getFieldName(joinPredicate.getField2());
+    }
+
+    public TupleDesc getTupleDesc() {
+        return TupleDesc.merge(child1.getTupleDesc(), child2.getTupleDesc());
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        td = getTupleDesc();
+        child1.open();
+        child2.open();
+        build();
+        super.open();
+    }
+
+    /**
+     * Choose the build side and build the hash table, or partition both
+     * inputs if neither fits in the memory budget.
+     */
+    private void build() throws DbException, TransactionAbortedException {
+        partitions = new ArrayDeque<PartitionPair>();
+        spilled = false;
+        matches = null;
+
+        List<Tuple> inner = new ArrayList<Tuple>();
+        if (read(child2, inner)) {
+            buildTable(inner, false);
+            pendingProbe = null;
+            probeChild = child1;
+            return;
+        }
+        List<Tuple> outer = new ArrayList<Tuple>();
+        if (read(child1, outer)) {
+            buildTable(outer, true);
+            pendingProbe = inner.iterator();
+            probeChild = child2;
+            return;
+        }
+
+        spilled = true;
+        table = null;
+        pendingProbe = null;
+        probeChild = null;
+        try {
+            SpillFile[] outerParts = partition(outer.iterator(), child1, joinPredicate.getField1(),
+                    child1.getTupleDesc(), 0);
+            outer = null;
+            SpillFile[] innerParts = partition(inner.iterator(), child2, joinPredicate.getField2(),
+                    child2.getTupleDesc(), 0);
+            inner = null;
+            addPartitions(outerParts, innerParts, 0);
+        } catch (IOException e) {
+            throw new DbException("cannot spill join partitions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read tuples of child into tuples until it is exhausted or they exceed
+     * the memory budget.
+     *
+     * @return true if child was exhausted within the budget
+     */
+    private boolean read(DbIterator child, List<Tuple> tuples) throws DbException, TransactionAbortedException {
+        long limit = memoryBudget / child.getTupleDesc().getSize();
+        while (child.hasNext()) {
+            if (tuples.size() >= limit)
+                return false;
+            tuples.add(child.next());
+        }
+        return true;
+    }
+
+    private void buildTable(Iterable<Tuple> tuples, boolean outer) {
+        TupleDesc td1 = child1.getTupleDesc();
+        TupleDesc td2 = child2.getTupleDesc();
+        table = outer
+                ? new JoinHashTable(td1, joinPredicate.getField1(), td2, joinPredicate.getField2())
+                : new JoinHashTable(td2, joinPredicate.getField2(), td1, joinPredicate.getField1());
+        for (Tuple t : tuples)
+            table.add(t);
+        buildIsOuter = outer;
+    }
+
+    /**
+     * Split the tuples of first and then the rest of those of child (if not
+     * null) into NUM_PARTITIONS spill files by the hash of a field.
+     */
+    private SpillFile[] partition(Iterator<Tuple> first, DbIterator child, int field, TupleDesc td, int depth)
+            throws IOException, DbException, TransactionAbortedException {
+        SpillFile[] parts = new SpillFile[NUM_PARTITIONS];
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = new SpillFile(td);
+        while (first.hasNext()) {
+            Tuple t = first.next();
+            parts[partitionOf(JoinHashTable.keyHash(t, field), depth)].add(t);
+        }
+        if (child != null) {
+            while (child.hasNext()) {
+                Tuple t = child.next();
+                parts[partitionOf(JoinHashTable.keyHash(t, field), depth)].add(t);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * @return the partition of a key with the given hash when partitioning
+     * for the given depth; each depth uses another hash function
+     * @see JoinHashTable#keyHash
+     */
+    static int partitionOf(int hash, int depth) {
+        int h = hash + depth * 0x9e3779b9;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return Math.floorMod(h, NUM_PARTITIONS);
+    }
+
+    private void addPartitions(SpillFile[] outer, SpillFile[] inner, int depth) {
+        for (int i = 0; i < outer.length; i++) {
+            PartitionPair pair = new PartitionPair(outer[i], inner[i], depth);
+            // an empty partition joins nothing
+            if (outer[i].size() == 0 || inner[i].size() == 0)
+                pair.delete();
+            else
+                partitions.add(pair);
+        }
+    }
+
+    /**
+     * Build the hash table of the next partition pair, splitting pairs that
+     * exceed the memory budget. The pair probed so far is deleted.
+     *
+     * @return false if there are no partitions left
+     */
+    private boolean nextPartition() throws DbException, TransactionAbortedException {
+        if (current != null) {
+            current.delete();
+            current = null;
+        }
+        try {
+            while (!partitions.isEmpty()) {
+                PartitionPair pair = partitions.poll();
+                boolean outer = pair.outer.size() <= pair.inner.size();
+                SpillFile build = outer ? pair.outer : pair.inner;
+                if (build.getSize() > memoryBudget && pair.depth < MAX_DEPTH) {
+                    int depth = pair.depth + 1;
+                    SpillFile[] outerParts = partition(pair.outer.iterator(), null, joinPredicate.getField1(),
+                            child1.getTupleDesc(), depth);
+                    SpillFile[] innerParts = partition(pair.inner.iterator(), null, joinPredicate.getField2(),
+                            child2.getTupleDesc(), depth);
+                    pair.delete();
+                    addPartitions(outerParts, innerParts, depth);
+                    continue;
+                }
+                List<Tuple> tuples = new ArrayList<Tuple>();
+                for (Iterator<Tuple> it = build.iterator(); it.hasNext(); )
+                    tuples.add(it.next());
+                buildTable(tuples, outer);
+                pendingProbe = (outer ? pair.inner : pair.outer).iterator();
+                current = pair;
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new DbException("cannot read join partition: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the next probe tuple, or null if there are no more
+     */
+    private Tuple nextProbe() throws DbException, TransactionAbortedException {
+        if (pendingProbe != null && pendingProbe.hasNext())
+            return pendingProbe.next();
+        if (probeChild != null && probeChild.hasNext())
+            return probeChild.next();
+        return null;
+    }
+
+    private Tuple merge(Tuple t1, Tuple t2) {
+        Tuple tuple = new Tuple(td);
+        int n1 = t1.getTupleDesc().numFields();
+        for (int i = 0; i < n1; i++)
+            tuple.setField(i, t1, i);
+        for (int i = 0; i < t2.getTupleDesc().numFields(); i++)
+            tuple.setField(n1 + i, t2, i);
+        return tuple;
+    }
+
+    /**
+     * Returns the next tuple generated by the join, or null if there are no
+     * more tuples.
+     *
+     * @see Join#fetchNext
+     */
+    protected Tuple fetchNext() throws TransactionAbortedException, DbException {
+        while (true) {
+            if (matches != null && matchIndex < matches.size()) {
+                Tuple build = matches.get(matchIndex++);
+                return buildIsOuter ? merge(build, probeTuple) : merge(probeTuple, build);
+            }
+            probeTuple = table == null ? null : nextProbe();
+            if (probeTuple != null) {
+                matches = table.get(probeTuple);
+                matchIndex = 0;
+                continue;
+            }
+            matches = null;
+            if (!nextPartition())
+                return null;
+        }
+    }
+
+    /**
+     * Delete the spill files of all partitions.
+     */
+    private void clear() {
+        if (current != null) {
+            current.delete();
+            current = null;
+        }
+        if (partitions != null) {
+            for (PartitionPair pair : partitions)
+                pair.delete();
+            partitions.clear();
+        }
+        table = null;
+        matches = null;
+        probeTuple = null;
+        pendingProbe = null;
+        probeChild = null;
+    }
+
+    public void close() {
+        super.close();
+        clear();
+        child1.close();
+        child2.close();
+    }
+
+    /**
+     * Restart the join. If the hash table was built from one child and the
+     * other one probed directly, only the probe child is rewound; otherwise
+     * the join is built again.
+     */
+    public void rewind() throws DbException, TransactionAbortedException {
+        if (!spilled && table != null) {
+            probeChild.rewind();
+            pendingProbe = null;
+            matches = null;
+            probeTuple = null;
+            return;
+        }
+        clear();
+        child1.rewind();
+        child2.rewind();
+        build();
+    }
+
+    @Override
+    public DbIterator[] getChildren() {
+        return new DbIterator[]{child1, child2};
+    }
+
+    @Override
+    public void setChildren(DbIterator[] children) {
+        this.child1 = children[0];
+        this.child2 = children[1];
+    }
+}
@@ -2,8 +2,13 @@ package simpledb;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * HeapFile is an implementation of a DbFile that stores a collection of tuples
@@ -17,8 +22,20 @@ import java.util.ArrayList;
  */
 public class HeapFile implements DbFile {
 
+    private static final long serialVersionUID = 1L;
+
     private final File file;
     private final TupleDesc tupleDesc;
+    private final PageLayout layout;
+    private final int pageSize;
+    private transient volatile FileChannel channel;
+    private transient volatile FileChannel writeChannel;
+
+    /**
+     * Per thread buffer pages are encoded into before they are written.
+     */
+    private static final ThreadLocal<ByteBuffer> WRITE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BufferPool.MAX_PAGE_SIZE));
 
     /**
      * Constructs a heap file backed by the specified file.
@@ -27,9 +44,55 @@ public class HeapFile implements DbFile {
      *          file.
      */
     public HeapFile(File f, TupleDesc td) {
+        this(f, td, PageLayout.HEAP);
+    }
+
+    /**
+     * Constructs a heap file whose pages have the given layout.
+     *
+     * @param f      the file that stores the on-disk backing store for this
+     *               heap file.
+     * @param td     the schema of the table
+     * @param layout the format of the pages of the file
+     */
+    public HeapFile(File f, TupleDesc td, PageLayout layout) {
+        this(f, td, layout, BufferPool.PAGE_SIZE);
+    }
+
+    /**
+     * Constructs a heap file whose pages have the given layout and size.
+     *
+     * @param f        the file that stores the on-disk backing store for this
+     *                 heap file.
+     * @param td       the schema of the table
+     * @param layout   the format of the pages of the file
+     * @param pageSize the size of the pages of the file in bytes, a power of
+     *                 two of at most BufferPool.MAX_PAGE_SIZE
+     */
+    public HeapFile(File f, TupleDesc td, PageLayout layout, int pageSize) {
         // some code goes here
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1 || pageSize > BufferPool.MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("page size must be a power of two of at most "
+                    + BufferPool.MAX_PAGE_SIZE + " bytes, not " + pageSize);
         this.file = f;
         this.tupleDesc = td;
+        this.layout = layout;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the size of the pages of this file in bytes
+     */
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the format of the pages of this file
+     */
+    public PageLayout getLayout() {
+        return layout;
     }
 
     /**
@@ -67,49 +130,122 @@ public class HeapFile implements DbFile {
         return this.tupleDesc;
     }
 
-    // see DbFile.java for javadocs
-//    public Page readPage(PageId pid) {
-//        // some code goes here
-//        int pageno = pid.pageNumber();
-//
-//        try {
-//            DataInputStream dis = new DataInputStream(new FileInputStream(file));
-//            int skipBytes = dis.skipBytes((pageno - 1) * BufferPool.PAGE_SIZE);
-//            Debug.log("skipBytes: %d", skipBytes);
-//
-//            byte[] data = new byte[BufferPool.PAGE_SIZE];
-//            int readSize = dis.read(data);
-//            Debug.log("read size: %d", readSize);
-//
-//            return new HeapPage(new HeapPageId(pid.getTableId(), pid.pageNumber()), data);
-//
-//        } catch (FileNotFoundException e) {
-//            e.printStackTrace();
-//            throw new IllegalArgumentException("file: " + file.getName() + " not found.");
-//        } catch (IOException e) {
-//            e.printStackTrace();
-//            throw new IllegalArgumentException("cannot read page: " + pid + "from file: " + file.getName());
-//        }
-//    }
+    /**
+     * Returns the read-only channel used for reading pages of this file,
+     * opening it on first use. The channel is shared by all threads;
+     * positional reads do not touch the channel's position, so no locking
+     * is needed.
+     *
+     * @throws java.nio.file.NoSuchFileException if the file does not exist
+     */
+    protected FileChannel getChannel() throws IOException {
+        FileChannel c = channel;
+        if (c == null || !c.isOpen()) {
+            synchronized (this) {
+                if (channel == null || !channel.isOpen()) {
+                    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                }
+                c = channel;
+            }
+        }
+        return c;
+    }
 
+    /**
+     * Returns the channel used for writing pages of this file, opening it on
+     * the first write, so that files that are only read may be read-only.
+     *
+     * @see #getChannel
+     */
+    protected FileChannel getWritableChannel() throws IOException {
+        FileChannel c = writeChannel;
+        if (c == null || !c.isOpen()) {
+            synchronized (this) {
+                if (writeChannel == null || !writeChannel.isOpen()) {
+                    writeChannel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                }
+                c = writeChannel;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Closes the channels of this file. They are reopened if the file is
+     * used again.
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (writeChannel != null) {
+            writeChannel.close();
+            writeChannel = null;
+        }
+    }
+
+    /**
+     * Read the bytes of one page, looping until the page is complete.
+     * Bytes past the end of the file read as zeroes.
+     */
+    protected void readFully(ByteBuffer buf, long position) throws IOException {
+        FileChannel c = getChannel();
+        while (buf.hasRemaining()) {
+            int n;
+            try {
+                n = c.read(buf, position + buf.position());
+            } catch (ClosedByInterruptException e) {
+                throw e;
+            } catch (ClosedChannelException e) {
+                // another thread was interrupted during I/O, which closes the
+                // channel for everybody; reopen it
+                c = getChannel();
+                continue;
+            }
+            if (n < 0)
+                break;
+        }
+    }
+
+    // see DbFile.java for javadocs
     public Page readPage(PageId pid) {
-        Page page = null;
-        byte[] data = new byte[BufferPool.PAGE_SIZE];
-        try (RandomAccessFile raf = new RandomAccessFile(getFile(), "r")) {
-            int pos = pid.pageNumber() * BufferPool.PAGE_SIZE;
-            raf.seek(pos);
-            raf.read(data, 0, data.length);
-            page = new HeapPage((HeapPageId) pid, data);
+        if (pid.pageNumber() < 0 || pid.pageNumber() >= numPages()) {
+            throw new IllegalArgumentException("page " + pid.pageNumber() + " does not exist in " + file.getName());
+        }
+        byte[] data = new byte[pageSize];
+        try {
+            readFully(ByteBuffer.wrap(data), (long) pid.pageNumber() * pageSize);
+            return layout.createPage((HeapPageId) pid, ByteBuffer.wrap(data));
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalArgumentException("cannot read page " + pid.pageNumber() + " from file " + file.getName(), e);
         }
-        return page;
     }
 
     // see DbFile.java for javadocs
     public void writePage(Page page) throws IOException {
-        // some code goes here
-        // not necessary for proj1
+        ByteBuffer buf;
+        if (page instanceof TuplePage) {
+            // encode straight into a reusable direct buffer instead of
+            // building a byte array per write
+            buf = WRITE_BUFFER.get();
+            buf.clear();
+            ((TuplePage) page).writeTo(buf);
+            buf.flip();
+        } else {
+            buf = ByteBuffer.wrap(page.getPageData());
+        }
+        long position = (long) page.getId().pageNumber() * pageSize;
+        FileChannel c = getWritableChannel();
+        while (buf.hasRemaining()) {
+            try {
+                c.write(buf, position + buf.position());
+            } catch (ClosedByInterruptException e) {
+                throw e;
+            } catch (ClosedChannelException e) {
+                c = getWritableChannel();
+            }
+        }
     }
 
     /**
@@ -117,7 +253,7 @@ public class HeapFile implements DbFile {
      */
     public int numPages() {
         // some code goes here
-        return (int) file.length() / BufferPool.PAGE_SIZE;
+        return (int) (file.length() / pageSize);
     }
 
     // see DbFile.java for javadocs
@@ -142,5 +278,16 @@ public class HeapFile implements DbFile {
         return new DefaultDbFileIterator(this, tid);
     }
 
+    /**
+     * Returns an iterator over the tuples that satisfy the predicates,
+     * holding only the given fields. The pages test the predicates on their
+     * bytes, so tuples that do not match are not decoded, and only the
+     * given fields of the others are.
+     */
+    @Override
+    public DbFileIterator iterator(TransactionId tid, List<Predicate> predicates, int[] columns) {
+        return new DefaultDbFileIterator(this, tid, predicates, columns);
+    }
+
 }
 
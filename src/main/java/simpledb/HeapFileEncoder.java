@@ -1,7 +1,10 @@
 package simpledb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.UUID;
 
 /**
  * HeapFileEncoder reads a comma delimited text file or accepts
@@ -52,6 +55,107 @@ public class HeapFileEncoder {
         convert(tempInput, outFile, npagebytes, numFields);
     }
 
+    /**
+     * Append tuples to a HeapFile, in the page layout of that file. Each page
+     * is filled before the next one is started, so unlike the other convert
+     * methods this one also writes layouts with variable length records.
+     * The tuples are updated to reflect the page they are stored on.
+     *
+     * @param tuples the tuples to store, matching the schema of hf
+     * @param hf     the file to append to; it must have been added to the
+     *               Catalog
+     * @throws IOException if the file can't be written or a tuple does not
+     *                     fit on an empty page
+     * @see PageLayout
+     */
+    public static void convert(Iterator<Tuple> tuples, HeapFile hf) throws IOException {
+        int pageNo = hf.numPages();
+        TuplePage page = null;
+        try {
+            while (tuples.hasNext()) {
+                Tuple t = tuples.next();
+                if (page == null || !page.hasRoomFor(t)) {
+                    if (page != null)
+                        hf.writePage(page);
+                    page = hf.getLayout().createPage(new HeapPageId(hf.getId(), pageNo++),
+                            ByteBuffer.wrap(HeapPage.createEmptyPageData(hf.getPageSize())));
+                }
+                page.insertTuple(t);
+            }
+        } catch (DbException e) {
+            throw new IOException("cannot store tuple on page " + (pageNo - 1), e);
+        }
+        if (page != null)
+            hf.writePage(page);
+    }
+
+    /**
+     * Copy the tuples of an existing table into a new file with another page
+     * layout, e.g. to turn a .dat file of HeapPages into a columnar table of
+     * PaxPages. The page size of the source is kept. The new file is added
+     * to the Catalog under a random name; give it a proper name with
+     * {@link Catalog#addTable(DbFile, String)} if needed.
+     *
+     * @param source  the table to copy; it must be in the Catalog
+     * @param outFile the file to write, which must be empty or not exist
+     * @param layout  the page layout of the new file
+     * @return the new table
+     * @throws IOException if a file can't be read or written
+     */
+    public static HeapFile convert(HeapFile source, File outFile, PageLayout layout) throws IOException {
+        // HeapFile does not create the files it writes
+        outFile.createNewFile();
+        HeapFile target = new HeapFile(outFile, source.getTupleDesc(), layout, source.getPageSize());
+        Database.getCatalog().addTable(target, UUID.randomUUID().toString());
+        final DbFileIterator it = source.iterator(new TransactionId());
+        try {
+            it.open();
+            // stream the tuples, so only the page being read is in memory
+            convert(new Iterator<Tuple>() {
+                @Override
+                public boolean hasNext() {
+                    try {
+                        return it.hasNext();
+                    } catch (DbException | TransactionAbortedException e) {
+                        throw new ReadFailure(e);
+                    }
+                }
+
+                @Override
+                public Tuple next() {
+                    try {
+                        // copy, as inserting a tuple changes its RecordId
+                        Tuple t = it.next();
+                        Tuple copy = new Tuple(t.getTupleDesc());
+                        for (int j = 0; j < t.getTupleDesc().numFields(); j++)
+                            copy.setField(j, t.getField(j));
+                        return copy;
+                    } catch (DbException | TransactionAbortedException e) {
+                        throw new ReadFailure(e);
+                    }
+                }
+            }, target);
+        } catch (DbException | TransactionAbortedException | ReadFailure e) {
+            throw new IOException("cannot read " + source.getFile().getName(),
+                    e instanceof ReadFailure ? e.getCause() : e);
+        } finally {
+            it.close();
+        }
+        return target;
+    }
+
+    /**
+     * Carries an exception of the source table out of the Iterator that
+     * convert(HeapFile, File, PageLayout) streams its tuples through.
+     */
+    private static class ReadFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ReadFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
     public static void convert(File inFile, File outFile, int npagebytes,
                                int numFields) throws IOException {
         Type[] ts = new Type[numFields];
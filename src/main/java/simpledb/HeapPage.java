@@ -1,36 +1,69 @@
 package simpledb;
 
 import java.io.*;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
  * Each instance of HeapPage stores data for one page of HeapFiles and
  * implements the Page interface that is used by BufferPool.
- * 一页为 4kb
+ * 页的大小由所在文件决定，见 {@link DbFile#getPageSize()}（默认 4kb）
+ * <p>
+ * A HeapPage is decoded lazily: it keeps the raw bytes it was created from
+ * and only turns a slot into a Tuple when somebody asks for it (through
+ * {@link #iterator()} or {@link #getTuple(int)}), or decodes a single field
+ * with {@link #getField(int, int)}. Slot and field offsets follow from the
+ * fixed tuple size, {@link TupleDesc#getSize()}.
  *
  * @see HeapFile
  * @see BufferPool
  */
-public class HeapPage implements Page {
+public class HeapPage implements TuplePage {
 
     HeapPageId pid;
     TupleDesc td;
-    byte[] header;
+    SlotBitmap header;
+    int headerSize;
+    /**
+     * Decoded or modified tuples; a null entry of a used slot means the
+     * tuple has not been decoded from data yet
+     */
     Tuple[] tuples;
     int numSlots;
 
+    /**
+     * The bytes the page was created from; never modified. A read-only
+     * buffer is replaced by a copy before the page is first modified or
+     * overwritten on disk, see {@link #detach()}
+     */
+    volatile ByteBuffer data;
+    final int[] fieldOffsets;
+
+    /**
+     * The before image, or null while it is still equal to data. It is
+     * only copied out of data when the page is first dirtied, so pages that
+     * are only read hold a single buffer.
+     */
     byte[] oldData;
+    TransactionId dirtier;
+
+    /**
+     * The size of this page in bytes
+     */
+    final int pageSize;
+
+    private static final byte[] ZEROS = new byte[BufferPool.MAX_PAGE_SIZE];
 
     /**
      * Create a HeapPage from a set of bytes of data read from disk.
      * The format of a HeapPage is a set of header bytes indicating
      * the slots of the page that are in use, some number of tuple slots.
      * Specifically, the number of tuples is equal to: <p>
-     * floor((BufferPool.PAGE_SIZE*8) / (tuple size * 8 + 1))
+     * floor((page size*8) / (tuple size * 8 + 1))
      * <p> where tuple size is the size of tuples in this
-     * database table, which can be determined via {@link Catalog#getTupleDesc}.
+     * database table, which can be determined via {@link Catalog#getTupleDesc},
+     * and page size is the length of data ({@link DbFile#getPageSize}).
      * The number of 8-bit header words is equal to:
      * <p>
      * ceiling(no. tuple slots / 8)
@@ -41,30 +74,47 @@ public class HeapPage implements Page {
      * @see BufferPool#PAGE_SIZE
      */
     public HeapPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a HeapPage from a buffer holding the bytes of the page, e.g. a
+     * read-only view into a memory mapped file. The page keeps the buffer
+     * (not a copy) and decodes tuples out of it on demand, so the bytes must
+     * not change while the page is in use; a read-only buffer is copied
+     * before the page is first modified. The buffer's position and limit
+     * are left alone.
+     *
+     * @see #HeapPage(HeapPageId, byte[])
+     */
+    public HeapPage(HeapPageId id, ByteBuffer data) throws IOException {
         this.pid = id;
         this.td = Database.getCatalog().getTupleDesc(id.getTableId());
         // 根据tupleDesc算出每一行记录占用多少bit
         // 然后再处以每一页大小，可以得出一页总共能放多少行记录
+        this.data = data.slice();
+        this.pageSize = this.data.remaining();
         this.numSlots = getNumTuples();
-        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        if (numSlots == 0)
+            throw new IOException("page " + id.pageNumber() + " of " + pageSize + " bytes cannot hold a tuple");
 
         // allocate and read the header slots of this page
         // 一个header占用1个比特，一页有numSlots个tuple
-        header = new byte[getHeaderSize()];
-        for (int i = 0; i < header.length; i++)
-            header[i] = dis.readByte();
-
-        try {
-            // allocate and read the actual records of this page
-            tuples = new Tuple[numSlots];
-            for (int i = 0; i < tuples.length; i++)
-                tuples[i] = readNextTuple(dis, i);
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
+        headerSize = getHeaderSize();
+        header = SlotBitmap.read(this.data, 0, numSlots);
+
+        fieldOffsets = new int[td.numFields()];
+        int offset = 0;
+        for (int j = 0; j < fieldOffsets.length; j++) {
+            fieldOffsets[j] = offset;
+            offset += td.getFieldType(j).getLen();
         }
-        dis.close();
 
-        setBeforeImage();
+        // tuples are decoded on demand
+        tuples = new Tuple[numSlots];
+
+        // the before image is copied from data when the page is dirtied
+        oldData = null;
     }
 
     /**
@@ -77,8 +127,16 @@ public class HeapPage implements Page {
      * @return The returned ByteArray.
      */
     public static byte[] createEmptyPageData() {
-        int len = BufferPool.PAGE_SIZE;
-        return new byte[len]; //all 0
+        return createEmptyPageData(BufferPool.PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize the size of the page in bytes
+     * @return the bytes of an empty page of the given size
+     * @see #createEmptyPageData()
+     */
+    public static byte[] createEmptyPageData(int pageSize) {
+        return new byte[pageSize]; //all 0
     }
 
     /**
@@ -96,7 +154,7 @@ public class HeapPage implements Page {
         //
         //tupsPerPage = floor((BufferPool.PAGE_SIZE * 8) / (tuple size * 8 + 1))
 
-        return (BufferPool.PAGE_SIZE * 8) / (td.getSize() * 8 + 1);
+        return (pageSize * 8) / (td.getSize() * 8 + 1);
     }
 
     /**
@@ -119,6 +177,11 @@ public class HeapPage implements Page {
      */
     public HeapPage getBeforeImage() {
         try {
+            if (oldData == null) {
+                // never dirtied: the original bytes are the before image,
+                // and can be shared since they are never modified
+                return new HeapPage(pid, data);
+            }
             return new HeapPage(pid, oldData);
         } catch (IOException e) {
             e.printStackTrace();
@@ -129,7 +192,7 @@ public class HeapPage implements Page {
     }
 
     public void setBeforeImage() {
-        oldData = getPageData().clone();
+        oldData = getPageData();
     }
 
     /**
@@ -141,39 +204,61 @@ public class HeapPage implements Page {
     }
 
     /**
-     * Suck up tuples from the source file.
+     * @return the byte offset of the given slot in the page data
      */
-    private Tuple readNextTuple(DataInputStream dis, int slotId) throws NoSuchElementException {
-        // if associated bit is not set, read forward to the next tuple, and
-        // return null.
-        if (!isSlotUsed(slotId)) {
-            for (int i = 0; i < td.getSize(); i++) {
-                try {
-                    dis.readByte();
-                } catch (IOException e) {
-                    throw new NoSuchElementException("error reading empty tuple");
-                }
-            }
-            return null;
-        }
+    private int slotOffset(int slotId) {
+        return headerSize + slotId * td.getSize();
+    }
 
-        // read fields in the tuple
+    /**
+     * Decode the tuple in the given slot from the page data.
+     */
+    private Tuple readTuple(int slotId) {
         Tuple t = new Tuple(td);
         RecordId rid = new RecordId(pid, slotId);
         t.setRecordId(rid);
-        try {
-            for (int j = 0; j < td.numFields(); j++) {
-                Field f = td.getFieldType(j).parse(dis);
-                t.setField(j, f);
-            }
-        } catch (java.text.ParseException e) {
-            e.printStackTrace();
-            throw new NoSuchElementException("parsing error!");
+        int base = slotOffset(slotId);
+        for (int j = 0; j < td.numFields(); j++) {
+            td.getFieldType(j).read(data, base + fieldOffsets[j], t, j);
         }
+        return t;
+    }
 
+    /**
+     * Returns the tuple in the given slot, decoding it if this has not
+     * happened yet.
+     *
+     * @param slotId the slot to read
+     * @return the tuple in that slot, or null if the slot is empty
+     */
+    public Tuple getTuple(int slotId) {
+        if (!isSlotUsed(slotId))
+            return null;
+        Tuple t = tuples[slotId];
+        if (t == null) {
+            t = readTuple(slotId);
+            tuples[slotId] = t;
+        }
         return t;
     }
 
+    /**
+     * Returns a single field of the tuple in the given slot. If the tuple
+     * has not been decoded, only that field is decoded.
+     *
+     * @param slotId the slot to read
+     * @param i      the index of the field in the tuple
+     * @return the value of the field, or null if the slot is empty
+     */
+    public Field getField(int slotId, int i) {
+        if (!isSlotUsed(slotId))
+            return null;
+        Tuple t = tuples[slotId];
+        if (t != null)
+            return t.getField(i);
+        return td.getFieldType(i).parse(data, slotOffset(slotId) + fieldOffsets[i]);
+    }
+
     /**
      * Generates a byte array representing the contents of this page.
      * Used to serialize this page to disk.
@@ -186,64 +271,49 @@ public class HeapPage implements Page {
      * @see #HeapPage
      */
     public byte[] getPageData() {
-        int len = BufferPool.PAGE_SIZE;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(len);
-        DataOutputStream dos = new DataOutputStream(baos);
+        byte[] out = new byte[pageSize];
+        writeTo(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    /**
+     * Encodes this page into buf, in the format produced by getPageData,
+     * starting at the current position of buf; the position is advanced
+     * by the size of the page. Slots that were never decoded are
+     * copied from the original page bytes as they are.
+     *
+     * @param buf the buffer to write to
+     * @see #getPageData
+     */
+    public void writeTo(ByteBuffer buf) {
+        int start = buf.position();
+        int tupleSize = td.getSize();
 
         // create the header of the page
-        for (int i = 0; i < header.length; i++) {
-            try {
-                dos.writeByte(header[i]);
-            } catch (IOException e) {
-                // this really shouldn't happen
-                e.printStackTrace();
-            }
-        }
+        header.write(buf);
+        buf.put(ZEROS, 0, headerSize - SlotBitmap.byteLength(numSlots));
 
         // create the tuples
         for (int i = 0; i < tuples.length; i++) {
-
-            // empty slot
             if (!isSlotUsed(i)) {
-                for (int j = 0; j < td.getSize(); j++) {
-                    try {
-                        dos.writeByte(0);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
-                }
-                continue;
-            }
-
-            // non-empty slot
-            for (int j = 0; j < td.numFields(); j++) {
-                Field f = tuples[i].getField(j);
-                try {
-                    f.serialize(dos);
-
-                } catch (IOException e) {
-                    e.printStackTrace();
+                // empty slot
+                buf.put(ZEROS, 0, tupleSize);
+            } else if (tuples[i] == null) {
+                // non-empty slot that was never decoded: copy its bytes
+                ByteBuffer src = data.duplicate();
+                src.position(slotOffset(i));
+                src.limit(slotOffset(i) + tupleSize);
+                buf.put(src);
+            } else {
+                // non-empty slot
+                for (int j = 0; j < td.numFields(); j++) {
+                    td.getFieldType(j).write(buf, tuples[i], j);
                 }
             }
         }
 
         // padding
-        int zerolen = BufferPool.PAGE_SIZE - (header.length + td.getSize() * tuples.length); //- numSlots * td.getSize();
-        byte[] zeroes = new byte[zerolen];
-        try {
-            dos.write(zeroes, 0, zerolen);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        try {
-            dos.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return baos.toByteArray();
+        buf.put(ZEROS, 0, pageSize - (buf.position() - start));
     }
 
     /**
@@ -257,6 +327,23 @@ public class HeapPage implements Page {
     public void deleteTuple(Tuple t) throws DbException {
         // some code goes here
         // not necessary for lab1
+        detach();
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId()))
+            throw new DbException("tuple is not on page " + pid.pageNumber());
+        int slot = rid.tupleno();
+        if (slot < 0 || slot >= numSlots || !isSlotUsed(slot))
+            throw new DbException("slot " + slot + " is already empty");
+        markSlotUsed(slot, false);
+        tuples[slot] = null;
+        t.setRecordId(null);
+    }
+
+    /**
+     * @return true if t matches the schema of this page and a slot is free
+     */
+    public boolean hasRoomFor(Tuple t) {
+        return td.equals(t.getTupleDesc()) && header.nextFree(0) >= 0;
     }
 
     /**
@@ -270,6 +357,32 @@ public class HeapPage implements Page {
     public void insertTuple(Tuple t) throws DbException {
         // some code goes here
         // not necessary for lab1
+        detach();
+        if (!td.equals(t.getTupleDesc()))
+            throw new DbException("tupledesc is mismatch");
+        int slot = header.nextFree(0);
+        if (slot < 0)
+            throw new DbException("page " + pid.pageNumber() + " is full");
+        markSlotUsed(slot, true);
+        t.setRecordId(new RecordId(pid, slot));
+        tuples[slot] = t;
+    }
+
+    /**
+     * Replace data by a private copy if it is a read-only buffer, e.g. a
+     * view into a memory mapped file. Called before the page is modified,
+     * and by the file before it overwrites the page: once it does, the view
+     * holds the new bytes, while the tuples this page has not decoded yet
+     * and its before image must still come from the old ones. Pages that
+     * are only read keep the view.
+     */
+    @Override
+    public void detach() {
+        if (data.isReadOnly()) {
+            byte[] copy = new byte[pageSize];
+            data.duplicate().get(copy);
+            data = ByteBuffer.wrap(copy);
+        }
     }
 
     /**
@@ -279,6 +392,16 @@ public class HeapPage implements Page {
     public void markDirty(boolean dirty, TransactionId tid) {
         // some code goes here
         // not necessary for lab1
+        if (dirty && dirtier == null && oldData == null) {
+            detach();
+            // copy on write: the original bytes become the before image
+            // the first time the page is dirtied. They are copied so that
+            // the before image does not depend on whoever else holds the
+            // buffer the page was created from.
+            oldData = new byte[pageSize];
+            data.duplicate().get(oldData);
+        }
+        dirtier = dirty ? tid : null;
     }
 
     /**
@@ -287,7 +410,11 @@ public class HeapPage implements Page {
     public TransactionId isDirty() {
         // some code goes here
         // Not necessary for lab1
-        return null;
+        return dirtier;
+    }
+
+    public int getMemorySize() {
+        return oldData == null ? pageSize : pageSize + oldData.length;
     }
 
     /**
@@ -295,13 +422,7 @@ public class HeapPage implements Page {
      */
     public int getNumEmptySlots() {
         // some code goes here
-        int cnt = 0;
-        for (int i = 0; i < tuples.length; i++) {
-            if (!isSlotUsed(i)) {
-                cnt++;
-            }
-        }
-        return cnt;
+        return numSlots - header.cardinality();
     }
 
     /**
@@ -310,14 +431,7 @@ public class HeapPage implements Page {
      */
     public boolean isSlotUsed(int i) {
         // some code goes here
-        int byteNum = i / 8;
-        int posInByte = i % 8;
-
-        byte tb = header[byteNum];
-
-        byte move = (byte) (tb >> posInByte);
-        byte res = (byte) (move & 1);
-        return res == 1;
+        return header.get(i);
     }
 
     /**
@@ -326,6 +440,7 @@ public class HeapPage implements Page {
     private void markSlotUsed(int i, boolean value) {
         // some code goes here
         // not necessary for lab1
+        header.set(i, value);
     }
 
     /**
@@ -333,18 +448,140 @@ public class HeapPage implements Page {
      * (note that this iterator shouldn't return tuples in empty slots!)
      */
     public Iterator<Tuple> iterator() {
-        final Tuple[] tuples = this.tuples;
-        Tuple[] itArr = new Tuple[tuples.length - getNumEmptySlots()];
-
-        int idx = 0;
-        for (Tuple tuple : tuples) {
-            if (tuple != null) {
-                itArr[idx] = tuple;
-                idx++;
+        return new Iterator<Tuple>() {
+            private int slot = nextUsedSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < numSlots;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = getTuple(slot);
+                slot = nextUsedSlot(slot + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy filter,
+     * holding only the given fields. filter is tested on the bytes of each slot
+     * through a {@link SlotView}, and only the given fields of the tuples
+     * that match are decoded.
+     */
+    @Override
+    public Iterator<Tuple> iterator(final Evaluator filter, final int[] columns, final TupleDesc projected) {
+        if (filter == null && columns == null)
+            return iterator();
+        return new Iterator<Tuple>() {
+            private final SlotView view = new SlotView();
+            private int slot = nextMatch(0);
+
+            private int nextMatch(int from) {
+                int i = nextUsedSlot(from);
+                if (filter == null)
+                    return i;
+                while (i < numSlots && !filter.eval(view.at(i)))
+                    i = nextUsedSlot(i + 1);
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < numSlots;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = columns == null ? getTuple(slot) : readColumns(slot, columns, projected);
+                slot = nextMatch(slot + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Appends the tuples on this page that satisfy filter to batch. filter
+     * is tested on the page bytes, as in the iterator, and the fields of
+     * the tuples that match are decoded straight into the columns of the
+     * batch, so no Tuple is created. Positions are slot numbers.
+     */
+    @Override
+    public int fill(TupleBatch batch, int from, Evaluator filter, int[] columns) {
+        SlotView view = new SlotView();
+        int n = batch.getTupleDesc().numFields();
+        for (int slot = nextUsedSlot(from); slot < numSlots; slot = nextUsedSlot(slot + 1)) {
+            if (batch.isFull())
+                return slot;
+            if (filter != null && !filter.eval(view.at(slot)))
+                continue;
+            int row = batch.addRow(new RecordId(pid, slot));
+            Tuple t = tuples[slot];
+            for (int k = 0; k < n; k++) {
+                int j = columns == null ? k : columns[k];
+                Type type = td.getFieldType(j);
+                if (type == Type.INT_TYPE)
+                    batch.setInt(k, row, t != null ? t.getInt(j) : data.getInt(slotOffset(slot) + fieldOffsets[j]));
+                else
+                    batch.setField(k, row, t != null ? t.getField(j) : type.parse(data, slotOffset(slot) + fieldOffsets[j]));
             }
         }
-        return Arrays.asList(itArr).iterator();
+        return -1;
     }
 
-}
+    /**
+     * Decode the given fields of the tuple in the given used slot.
+     */
+    private Tuple readColumns(int slotId, int[] columns, TupleDesc projected) {
+        Tuple t = tuples[slotId];
+        if (t != null)
+            return t.project(columns, projected);
+        t = new Tuple(projected);
+        t.setRecordId(new RecordId(pid, slotId));
+        for (int k = 0; k < columns.length; k++)
+            td.getFieldType(columns[k]).read(data, slotOffset(slotId) + fieldOffsets[columns[k]], t, k);
+        return t;
+    }
+
+    /**
+     * A view of the tuple in a used slot that reads fields from the page
+     * bytes, or from the tuple if it has been decoded or inserted, so an
+     * Evaluator can test it without decoding it. Int fields are read
+     * without creating Fields.
+     */
+    private final class SlotView implements TupleView {
+        private int slot;
+        private Tuple tuple;
+
+        SlotView at(int slot) {
+            this.slot = slot;
+            this.tuple = tuples[slot];
+            return this;
+        }
+
+        @Override
+        public int getInt(int i) {
+            return tuple != null ? tuple.getInt(i) : data.getInt(slotOffset(slot) + fieldOffsets[i]);
+        }
 
+        @Override
+        public Field getField(int i) {
+            return tuple != null ? tuple.getField(i) : HeapPage.this.getField(slot, i);
+        }
+    }
+
+    /**
+     * @return the first used slot at or after from, or numSlots if there is none
+     */
+    private int nextUsedSlot(int from) {
+        int i = header.nextUsed(from);
+        return i < 0 ? numSlots : i;
+    }
+
+}
@@ -1,26 +1,55 @@
 package simpledb;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * The Join operator implements the relational join operation.
+ * <p>
+ * It is a block nested loops join that produces its result lazily: it
+ * reads a block of outer tuples, scans the inner child once for the whole
+ * block, and rewinds the inner child for the next block, so the inner
+ * child is read once per block instead of once per outer tuple. A block
+ * holds as many outer tuples as fit, with their header bits, in the bytes
+ * of the BufferPool that are free when the join is opened, less
+ * {@link #RESERVED_PAGES} frames for the pages of the children; at least
+ * one frame. The block is sized in bytes, so it does not depend on the page
+ * size of the outer child. The first rows are returned before the whole
+ * join is computed, and only one block is kept in memory. If the inner
+ * child is empty, no outer tuple is read.
  */
 public class Join extends Operator {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Free BufferPool frames left to the scans of the children
+     */
+    public static final int RESERVED_PAGES = 2;
+
     private JoinPredicate joinPredicate;
     private DbIterator child1;
     private DbIterator child2;
     private String child1FieldName;
     private String child2FieldName;
-    private List<Tuple> child1Tuples;
-    private List<Tuple> child2Tuples;
-    private List<Tuple> res;
-    private Iterator<Tuple> it;
+    private transient TupleDesc td;
+    /**
+     * The number of outer tuples in a block
+     */
+    private transient int blockSize;
+    /**
+     * The current block of outer tuples
+     */
+    private transient List<Tuple> block;
+    /**
+     * The inner tuple the block is being compared with, or null
+     */
+    private transient Tuple inner;
+    /**
+     * The index in the block of the next outer tuple to compare with inner
+     */
+    private transient int blockIndex;
 
     /**
      * Constructor. Accepts to children to join and the predicate to join them
@@ -37,9 +66,6 @@ public class Join extends Operator {
         this.child2 = child2;
         this.child1FieldName = child1.getTupleDesc().getFieldName(joinPredicate.getField1());
         this.child2FieldName = child2.getTupleDesc().getFieldName(joinPredicate.getField2());
-        this.child1Tuples = new ArrayList<>();
-        this.child2Tuples = new ArrayList<>();
-        this.res = new ArrayList<>();
     }
 
     public JoinPredicate getJoinPredicate() {
@@ -77,54 +103,61 @@ public class Join extends Operator {
     public void open() throws DbException, NoSuchElementException,
             TransactionAbortedException {
         // some code goes here
+        td = getTupleDesc();
+        blockSize = blockSize(Database.getBufferPool().getNumFreeBytes(), child1.getTupleDesc().getSize());
+        block = new ArrayList<Tuple>();
+        inner = null;
         child1.open();
         child2.open();
-
-        while (child1.hasNext()) {
-            child1Tuples.add(child1.next());
-        }
-        while (child2.hasNext()) {
-            child2Tuples.add(child2.next());
-        }
-
-        child1Tuples.forEach(tuple -> {
-            child2Tuples.forEach(x -> {
-                if (getJoinPredicate().filter(tuple, x)) {
-                    res.add(merge(tuple, x));
-                }
-            });
-        });
-
-        it = res.iterator();
         super.open();
     }
 
+    /**
+     * @param freeBytes the free bytes of the BufferPool
+     * @param tupleSize the size in bytes of an outer tuple
+     * @return the number of outer tuples in a block: as many as fit, with
+     * their header bits, in freeBytes less RESERVED_PAGES frames, and at
+     * least in one frame
+     */
+    static int blockSize(long freeBytes, int tupleSize) {
+        long bytes = Math.max(BufferPool.PAGE_SIZE, freeBytes - (long) RESERVED_PAGES * BufferPool.PAGE_SIZE);
+        long tuples = bytes * 8 / (tupleSize * 8 + 1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, tuples));
+    }
+
     private Tuple merge(Tuple t1, Tuple t2) {
-        Tuple tuple = new Tuple(getTupleDesc());
-        int idx = 0;
-        Iterator<Field> fields1 = t1.fields();
-        while (fields1.hasNext()) {
-            tuple.setField(idx, fields1.next());
-            idx++;
-        }
-        Iterator<Field> f2 = t2.fields();
-        while (f2.hasNext()) {
-            tuple.setField(idx, f2.next());
-            idx++;
-        }
+        Tuple tuple = new Tuple(td);
+        int n1 = t1.getTupleDesc().numFields();
+        for (int i = 0; i < n1; i++)
+            tuple.setField(i, t1, i);
+        for (int i = 0; i < t2.getTupleDesc().numFields(); i++)
+            tuple.setField(n1 + i, t2, i);
         return tuple;
     }
 
 
     public void close() {
         // some code goes here
+        super.close();
+        block = null;
+        inner = null;
         child1.close();
         child2.close();
     }
 
     public void rewind() throws DbException, TransactionAbortedException {
         // some code goes here
-        it = res.iterator();
+        child1.rewind();
+        child2.rewind();
+        block.clear();
+        inner = null;
+    }
+
+    /**
+     * @return the number of outer tuples read per scan of the inner child
+     */
+    public int getBlockSize() {
+        return blockSize;
     }
 
     /**
@@ -147,11 +180,33 @@ public class Join extends Operator {
      */
     protected Tuple fetchNext() throws TransactionAbortedException, DbException {
         // some code goes here
-
-        if (it != null && it.hasNext()) {
-            return it.next();
+        while (true) {
+            if (inner != null) {
+                while (blockIndex < block.size()) {
+                    Tuple outer = block.get(blockIndex++);
+                    if (joinPredicate.filter(outer, inner))
+                        return merge(outer, inner);
+                }
+                inner = null;
+            }
+            if (!block.isEmpty() && child2.hasNext()) {
+                inner = child2.next();
+                blockIndex = 0;
+                continue;
+            }
+            // the block is done, or there is none yet
+            boolean first = block.isEmpty();
+            // no outer tuple can match an empty inner child
+            if (first && !child2.hasNext())
+                return null;
+            block.clear();
+            while (block.size() < blockSize && child1.hasNext())
+                block.add(child1.next());
+            if (block.isEmpty())
+                return null;
+            if (!first)
+                child2.rewind();
         }
-        return null;
     }
 
     @Override
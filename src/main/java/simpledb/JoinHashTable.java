@@ -0,0 +1,135 @@
+package simpledb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JoinHashTable maps the join key of the build tuples of a hash join to the
+ * tuples with that key. When both join fields are INT_TYPE, keys are read
+ * unboxed with {@link Tuple#getInt} and kept in an open addressing table of
+ * ints, so neither building nor probing allocates a Field per tuple. Keys
+ * of other types are kept in a HashMap by Field.
+ *
+ * @see HashJoin
+ * @see ParallelHashJoin
+ */
+public class JoinHashTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int buildField;
+    private final int probeField;
+    private final boolean intKeys;
+
+    private Map<Field, List<Tuple>> map;
+    /**
+     * The int keys and their tuples; a slot is empty if its tuples are null
+     */
+    private int[] keys;
+    private List<Tuple>[] tuples;
+    private int size;
+
+    /**
+     * Create an empty table.
+     *
+     * @param buildTd    the schema of the tuples added to the table
+     * @param buildField the join field of the tuples added to the table
+     * @param probeTd    the schema of the tuples the table is probed with
+     * @param probeField the join field of the tuples the table is probed with
+     */
+    public JoinHashTable(TupleDesc buildTd, int buildField, TupleDesc probeTd, int probeField) {
+        this.buildField = buildField;
+        this.probeField = probeField;
+        this.intKeys = buildTd.getFieldType(buildField) == Type.INT_TYPE
+                && probeTd.getFieldType(probeField) == Type.INT_TYPE;
+        if (intKeys)
+            allocate(INITIAL_CAPACITY);
+        else
+            map = new HashMap<Field, List<Tuple>>();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        tuples = new List[capacity];
+    }
+
+    /**
+     * @return the slot of key, or of the empty slot where it would go
+     */
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (tuples[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Add a build tuple to the table.
+     */
+    public void add(Tuple t) {
+        if (!intKeys) {
+            map.computeIfAbsent(t.getField(buildField), k -> new ArrayList<Tuple>(1)).add(t);
+            return;
+        }
+        int key = t.getInt(buildField);
+        int i = slot(key);
+        if (tuples[i] == null) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+                i = slot(key);
+            }
+            keys[i] = key;
+            tuples[i] = new ArrayList<Tuple>(1);
+            size++;
+        }
+        tuples[i].add(t);
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        List<Tuple>[] oldTuples = tuples;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldTuples[i] != null) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                tuples[j] = oldTuples[i];
+            }
+        }
+    }
+
+    /**
+     * @param probe a probe tuple
+     * @return the build tuples whose join field equals that of probe, or
+     * null if there are none
+     */
+    public List<Tuple> get(Tuple probe) {
+        if (!intKeys)
+            return map.get(probe.getField(probeField));
+        return tuples[slot(probe.getInt(probeField))];
+    }
+
+    /**
+     * Returns the hash of a field of a tuple, reading INT fields unboxed.
+     * Equal fields of any two tuples have equal hashes, so the hash can be
+     * used to partition both inputs of a join.
+     *
+     * @param t     the tuple
+     * @param field the index of the field
+     */
+    public static int keyHash(Tuple t, int field) {
+        if (t.getTupleDesc().getFieldType(field) == Type.INT_TYPE)
+            // the same as IntField.hashCode
+            return t.getInt(field);
+        return t.getField(field).hashCode();
+    }
+}
@@ -11,8 +11,25 @@ import javax.swing.tree.*;
  * logical plan.
  */
 public class JoinOptimizer {
+
+    /**
+     * The memory, in bytes, that the cost of a nested loop join is
+     * estimated with by optimizers created without one: the default size
+     * of the BufferPool
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = (long) BufferPool.DEFAULT_PAGES * BufferPool.PAGE_SIZE;
+
+    /**
+     * The join operators the optimizer chooses between, in the order they
+     * are preferred when their estimated costs are equal
+     */
+    enum JoinAlgorithm {
+        HASH, SORT_MERGE, NESTED_LOOP
+    }
+
     LogicalPlan p;
     Vector<LogicalJoinNode> joins;
+    private final long memoryBudget;
 
     /**
      * Constructor
@@ -23,17 +40,30 @@ public class JoinOptimizer {
      *            the list of joins being performed
      */
     public JoinOptimizer(LogicalPlan p, Vector<LogicalJoinNode> joins) {
+        this(p, joins, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget
+     *            the BufferPool bytes a nested loop join is expected to
+     *            have for its blocks, see {@link #nestedLoopJoinCost}
+     * @see #JoinOptimizer(LogicalPlan, Vector)
+     */
+    public JoinOptimizer(LogicalPlan p, Vector<LogicalJoinNode> joins, long memoryBudget) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("memory budget must be positive");
         this.p = p;
         this.joins = joins;
+        this.memoryBudget = memoryBudget;
     }
 
     /**
      * Return best iterator for computing a given logical join, given the
-     * specified statistics, and the provided left and right subplans. Note that
-     * there is insufficient information to determine which plan should be the
-     * inner/outer here -- because DbIterator's don't provide any cardinality
-     * estimates, and stats only has information about the base tables. For this
-     * reason, the plan1
+     * estimated cardinality and scan cost of the left and right subplans.
+     * The operator is the one whose estimated cost is lowest: a
+     * {@link HashJoin}, a {@link SortMergeJoin}, which does not sort a
+     * subplan that is already sorted on its join field, or a {@link Join}.
+     * Only the last supports predicates other than EQUALS.
      * 
      * @param lj
      *            The join being considered
@@ -41,12 +71,15 @@ public class JoinOptimizer {
      *            The left join node's child
      * @param plan2
      *            The right join node's child
+     * @param left
+     *            The estimated cost and cardinality of plan1
+     * @param right
+     *            The estimated cost and cardinality of plan2
      */
-    public static DbIterator instantiateJoin(LogicalJoinNode lj,
-            DbIterator plan1, DbIterator plan2) throws ParsingException {
+    public DbIterator instantiateJoin(LogicalJoinNode lj,
+            DbIterator plan1, DbIterator plan2, CostCard left, CostCard right) throws ParsingException {
 
         int t1id = 0, t2id = 0;
-        DbIterator j;
 
         try {
             t1id = plan1.getTupleDesc().fieldNameToIndex(lj.f1QuantifiedName);
@@ -68,10 +101,16 @@ public class JoinOptimizer {
 
         JoinPredicate p = new JoinPredicate(t1id, lj.p, t2id);
 
-        j = new Join(p,plan1,plan2);
-
-        return j;
-
+        switch (cheapestJoin(lj.p, left.card, right.card, left.cost, right.cost,
+                plan1.getTupleDesc().getSize(), plan2.getTupleDesc().getSize(),
+                SortMergeJoin.isSortedOn(plan1, t1id), SortMergeJoin.isSortedOn(plan2, t2id))) {
+        case HASH:
+            return new HashJoin(p, plan1, plan2);
+        case SORT_MERGE:
+            return new SortMergeJoin(p, plan1, plan2);
+        default:
+            return new Join(p, plan1, plan2);
+        }
     }
 
     /**
@@ -107,14 +146,135 @@ public class JoinOptimizer {
             // You do not need to implement proper support for these for Lab 4.
             return card1 + cost1 + cost2;
         } else {
-            // Insert your code here.
-            // HINT: You may need to use the variable "j" if you implemented
-            // a join algorithm that's more complicated than a basic
-            // nested-loops join.
-            return -1.0;
+            int size1 = tupleSize(j.t1Alias);
+            int size2 = tupleSize(j.t2Alias);
+            JoinAlgorithm a = cheapestJoin(j.p, card1, card2, cost1, cost2, size1, size2, false, false);
+            return joinCost(a, card1, card2, cost1, cost2, size1, size2, false, false);
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the tuples of the table with the given
+     * alias.
+     */
+    private int tupleSize(String alias) {
+        return Database.getCatalog().getTupleDesc(p.getTableId(alias)).getSize();
+    }
+
+    /**
+     * @param sorted1 true if the left input is sorted on its join field
+     * @param sorted2 true if the right input is sorted on its join field
+     * @return the join operator with the lowest estimated cost for a join
+     * with the operator op; NESTED_LOOP unless op is EQUALS
+     * @see JoinAlgorithm
+     */
+    JoinAlgorithm cheapestJoin(Predicate.Op op, int card1, int card2,
+            double cost1, double cost2, int size1, int size2, boolean sorted1, boolean sorted2) {
+        if (op != Predicate.Op.EQUALS)
+            return JoinAlgorithm.NESTED_LOOP;
+        JoinAlgorithm best = null;
+        double bestCost = 0;
+        for (JoinAlgorithm a : JoinAlgorithm.values()) {
+            double cost = joinCost(a, card1, card2, cost1, cost2, size1, size2, sorted1, sorted2);
+            if (best == null || cost < bestCost) {
+                best = a;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private double joinCost(JoinAlgorithm a, int card1, int card2,
+            double cost1, double cost2, int size1, int size2, boolean sorted1, boolean sorted2) {
+        switch (a) {
+        case HASH:
+            return hashJoinCost(card1, card2, cost1, cost2, size1, size2);
+        case SORT_MERGE:
+            return sortMergeJoinCost(card1, card2, cost1, cost2, size1, size2, sorted1, sorted2);
+        default:
+            return nestedLoopJoinCost(card1, card2, cost1, cost2, size1, memoryBudget);
         }
     }
 
+    /**
+     * Estimate the cost of a {@link Join}: the outer input is read once, the
+     * inner once per block of outer tuples, and the predicate is applied to
+     * every pair.
+     *
+     * @param size1        the size in bytes of an outer tuple
+     * @param memoryBudget the free BufferPool bytes the join is expected to
+     *                     open with, which set the size of a block
+     */
+    public static double nestedLoopJoinCost(int card1, int card2,
+            double cost1, double cost2, int size1, long memoryBudget) {
+        double blocks = Math.max(1, Math.ceil((double) card1 / Join.blockSize(memoryBudget, size1)));
+        return cost1 + blocks * cost2 + (double) card1 * card2;
+    }
+
+    /**
+     * Estimate the cost of a {@link HashJoin}: both inputs are read once,
+     * the smaller one is hashed into a table and each tuple of the other
+     * probes it. If the smaller input does not fit in the default memory
+     * budget, both are partitioned to disk, which costs a write and a read
+     * of each.
+     *
+     * @param size1 the size in bytes of a left tuple
+     * @param size2 the size in bytes of a right tuple
+     */
+    public static double hashJoinCost(int card1, int card2,
+            double cost1, double cost2, int size1, int size2) {
+        double bytes1 = (double) card1 * size1;
+        double bytes2 = (double) card2 * size2;
+        double build = bytes1 < bytes2 ? card1 : card2;
+        double probe = bytes1 < bytes2 ? card2 : card1;
+        double cost = cost1 + cost2 + 2 * build + probe;
+        if (Math.min(bytes1, bytes2) > HashJoin.DEFAULT_MEMORY_BUDGET)
+            cost += 2 * (cost1 + cost2);
+        return cost;
+    }
+
+    /**
+     * Estimate the cost of a {@link SortMergeJoin} whose inputs both have to
+     * be sorted: each is read and sorted, then the two are merged with one
+     * comparison per tuple.
+     *
+     * @param size1 the size in bytes of a left tuple
+     * @param size2 the size in bytes of a right tuple
+     */
+    public static double sortMergeJoinCost(int card1, int card2,
+            double cost1, double cost2, int size1, int size2) {
+        return sortMergeJoinCost(card1, card2, cost1, cost2, size1, size2, false, false);
+    }
+
+    /**
+     * Estimate the cost of a {@link SortMergeJoin}. An input that is
+     * already sorted on its join field is only read.
+     *
+     * @param sorted1 true if the left input is sorted on its join field
+     * @param sorted2 true if the right input is sorted on its join field
+     * @see #sortMergeJoinCost(int, int, double, double, int, int)
+     */
+    public static double sortMergeJoinCost(int card1, int card2,
+            double cost1, double cost2, int size1, int size2, boolean sorted1, boolean sorted2) {
+        return (sorted1 ? cost1 : sortCost(card1, cost1, size1))
+                + (sorted2 ? cost2 : sortCost(card2, cost2, size2))
+                + card1 + card2;
+    }
+
+    /**
+     * Estimate the cost of sorting an input with an {@link OrderBy}: it is
+     * read once and sorted in card*log2(card) comparisons. If it does not
+     * fit in the default memory budget, the sorted runs are also written to
+     * and read back from disk.
+     */
+    static double sortCost(int card, double cost, int size) {
+        double sort = card > 1 ? card * (Math.log(card) / Math.log(2)) : 0;
+        double io = cost;
+        if ((double) card * size > OrderBy.DEFAULT_MEMORY_BUDGET)
+            io += 2 * cost;
+        return io + sort;
+    }
+
     /**
      * Estimate the cardinality of a join. The cardinality of a join is the
      * number of tuples produced by the join.
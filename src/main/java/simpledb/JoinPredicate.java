@@ -34,12 +34,16 @@ public class JoinPredicate implements Serializable {
 
     /**
      * Apply the predicate to the two specified tuples. The comparison can be
-     * made through Field's compare method.
+     * made through Field's compare method; two INT fields are compared
+     * unboxed, without allocating a Field for either.
      *
      * @return true if the tuples satisfy the predicate.
      */
     public boolean filter(Tuple t1, Tuple t2) {
         // some code goes here
+        if (t1.getTupleDesc().getFieldType(field1) == Type.INT_TYPE
+                && t2.getTupleDesc().getFieldType(field2) == Type.INT_TYPE)
+            return IntField.compare(t1.getInt(field1), op, t2.getInt(field2));
         return t1.getField(field1).compare(getOperator(),t2.getField(field2));
     }
 
@@ -1,10 +1,15 @@
 package simpledb;
 import java.util.Map;
 import java.util.Vector;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Iterator;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
@@ -271,6 +276,41 @@ public class LogicalPlan {
         throw new ParsingException("Unknown predicate " + s);
     }
 
+    /** Return the fields of the table with the given alias that are read above its
+     *  scan: the fields of the select list, the joins, the aggregate and the ORDER BY.
+     *  Filters are evaluated inside the scan and need not be returned by it.
+     *  @return the indexes of those fields in table order, or null if all of them are read
+     */
+    int[] scanColumns(String alias) {
+        HashSet<String> names = new HashSet<String>();
+        for (LogicalSelectListNode si : selectList) {
+            if (si.fname.endsWith(".*"))
+                return null;
+            names.add(si.fname);
+        }
+        for (LogicalJoinNode lj : joins) {
+            names.add(lj.f1QuantifiedName);
+            names.add(lj.f2QuantifiedName);
+        }
+        if (hasAgg) {
+            names.add(aggField);
+            names.add(groupByField);
+        }
+        if (hasOrderBy)
+            names.add(oByField);
+
+        TupleDesc td = Database.getCatalog().getTupleDesc(getTableId(alias));
+        int[] columns = new int[td.numFields()];
+        int n = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (names.contains(alias + "." + td.getFieldName(i)))
+                columns[n++] = i;
+        }
+        if (n == 0 || n == td.numFields())
+            return null;
+        return Arrays.copyOf(columns, n);
+    }
+
     /** Convert this LogicalPlan into a physicalPlan represented by a {@link DbIterator}.  Attempts to
      *   find the optimal plan by using {@link JoinOptimizer#orderJoins} to order the joins in the plan.
      *  @param t The transaction that the returned DbIterator will run as a part of
@@ -306,6 +346,9 @@ public class LogicalPlan {
 
         }
 
+        // the filters of each table are pushed down into its scan, which
+        // tests them on the page bytes before it decodes a tuple
+        Map<String, List<Predicate>> tablePredicates = new LinkedHashMap<String, List<Predicate>>();
         Iterator<LogicalFilterNode> filterIt = filters.iterator();        
         while (filterIt.hasNext()) {
             LogicalFilterNode lf = filterIt.next();
@@ -334,7 +377,7 @@ public class LogicalPlan {
             } catch (NoSuchElementException e) {
                 throw new ParsingException("Unknown field " + lf.fieldQuantifiedName);
             }
-            subplanMap.put(lf.tableAlias, new Filter(p, subplan));
+            tablePredicates.computeIfAbsent(lf.tableAlias, k -> new ArrayList<Predicate>()).add(p);
 
             TableStats s = statsMap.get(Database.getCatalog().getTableName(this.getTableId(lf.tableAlias)));
             
@@ -343,11 +386,33 @@ public class LogicalPlan {
 
             //s.addSelectivityFactor(estimateFilterSelectivity(lf,statsMap));
         }
+        // each scan also decodes only the fields read above it
+        for (LogicalScanNode table : tables) {
+            List<Predicate> predicates = tablePredicates.get(table.alias);
+            int[] columns = scanColumns(table.alias);
+            if (predicates != null || columns != null) {
+                subplanMap.put(table.alias, new SeqScan(t, table.t, table.alias,
+                        predicates == null ? Collections.<Predicate>emptyList() : predicates, columns));
+            }
+        }
         
         JoinOptimizer jo = new JoinOptimizer(this,joins);
 
         joins = jo.orderJoins(statsMap,filterSelectivities,explain);
 
+        // the estimated cost and cardinality of each subplan, by the same
+        // names as subplanMap; they choose the operator of each join
+        HashMap<String,CostCard> estimates = new HashMap<String,CostCard>();
+        for (LogicalScanNode table : tables) {
+            CostCard cc = new CostCard();
+            TableStats s = statsMap.get(Database.getCatalog().getTableName(table.t));
+            if (s != null) {
+                cc.cost = s.estimateScanCost();
+                cc.card = s.estimateTableCardinality(filterSelectivities.get(table.alias));
+            }
+            estimates.put(table.alias, cc);
+        }
+
         Iterator<LogicalJoinNode> joinIt = joins.iterator();
         while (joinIt.hasNext()) {
             LogicalJoinNode lj = joinIt.next();
@@ -381,9 +446,16 @@ public class LogicalPlan {
             if (plan2 == null)
                 throw new ParsingException("Unknown table in WHERE clause " + lj.t2Alias);
             
+            // nothing is known about a subquery
+            CostCard left = estimates.get(t1name);
+            CostCard right = isSubqueryJoin ? new CostCard() : estimates.get(t2name);
             DbIterator j;
-            j = jo.instantiateJoin(lj,plan1,plan2);
+            j = jo.instantiateJoin(lj,plan1,plan2,left,right);
             subplanMap.put(t1name, j);
+            CostCard joined = new CostCard();
+            joined.cost = jo.estimateJoinCost(lj, left.card, right.card, left.cost, right.cost);
+            joined.card = jo.estimateJoinCardinality(lj, left.card, right.card, false, false, statsMap);
+            estimates.put(t1name, joined);
 
             if (!isSubqueryJoin) {
                 subplanMap.remove(t2name);
@@ -0,0 +1,45 @@
+package simpledb;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used eviction. Resident pages are kept in an access ordered
+ * LinkedHashMap, so the eldest entry is always the page that has gone the
+ * longest without being accessed.
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+    private final LinkedHashMap<PageId, Boolean> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public String getName() {
+        return "LRU";
+    }
+
+    @Override
+    public void pageAdmitted(PageId pid) {
+        pages.put(pid, Boolean.TRUE);
+    }
+
+    @Override
+    public void pageAccessed(PageId pid) {
+        // get() moves the entry to the tail of an access ordered map
+        pages.get(pid);
+    }
+
+    @Override
+    public void pageRemoved(PageId pid) {
+        pages.remove(pid);
+    }
+
+    @Override
+    public Iterator<PageId> victims() {
+        return pages.keySet().iterator();
+    }
+
+    @Override
+    public void clear() {
+        pages.clear();
+    }
+}
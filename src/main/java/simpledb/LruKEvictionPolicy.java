@@ -0,0 +1,112 @@
+package simpledb;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LRU-K eviction (O'Neil, O'Neil and Weikum). For every page the policy
+ * remembers the times of its last K references and evicts the resident page
+ * whose K-th most recent reference lies furthest in the past. Pages with
+ * fewer than K references have an infinite backward K-distance and go first,
+ * in LRU order among themselves.
+ * <p>
+ * Reference histories outlive residency, so a page that is evicted and read
+ * again soon after keeps its history; only the most recent
+ * {@link #RETAINED_HISTORIES} non-resident histories are kept.
+ */
+public class LruKEvictionPolicy implements EvictionPolicy {
+
+    public static final int DEFAULT_K = 2;
+    public static final int RETAINED_HISTORIES = 1024;
+
+    private final int k;
+    private long clock = 0;
+
+    private final Map<PageId, long[]> history = new HashMap<>();
+    private final Set<PageId> resident = new HashSet<>();
+    private final LinkedHashMap<PageId, Boolean> retained = new LinkedHashMap<PageId, Boolean>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PageId, Boolean> eldest) {
+            if (size() > RETAINED_HISTORIES) {
+                history.remove(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * @param k the number of references remembered for each page
+     */
+    public LruKEvictionPolicy(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be at least 1");
+        this.k = k;
+    }
+
+    @Override
+    public String getName() {
+        return "LRU-" + k;
+    }
+
+    @Override
+    public void pageAdmitted(PageId pid) {
+        retained.remove(pid);
+        resident.add(pid);
+        reference(pid);
+    }
+
+    @Override
+    public void pageAccessed(PageId pid) {
+        if (resident.contains(pid))
+            reference(pid);
+    }
+
+    @Override
+    public void pageRemoved(PageId pid) {
+        if (resident.remove(pid))
+            retained.put(pid, Boolean.TRUE);
+    }
+
+    /**
+     * Shift the reference history of pid and record a reference now.
+     * history[0] is the most recent reference, history[k-1] the K-th most
+     * recent one; unused entries are 0.
+     */
+    private void reference(PageId pid) {
+        long[] h = history.get(pid);
+        if (h == null) {
+            h = new long[k];
+            history.put(pid, h);
+        }
+        System.arraycopy(h, 0, h, 1, k - 1);
+        h[0] = ++clock;
+    }
+
+    @Override
+    public Iterator<PageId> victims() {
+        List<PageId> order = new ArrayList<>(resident);
+        // a K-th reference of 0 means "fewer than K references", which sorts
+        // first; ties are broken by the most recent reference (plain LRU)
+        order.sort(Comparator.<PageId>comparingLong(pid -> history.get(pid)[k - 1])
+                .thenComparingLong(pid -> history.get(pid)[0]));
+        return order.iterator();
+    }
+
+    @Override
+    public void clear() {
+        history.clear();
+        resident.clear();
+        retained.clear();
+        clock = 0;
+    }
+}
@@ -0,0 +1,198 @@
+package simpledb;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MappedHeapFile is a HeapFile whose pages are read through a memory mapping
+ * of the file instead of a read system call per page. It is meant for
+ * large, read-mostly tables: a page is a read-only view into the mapping and
+ * decodes its tuples straight out of the OS page cache, with no copy. A page
+ * copies its bytes out of the view before it is first modified, and before
+ * a page is written back the file detaches every page object it handed out
+ * for it that is still in use (see {@link TuplePage#detach()}), e.g. the
+ * copy of a scan ring, so writing a page never changes the tuples or the
+ * before image of another reader.
+ * <p>
+ * A single MappedByteBuffer can address at most 2 GB, so the file is mapped
+ * as a chain of segments of {@link #DEFAULT_SEGMENT_SIZE} bytes (a multiple
+ * of the page size, so no page straddles two segments). Writes still go
+ * through the FileChannel of HeapFile; the mapping shares the page cache and
+ * sees them. When the file grows past the mapped range the missing segments
+ * are mapped on demand.
+ * <p>
+ * Enable it for a table by adding the <code>mmap</code> option after the
+ * schema in the catalog file, e.g. <code>dim (id int pk, name string) mmap</code>.
+ *
+ * @see Catalog#loadSchema
+ */
+public class MappedHeapFile extends HeapFile {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The largest multiple of the maximum page size, and so of every page
+     * size, that fits in one mapping.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE =
+            (Integer.MAX_VALUE / BufferPool.MAX_PAGE_SIZE) * (long) BufferPool.MAX_PAGE_SIZE;
+
+    private final long segmentSize;
+    private transient MappedByteBuffer[] segments;
+    private transient long mappedLength;
+    /**
+     * The pages handed out by readPage that may still read from the
+     * mapping, by page number
+     */
+    private transient Map<Integer, List<WeakReference<TuplePage>>> views;
+
+    /**
+     * Constructs a memory mapped heap file backed by the specified file.
+     *
+     * @param f  the file that stores the on-disk backing store for this heap
+     *           file.
+     * @param td the schema of the table
+     */
+    public MappedHeapFile(File f, TupleDesc td) {
+        this(f, td, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param f           the file that stores the on-disk backing store
+     * @param td          the schema of the table
+     * @param segmentSize the number of bytes per mapped segment; must be a
+     *                    positive multiple of the page size of at most 2 GB
+     */
+    public MappedHeapFile(File f, TupleDesc td, long segmentSize) {
+        this(f, td, PageLayout.HEAP, BufferPool.PAGE_SIZE, segmentSize);
+    }
+
+    /**
+     * @param f           the file that stores the on-disk backing store
+     * @param td          the schema of the table
+     * @param layout      the format of the pages of the file
+     * @param pageSize    the size of the pages of the file in bytes
+     * @param segmentSize the number of bytes per mapped segment; must be a
+     *                    positive multiple of the page size of at most 2 GB
+     */
+    public MappedHeapFile(File f, TupleDesc td, PageLayout layout, int pageSize, long segmentSize) {
+        super(f, td, layout, pageSize);
+        if (segmentSize <= 0 || segmentSize % pageSize != 0 || segmentSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("segment size must be a multiple of the page size below 2 GB");
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns a read-only view of the bytes of the given page. The view
+     * shares memory with the mapping, so it changes when the page is
+     * written.
+     */
+    private synchronized ByteBuffer pageView(int pageNo) throws IOException {
+        int pageSize = getPageSize();
+        long start = (long) pageNo * pageSize;
+        if (segments == null || start + pageSize > mappedLength) {
+            map();
+        }
+        MappedByteBuffer segment = segments[(int) (start / segmentSize)];
+        ByteBuffer view = segment.duplicate();
+        int offset = (int) (start % segmentSize);
+        view.position(offset);
+        view.limit(offset + pageSize);
+        return view.slice();
+    }
+
+    /**
+     * (Re)map the file. Full segments that are already mapped are kept; the
+     * last, partial segment is mapped again to cover the current length.
+     */
+    private void map() throws IOException {
+        FileChannel c = getChannel();
+        long length = c.size();
+        int count = (int) ((length + segmentSize - 1) / segmentSize);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long size = Math.min(segmentSize, length - start);
+            if (segments != null && i < segments.length && segments[i].capacity() == size) {
+                mapped[i] = segments[i];
+            } else {
+                mapped[i] = c.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+        }
+        segments = mapped;
+        mappedLength = length;
+    }
+
+    // see DbFile.java for javadocs
+    @Override
+    public Page readPage(PageId pid) {
+        if (pid.pageNumber() < 0 || pid.pageNumber() >= numPages()) {
+            throw new IllegalArgumentException("page " + pid.pageNumber() + " does not exist in " + getFile().getName());
+        }
+        try {
+            TuplePage page = getLayout().createPage((HeapPageId) pid, pageView(pid.pageNumber()));
+            addView(pid.pageNumber(), page);
+            return page;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot map page " + pid.pageNumber() + " of file " + getFile().getName(), e);
+        }
+    }
+
+    /**
+     * Remember a page that reads from the mapping, dropping the pages of
+     * the same number that have been collected.
+     */
+    private synchronized void addView(int pageNo, TuplePage page) {
+        if (views == null)
+            views = new HashMap<Integer, List<WeakReference<TuplePage>>>();
+        List<WeakReference<TuplePage>> pages = views.get(pageNo);
+        if (pages == null) {
+            pages = new ArrayList<WeakReference<TuplePage>>(2);
+            views.put(pageNo, pages);
+        }
+        for (Iterator<WeakReference<TuplePage>> it = pages.iterator(); it.hasNext(); ) {
+            if (it.next().get() == null)
+                it.remove();
+        }
+        pages.add(new WeakReference<TuplePage>(page));
+    }
+
+    /**
+     * Detaches the pages read from the mapping for the page being written
+     * from it first, so they keep seeing the bytes they were read from.
+     */
+    @Override
+    public void writePage(Page page) throws IOException {
+        List<WeakReference<TuplePage>> pages;
+        synchronized (this) {
+            pages = views == null ? null : views.remove(page.getId().pageNumber());
+        }
+        if (pages != null) {
+            for (WeakReference<TuplePage> ref : pages) {
+                TuplePage p = ref.get();
+                if (p != null)
+                    p.detach();
+            }
+        }
+        super.writePage(page);
+    }
+
+    /**
+     * Drops the mappings and closes the channel of this file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        segments = null;
+        mappedLength = 0;
+        super.close();
+    }
+}
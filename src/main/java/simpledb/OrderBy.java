@@ -1,13 +1,26 @@
 package simpledb;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
  * OrderBy is an operator that implements a relational ORDER BY.
+ * <p>
+ * It is an external merge sort: the tuples of the child are sorted in
+ * memory as long as they fit in a memory budget, counted as their size on
+ * disk. A larger input is cut into runs of that size, which are sorted and
+ * written to {@link SpillFile}s, and the runs are merged while the result
+ * is read, keeping one page of each run in memory. The sort is stable.
  */
 public class OrderBy extends Operator {
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * The memory budget of sorts created without one, in bytes
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 16L << 20;
+
     private DbIterator child;
     private TupleDesc td;
     private ArrayList<Tuple> childTups = new ArrayList<Tuple>();
@@ -15,6 +28,31 @@ public class OrderBy extends Operator {
     private String orderByFieldName;
     private Iterator<Tuple> it;
     private boolean asc;
+    private final long memoryBudget;
+
+    /**
+     * The sorted runs written to disk, empty if the input fit in memory
+     */
+    private transient List<SpillFile> runs;
+    /**
+     * The next tuple of each run that is not exhausted, smallest first
+     */
+    private transient PriorityQueue<Run> merge;
+
+    /**
+     * The rest of a sorted run being merged
+     */
+    private static final class Run {
+        final int index;
+        final Iterator<Tuple> tuples;
+        Tuple head;
+
+        Run(int index, Iterator<Tuple> tuples) {
+            this.index = index;
+            this.tuples = tuples;
+            this.head = tuples.next();
+        }
+    }
 
     /**
      * Creates a new OrderBy node over the tuples from the iterator.
@@ -24,11 +62,23 @@ public class OrderBy extends Operator {
      * @param child        the tuples to sort.
      */
     public OrderBy(int orderbyField, boolean asc, DbIterator child) {
+        this(orderbyField, asc, child, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget the number of bytes of tuples to sort in memory
+     *                     before they are written to a run
+     * @see #OrderBy(int, boolean, DbIterator)
+     */
+    public OrderBy(int orderbyField, boolean asc, DbIterator child, long memoryBudget) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("memory budget must be positive");
         this.child = child;
         td = child.getTupleDesc();
         this.orderByField = orderbyField;
         this.orderByFieldName = td.getFieldName(orderbyField);
         this.asc = asc;
+        this.memoryBudget = memoryBudget;
     }
 
     public boolean isASC() {
@@ -47,24 +97,95 @@ public class OrderBy extends Operator {
         return td;
     }
 
+    /**
+     * @return the number of runs the input was written to, 0 if it was
+     * sorted in memory
+     */
+    public int getNumRuns() {
+        return runs == null ? 0 : runs.size();
+    }
+
     public void open() throws DbException, NoSuchElementException,
             TransactionAbortedException {
         child.open();
-        // load all the tuples in a collection, and sort it
-        while (child.hasNext())
-            childTups.add((Tuple) child.next());
-        Collections.sort(childTups, new TupleComparator(orderByField, asc));
-        it = childTups.iterator();
+        deleteRuns();
+        runs = new ArrayList<SpillFile>();
+        childTups.clear();
+        TupleComparator comparator = new TupleComparator(orderByField, asc, td.getFieldType(orderByField));
+        long runSize = Math.max(1, memoryBudget / td.getSize());
+        try {
+            // load the tuples in a collection and sort it, writing it to a
+            // run whenever it is full
+            while (child.hasNext()) {
+                if (childTups.size() == runSize) {
+                    Collections.sort(childTups, comparator);
+                    SpillFile run = new SpillFile(td);
+                    runs.add(run);
+                    for (Tuple t : childTups)
+                        run.add(t);
+                    childTups.clear();
+                }
+                childTups.add(child.next());
+            }
+            Collections.sort(childTups, comparator);
+            if (!runs.isEmpty()) {
+                SpillFile run = new SpillFile(td);
+                runs.add(run);
+                for (Tuple t : childTups)
+                    run.add(t);
+                childTups.clear();
+            }
+        } catch (IOException e) {
+            throw new DbException("cannot write sorted run: " + e.getMessage());
+        }
+        startMerge();
         super.open();
     }
 
+    /**
+     * Start returning tuples from the beginning.
+     */
+    private void startMerge() throws DbException {
+        if (runs.isEmpty()) {
+            it = childTups.iterator();
+            return;
+        }
+        final TupleComparator comparator = new TupleComparator(orderByField, asc, td.getFieldType(orderByField));
+        // ties go to the earlier run, so the sort is stable
+        merge = new PriorityQueue<Run>(runs.size(), (r1, r2) -> {
+            int c = comparator.compare(r1.head, r2.head);
+            return c != 0 ? c : Integer.compare(r1.index, r2.index);
+        });
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Iterator<Tuple> tuples = runs.get(i).iterator();
+                if (tuples.hasNext())
+                    merge.add(new Run(i, tuples));
+            }
+        } catch (IOException e) {
+            throw new DbException("cannot read sorted run: " + e.getMessage());
+        }
+    }
+
+    private void deleteRuns() {
+        if (runs != null) {
+            for (SpillFile run : runs)
+                run.delete();
+            runs = null;
+        }
+        merge = null;
+    }
+
     public void close() {
         super.close();
         it = null;
+        childTups.clear();
+        deleteRuns();
+        child.close();
     }
 
     public void rewind() throws DbException, TransactionAbortedException {
-        it = childTups.iterator();
+        startMerge();
     }
 
     /**
@@ -76,6 +197,17 @@ public class OrderBy extends Operator {
      */
     protected Tuple fetchNext() throws NoSuchElementException,
             TransactionAbortedException, DbException {
+        if (merge != null) {
+            Run run = merge.poll();
+            if (run == null)
+                return null;
+            Tuple t = run.head;
+            if (run.tuples.hasNext()) {
+                run.head = run.tuples.next();
+                merge.add(run);
+            }
+            return t;
+        }
         if (it != null && it.hasNext()) {
             return it.next();
         } else
@@ -97,13 +229,27 @@ public class OrderBy extends Operator {
 class TupleComparator implements Comparator<Tuple> {
     int field;
     boolean asc;
+    boolean intField;
 
     public TupleComparator(int field, boolean asc) {
+        this(field, asc, null);
+    }
+
+    /**
+     * @param type the type of the field, or null if unknown; INT_TYPE
+     *             fields are compared unboxed
+     */
+    public TupleComparator(int field, boolean asc, Type type) {
         this.field = field;
         this.asc = asc;
+        this.intField = type == Type.INT_TYPE;
     }
 
     public int compare(Tuple o1, Tuple o2) {
+        if (intField) {
+            int c = Integer.compare(o1.getInt(field), o2.getInt(field));
+            return asc ? c : -c;
+        }
         Field t1 = (o1).getField(field);
         Field t2 = (o2).getField(field);
         if (t1.compare(Predicate.Op.EQUALS, t2))
@@ -57,4 +57,10 @@ public interface Page {
      * copy current content to the before image.
      */
     void setBeforeImage();
+
+    /**
+     * @return the number of bytes of memory held by this page, including
+     * its before image if it keeps a copy of one
+     */
+    int getMemorySize();
 }
@@ -0,0 +1,59 @@
+package simpledb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The on-disk format of the pages of a HeapFile.
+ *
+ * @see HeapFile#getLayout
+ */
+public enum PageLayout {
+    /**
+     * Fixed size slots and a slot bitmap, see {@link HeapPage}.
+     */
+    HEAP() {
+        @Override
+        public TuplePage createPage(HeapPageId pid, ByteBuffer data) throws IOException {
+            return new HeapPage(pid, data);
+        }
+    },
+    /**
+     * A slot directory and variable length records, see {@link SlottedPage}.
+     */
+    SLOTTED() {
+        @Override
+        public TuplePage createPage(HeapPageId pid, ByteBuffer data) throws IOException {
+            return new SlottedPage(pid, data);
+        }
+    },
+    /**
+     * The values of each field stored together, see {@link PaxPage}.
+     */
+    PAX() {
+        @Override
+        public TuplePage createPage(HeapPageId pid, ByteBuffer data) throws IOException {
+            return new PaxPage(pid, data);
+        }
+    },
+    /**
+     * Columns with dictionary and run-length encoded strings, see
+     * {@link DictionaryPage}.
+     */
+    DICTIONARY() {
+        @Override
+        public TuplePage createPage(HeapPageId pid, ByteBuffer data) throws IOException {
+            return new DictionaryPage(pid, data);
+        }
+    };
+
+    /**
+     * Decode a page of this layout.
+     *
+     * @param pid  the id of the page
+     * @param data the bytes of the page; a page of the zero bytes returned by
+     *             {@link HeapPage#createEmptyPageData()} is empty in every
+     *             layout
+     */
+    public abstract TuplePage createPage(HeapPageId pid, ByteBuffer data) throws IOException;
+}
@@ -0,0 +1,372 @@
+package simpledb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ParallelHashJoin joins its children on the equality of a field of each,
+ * like {@link HashJoin}, with several threads. Both inputs are read by the
+ * thread that opens the join and radix-partitioned into
+ * {@link #NUM_PARTITIONS} partitions by the high bits of a hash of the join
+ * field. Each pair of matching partitions is then joined by a task on a
+ * ForkJoinPool, which builds a hash table on the smaller partition and
+ * probes it with the other one. The tasks hand their results in batches to
+ * a bounded queue, from which fetchNext returns them; a task blocks while
+ * the queue is full, so the join runs at most {@link #QUEUE_CAPACITY}
+ * batches ahead of its parent.
+ * <p>
+ * The pool is created the first time the join is opened and kept for later
+ * opens and rewinds; its threads exit on their own while it is idle.
+ * <p>
+ * Both inputs are kept in memory; use a HashJoin for inputs that do not fit.
+ * The result tuples are the same as those of {@link Join}, in an order that
+ * varies from run to run.
+ */
+public class ParallelHashJoin extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of bits of the hash of the join field that select a
+     * partition
+     */
+    public static final int RADIX_BITS = 6;
+
+    /**
+     * The number of partitions each input is split into
+     */
+    public static final int NUM_PARTITIONS = 1 << RADIX_BITS;
+
+    /**
+     * The number of result tuples a task hands to the parent at a time
+     */
+    public static final int BATCH_SIZE = 256;
+
+    /**
+     * The number of batches that may wait for the parent
+     */
+    public static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Marks the end of the results in the queue
+     */
+    private static final List<Tuple> END = Collections.emptyList();
+
+    private final JoinPredicate joinPredicate;
+    private final int parallelism;
+    private DbIterator child1;
+    private DbIterator child2;
+
+    private transient TupleDesc td;
+    /**
+     * The threads of this join, or null before the first open
+     */
+    private transient ForkJoinPool pool;
+    /**
+     * The partitions of child1 and child2
+     */
+    private transient List<List<Tuple>> outerParts;
+    private transient List<List<Tuple>> innerParts;
+    private transient Run run;
+    private transient Iterator<Tuple> batch;
+
+    /**
+     * The state of one pass of the tasks over the partitions, so that a
+     * rewind can abandon the tasks of the previous one
+     */
+    private static final class Run {
+        final BlockingQueue<List<Tuple>> queue = new ArrayBlockingQueue<List<Tuple>>(QUEUE_CAPACITY);
+        final AtomicInteger remaining;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        volatile boolean cancelled;
+        boolean done;
+
+        Run(int tasks) {
+            remaining = new AtomicInteger(tasks);
+        }
+
+        /**
+         * Add a batch to the queue, waiting while it is full.
+         *
+         * @return false if the run was cancelled
+         */
+        boolean put(List<Tuple> batch) throws InterruptedException {
+            while (!queue.offer(batch, 10, TimeUnit.MILLISECONDS)) {
+                if (cancelled)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Constructor. Accepts two children to join on an EQUALS predicate,
+     * with one thread per available processor.
+     *
+     * @param p      The predicate to use to join the children
+     * @param child1 Iterator for the left(outer) relation to join
+     * @param child2 Iterator for the right(inner) relation to join
+     * @throws IllegalArgumentException if the operator of p is not EQUALS
+     */
+    public ParallelHashJoin(JoinPredicate p, DbIterator child1, DbIterator child2) {
+        this(p, child1, child2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of threads that join partitions
+     * @see #ParallelHashJoin(JoinPredicate, DbIterator, DbIterator)
+     */
+    public ParallelHashJoin(JoinPredicate p, DbIterator child1, DbIterator child2, int parallelism) {
+        if (p.getOperator() != Predicate.Op.EQUALS)
+            throw new IllegalArgumentException("hash joins need an EQUALS predicate, not " + p.getOperator());
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        this.joinPredicate = p;
+        this.child1 = child1;
+        this.child2 = child2;
+        this.parallelism = parallelism;
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return joinPredicate;
+    }
+
+    /**
+     * @return the number of threads that join partitions
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the field name of join field1. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField1Name() {
+        return child1.getTupleDesc().getFieldName(joinPredicate.getField1());
+    }
+
+    /**
+     * @return the field name of join field2. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField2Name() {
+        return child2.getTupleDesc().getFieldName(joinPredicate.getField2());
+    }
+
+    public TupleDesc getTupleDesc() {
+        return TupleDesc.merge(child1.getTupleDesc(), child2.getTupleDesc());
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        td = getTupleDesc();
+        child1.open();
+        child2.open();
+        outerParts = partition(child1, joinPredicate.getField1());
+        innerParts = partition(child2, joinPredicate.getField2());
+        if (pool == null)
+            pool = new ForkJoinPool(parallelism);
+        start();
+        super.open();
+    }
+
+    /**
+     * Read all tuples of child into NUM_PARTITIONS lists by the hash of a
+     * field.
+     */
+    private static List<List<Tuple>> partition(DbIterator child, int field)
+            throws DbException, TransactionAbortedException {
+        List<List<Tuple>> parts = new ArrayList<List<Tuple>>(NUM_PARTITIONS);
+        for (int i = 0; i < NUM_PARTITIONS; i++)
+            parts.add(new ArrayList<Tuple>());
+        while (child.hasNext()) {
+            Tuple t = child.next();
+            parts.get(partitionOf(JoinHashTable.keyHash(t, field))).add(t);
+        }
+        return parts;
+    }
+
+    /**
+     * @return the partition of a key with the given hash: the high
+     * RADIX_BITS bits of a multiplicative hash
+     * @see JoinHashTable#keyHash
+     */
+    static int partitionOf(int hash) {
+        return (hash * 0x9e3779b9) >>> (32 - RADIX_BITS);
+    }
+
+    /**
+     * Submit a task for every pair of partitions that are both non-empty.
+     */
+    private void start() {
+        List<Integer> pairs = new ArrayList<Integer>();
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            if (!outerParts.get(i).isEmpty() && !innerParts.get(i).isEmpty())
+                pairs.add(i);
+        }
+        Run r = new Run(pairs.size());
+        run = r;
+        batch = null;
+        if (pairs.isEmpty()) {
+            r.done = true;
+            return;
+        }
+        // the tasks get the partitions themselves, since a task of a
+        // cancelled run may still start after close
+        for (int i : pairs) {
+            List<Tuple> outer = outerParts.get(i);
+            List<Tuple> inner = innerParts.get(i);
+            pool.execute(() -> joinPartition(r, outer, inner));
+        }
+    }
+
+    /**
+     * Join a pair of partitions, building on the smaller one, and hand the
+     * results to the queue of r. The last task of a run adds END.
+     */
+    private void joinPartition(Run r, List<Tuple> outer, List<Tuple> inner) {
+        try {
+            if (r.cancelled)
+                return;
+            boolean buildIsOuter = outer.size() <= inner.size();
+            TupleDesc td1 = child1.getTupleDesc();
+            TupleDesc td2 = child2.getTupleDesc();
+            JoinHashTable table = buildIsOuter
+                    ? new JoinHashTable(td1, joinPredicate.getField1(), td2, joinPredicate.getField2())
+                    : new JoinHashTable(td2, joinPredicate.getField2(), td1, joinPredicate.getField1());
+            for (Tuple t : buildIsOuter ? outer : inner)
+                table.add(t);
+
+            List<Tuple> out = new ArrayList<Tuple>(BATCH_SIZE);
+            for (Tuple probe : buildIsOuter ? inner : outer) {
+                List<Tuple> matches = table.get(probe);
+                if (matches == null)
+                    continue;
+                for (Tuple build : matches) {
+                    out.add(buildIsOuter ? merge(build, probe) : merge(probe, build));
+                    if (out.size() == BATCH_SIZE) {
+                        if (!r.put(out))
+                            return;
+                        out = new ArrayList<Tuple>(BATCH_SIZE);
+                    }
+                }
+                if (r.cancelled)
+                    return;
+            }
+            if (!out.isEmpty())
+                r.put(out);
+        } catch (Throwable e) {
+            r.failure.compareAndSet(null, e);
+        } finally {
+            if (r.remaining.decrementAndGet() == 0) {
+                try {
+                    r.put(END);
+                } catch (InterruptedException e) {
+                    r.failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+
+    private Tuple merge(Tuple t1, Tuple t2) {
+        Tuple tuple = new Tuple(td);
+        int n1 = t1.getTupleDesc().numFields();
+        for (int i = 0; i < n1; i++)
+            tuple.setField(i, t1, i);
+        for (int i = 0; i < t2.getTupleDesc().numFields(); i++)
+            tuple.setField(n1 + i, t2, i);
+        return tuple;
+    }
+
+    /**
+     * Returns the next tuple generated by the join, or null if there are no
+     * more tuples.
+     *
+     * @see Join#fetchNext
+     * @throws DbException if a task failed
+     * @throws IllegalStateException if the join is not open
+     */
+    protected Tuple fetchNext() throws TransactionAbortedException, DbException {
+        if (run == null)
+            throw new IllegalStateException("Operator not yet open");
+        while (true) {
+            if (batch != null && batch.hasNext())
+                return batch.next();
+            if (run.done)
+                return null;
+            List<Tuple> next;
+            try {
+                next = run.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DbException("interrupted while waiting for join results");
+            }
+            if (next == END) {
+                run.done = true;
+                Throwable failure = run.failure.get();
+                if (failure != null) {
+                    DbException e = new DbException("parallel hash join failed: " + failure);
+                    e.initCause(failure);
+                    throw e;
+                }
+                return null;
+            }
+            batch = next.iterator();
+        }
+    }
+
+    /**
+     * Stop the tasks of the current run, if any.
+     */
+    private void cancel() {
+        if (run != null) {
+            run.cancelled = true;
+            run.queue.clear();
+            run = null;
+        }
+        batch = null;
+    }
+
+    public void close() {
+        super.close();
+        cancel();
+        outerParts = null;
+        innerParts = null;
+        child1.close();
+        child2.close();
+    }
+
+    /**
+     * Restart the join from the partitions read at open; the children are
+     * not read again.
+     *
+     * @throws IllegalStateException if the join is not open
+     */
+    public void rewind() throws DbException, TransactionAbortedException {
+        if (outerParts == null)
+            throw new IllegalStateException("Operator not yet open");
+        cancel();
+        start();
+    }
+
+    @Override
+    public DbIterator[] getChildren() {
+        return new DbIterator[]{child1, child2};
+    }
+
+    @Override
+    public void setChildren(DbIterator[] children) {
+        this.child1 = children[0];
+        this.child2 = children[1];
+    }
+}
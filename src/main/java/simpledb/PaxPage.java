@@ -0,0 +1,512 @@
+package simpledb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * PaxPage is a columnar page layout (PAX, "partition attributes across"):
+ * a page holds the same tuples as a HeapPage of the same size, but instead
+ * of storing them row after row it stores the values of each field together
+ * in a mini-page. An operator that only needs one column of a page, like an
+ * aggregate over an int field, reads one contiguous array with
+ * {@link #getIntColumn(int)} instead of decoding every tuple, and a batch
+ * scan copies runs of an int mini-page straight into the int column of a
+ * TupleBatch (see {@link #fill}).
+ * <p>
+ * The page starts with the slot bitmap of a HeapPage, padded to whole
+ * bytes. Mini-page j follows the mini-pages of the fields before it and
+ * holds numSlots values of the type of field j, in slot order; values of
+ * empty slots are zero.
+ * <p>
+ * Like HeapPage, a PaxPage keeps the bytes it was created from and decodes
+ * tuples on demand.
+ *
+ * @see PageLayout#PAX
+ */
+public class PaxPage implements TuplePage {
+
+    final HeapPageId pid;
+    final TupleDesc td;
+    final int pageSize;
+    final int numSlots;
+    final int headerSize;
+    /**
+     * Offset of the mini-page of each field
+     */
+    final int[] columnOffsets;
+
+    /**
+     * The bytes the page was created from; never modified. A read-only
+     * buffer is replaced by a copy before the page is first modified or
+     * overwritten on disk, see {@link #detach()}
+     */
+    volatile ByteBuffer data;
+
+    final SlotBitmap header;
+    /**
+     * Slots whose tuple was inserted after the page was read, so their
+     * values are not in data
+     */
+    final SlotBitmap inserted;
+    /**
+     * Decoded or inserted tuples; a null entry of a used slot means the
+     * tuple has not been decoded from data yet
+     */
+    final Tuple[] tuples;
+
+    /**
+     * The before image, or null while it is still equal to data
+     */
+    byte[] oldData;
+    TransactionId dirtier;
+
+    private static final byte[] ZEROS = new byte[BufferPool.MAX_PAGE_SIZE];
+
+    /**
+     * Create a PaxPage from a set of bytes of data read from disk. A page of
+     * zero bytes is an empty page.
+     *
+     * @see #PaxPage(HeapPageId, ByteBuffer)
+     */
+    public PaxPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a PaxPage from a buffer holding the bytes of the page. The page
+     * keeps the buffer (not a copy), so the bytes must not change while the
+     * page is in use; the buffer's position and limit are left alone.
+     */
+    public PaxPage(HeapPageId id, ByteBuffer data) throws IOException {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.data = data.slice();
+        this.pageSize = this.data.remaining();
+        // the same number of slots as a HeapPage
+        this.numSlots = (pageSize * 8) / (td.getSize() * 8 + 1);
+        if (numSlots == 0)
+            throw new IOException("page " + id.pageNumber() + " of " + pageSize + " bytes cannot hold a tuple");
+        this.headerSize = SlotBitmap.byteLength(numSlots);
+
+        columnOffsets = new int[td.numFields()];
+        int offset = headerSize;
+        for (int j = 0; j < columnOffsets.length; j++) {
+            columnOffsets[j] = offset;
+            offset += numSlots * td.getFieldType(j).getLen();
+        }
+
+        header = SlotBitmap.read(this.data, 0, numSlots);
+        inserted = new SlotBitmap(numSlots);
+        tuples = new Tuple[numSlots];
+    }
+
+    /**
+     * @return the PageId associated with this page.
+     */
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /**
+     * Return a view of this page before it was modified
+     * -- used by recovery
+     */
+    public PaxPage getBeforeImage() {
+        try {
+            if (oldData == null)
+                return new PaxPage(pid, data);
+            return new PaxPage(pid, oldData);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public void setBeforeImage() {
+        oldData = getPageData();
+    }
+
+    /**
+     * Replace data by a private copy if it is a read-only buffer, e.g. a
+     * view into a memory mapped file. Called before the page is modified,
+     * and by the file before it overwrites the page: once it does, the view
+     * holds the new bytes, while the tuples this page has not decoded yet
+     * and its before image must still come from the old ones. Pages that
+     * are only read keep the view.
+     */
+    @Override
+    public void detach() {
+        if (data.isReadOnly()) {
+            byte[] copy = new byte[pageSize];
+            data.duplicate().get(copy);
+            data = ByteBuffer.wrap(copy);
+        }
+    }
+
+    /**
+     * Marks this page as dirty/not dirty and record that transaction
+     * that did the dirtying. The before image is copied out of the original
+     * bytes the first time the page is dirtied.
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        if (dirty && dirtier == null && oldData == null) {
+            detach();
+            oldData = new byte[pageSize];
+            data.duplicate().get(oldData);
+        }
+        dirtier = dirty ? tid : null;
+    }
+
+    /**
+     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
+     */
+    public TransactionId isDirty() {
+        return dirtier;
+    }
+
+    public int getMemorySize() {
+        return oldData == null ? pageSize : pageSize + oldData.length;
+    }
+
+    /**
+     * @return the offset of the value of field j of slot i in data
+     */
+    private int valueOffset(int i, int j) {
+        return columnOffsets[j] + i * td.getFieldType(j).getLen();
+    }
+
+    /**
+     * Decode the tuple in the given slot from the page data.
+     */
+    private Tuple readTuple(int slotId) {
+        Tuple t = new Tuple(td);
+        t.setRecordId(new RecordId(pid, slotId));
+        for (int j = 0; j < td.numFields(); j++) {
+            td.getFieldType(j).read(data, valueOffset(slotId, j), t, j);
+        }
+        return t;
+    }
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public boolean isSlotUsed(int i) {
+        return header.get(i);
+    }
+
+    /**
+     * Returns the number of empty slots on this page.
+     */
+    public int getNumEmptySlots() {
+        return numSlots - header.cardinality();
+    }
+
+    /**
+     * Returns the tuple in the given slot, decoding it if this has not
+     * happened yet.
+     *
+     * @param slotId the slot to read
+     * @return the tuple in that slot, or null if the slot is empty
+     */
+    public Tuple getTuple(int slotId) {
+        if (!isSlotUsed(slotId))
+            return null;
+        Tuple t = tuples[slotId];
+        if (t == null) {
+            t = readTuple(slotId);
+            tuples[slotId] = t;
+        }
+        return t;
+    }
+
+    /**
+     * Returns the values of an INT_TYPE field of all tuples on this page, in
+     * the order of {@link #iterator()}. Values are read straight from the
+     * mini-page of the field; no tuples are decoded.
+     *
+     * @param field the index of the field
+     * @return the values of the field, one per tuple on the page
+     */
+    public int[] getIntColumn(int field) {
+        if (td.getFieldType(field) != Type.INT_TYPE)
+            throw new IllegalArgumentException("field " + field + " is not an int field");
+        ByteBuffer column = data.duplicate();
+        column.position(columnOffsets[field]);
+        IntBuffer values = column.slice().asIntBuffer();
+
+        int used = header.cardinality();
+        int firstFree = header.nextFree(0);
+        int[] out = new int[used];
+        if (inserted.cardinality() == 0 && (firstFree < 0 || firstFree == used)) {
+            // the tuples fill a prefix of the slots: one bulk copy
+            values.get(out, 0, used);
+            return out;
+        }
+        int k = 0;
+        for (int i = header.nextUsed(0); i >= 0; i = header.nextUsed(i + 1)) {
+            out[k++] = inserted.get(i) ? tuples[i].getInt(field) : values.get(i);
+        }
+        return out;
+    }
+
+    /**
+     * @return true if t matches the schema of this page and a slot is free
+     */
+    public boolean hasRoomFor(Tuple t) {
+        return td.equals(t.getTupleDesc()) && header.nextFree(0) >= 0;
+    }
+
+    /**
+     * Adds the specified tuple to the page;  the tuple should be updated to reflect
+     * that it is now stored on this page.
+     *
+     * @param t The tuple to add.
+     * @throws DbException if the page is full (no empty slots) or tupledesc
+     *                     is mismatch.
+     */
+    public void insertTuple(Tuple t) throws DbException {
+        detach();
+        if (!td.equals(t.getTupleDesc()))
+            throw new DbException("tupledesc is mismatch");
+        int slot = header.nextFree(0);
+        if (slot < 0)
+            throw new DbException("page " + pid.pageNumber() + " is full");
+        header.set(slot, true);
+        inserted.set(slot, true);
+        t.setRecordId(new RecordId(pid, slot));
+        tuples[slot] = t;
+    }
+
+    /**
+     * Delete the specified tuple from the page;  the tuple should be updated to reflect
+     * that it is no longer stored on any page.
+     *
+     * @param t The tuple to delete
+     * @throws DbException if this tuple is not on this page, or tuple slot is
+     *                     already empty.
+     */
+    public void deleteTuple(Tuple t) throws DbException {
+        detach();
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId()))
+            throw new DbException("tuple is not on page " + pid.pageNumber());
+        int slot = rid.tupleno();
+        if (slot < 0 || slot >= numSlots || !isSlotUsed(slot))
+            throw new DbException("slot " + slot + " is already empty");
+        header.set(slot, false);
+        inserted.set(slot, false);
+        tuples[slot] = null;
+        t.setRecordId(null);
+    }
+
+    /**
+     * Generates a byte array representing the contents of this page.
+     * Used to serialize this page to disk.
+     *
+     * @return A byte array correspond to the bytes of this page.
+     * @see #PaxPage
+     */
+    public byte[] getPageData() {
+        byte[] out = new byte[pageSize];
+        writeTo(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    public void writeTo(ByteBuffer buf) {
+        int start = buf.position();
+        header.write(buf);
+        for (int j = 0; j < td.numFields(); j++) {
+            Type type = td.getFieldType(j);
+            int len = type.getLen();
+            for (int i = 0; i < numSlots; i++) {
+                if (!isSlotUsed(i)) {
+                    buf.put(ZEROS, 0, len);
+                } else if (inserted.get(i)) {
+                    type.write(buf, tuples[i], j);
+                } else {
+                    ByteBuffer src = data.duplicate();
+                    src.position(valueOffset(i, j));
+                    src.limit(valueOffset(i, j) + len);
+                    buf.put(src);
+                }
+            }
+        }
+        buf.put(ZEROS, 0, pageSize - (buf.position() - start));
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on this iterator throws an UnsupportedOperationException)
+     */
+    public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+            private int slot = header.nextUsed(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot >= 0;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = getTuple(slot);
+                slot = header.nextUsed(slot + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy filter,
+     * holding only the given fields. filter is tested on the mini-pages of their fields
+     * through a {@link SlotView}, and only the given fields of the tuples
+     * that match are decoded.
+     */
+    @Override
+    public Iterator<Tuple> iterator(final Evaluator filter, final int[] columns, final TupleDesc projected) {
+        if (filter == null && columns == null)
+            return iterator();
+        return new Iterator<Tuple>() {
+            private final SlotView view = new SlotView();
+            private int slot = nextMatch(0);
+
+            private int nextMatch(int from) {
+                int i = header.nextUsed(from);
+                if (filter == null)
+                    return i;
+                while (i >= 0 && !filter.eval(view.at(i)))
+                    i = header.nextUsed(i + 1);
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot >= 0;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = columns == null ? getTuple(slot) : readColumns(slot, columns, projected);
+                slot = nextMatch(slot + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Appends the tuples on this page that satisfy filter to batch. filter
+     * is tested on the page bytes, as in the iterator, and the fields of
+     * the tuples that match are decoded straight into the columns of the
+     * batch, so no Tuple is created. Without a filter, a run of used slots
+     * whose tuples were not inserted is copied with one bulk copy per int
+     * mini-page. Positions are slot numbers.
+     */
+    @Override
+    public int fill(TupleBatch batch, int from, Evaluator filter, int[] columns) {
+        SlotView view = new SlotView();
+        int n = batch.getTupleDesc().numFields();
+        for (int slot = header.nextUsed(from); slot >= 0; slot = header.nextUsed(slot + 1)) {
+            if (batch.isFull())
+                return slot;
+            if (filter == null && !inserted.get(slot)) {
+                slot = copyRun(batch, slot, columns, n) - 1;
+                continue;
+            }
+            if (filter != null && !filter.eval(view.at(slot)))
+                continue;
+            int row = batch.addRow(new RecordId(pid, slot));
+            Tuple t = tuples[slot];
+            for (int k = 0; k < n; k++) {
+                int j = columns == null ? k : columns[k];
+                Type type = td.getFieldType(j);
+                if (type == Type.INT_TYPE)
+                    batch.setInt(k, row, t != null ? t.getInt(j) : data.getInt(valueOffset(slot, j)));
+                else
+                    batch.setField(k, row, t != null ? t.getField(j) : type.parse(data, valueOffset(slot, j)));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append the tuples of the run of used, not inserted slots starting at
+     * slot to batch, as far as it has room. Int columns are copied from
+     * their mini-pages in bulk.
+     *
+     * @return the slot after the last one copied
+     */
+    private int copyRun(TupleBatch batch, int slot, int[] columns, int n) {
+        int end = header.nextFree(slot);
+        if (end < 0)
+            end = numSlots;
+        int nextInserted = inserted.nextUsed(slot);
+        if (nextInserted >= 0 && nextInserted < end)
+            end = nextInserted;
+        int count = Math.min(end - slot, batch.capacity() - batch.size());
+        int first = batch.addRows(count);
+        for (int i = 0; i < count; i++)
+            batch.setRecordId(first + i, new RecordId(pid, slot + i));
+        for (int k = 0; k < n; k++) {
+            int j = columns == null ? k : columns[k];
+            Type type = td.getFieldType(j);
+            if (type == Type.INT_TYPE) {
+                ByteBuffer column = data.duplicate();
+                column.position(valueOffset(slot, j));
+                column.slice().asIntBuffer().get(batch.getIntColumn(k), first, count);
+            } else {
+                for (int i = 0; i < count; i++)
+                    batch.setField(k, first + i, type.parse(data, valueOffset(slot + i, j)));
+            }
+        }
+        return slot + count;
+    }
+
+    /**
+     * Decode the given fields of the tuple in the given used slot.
+     */
+    private Tuple readColumns(int slotId, int[] columns, TupleDesc projected) {
+        Tuple t = tuples[slotId];
+        if (t != null)
+            return t.project(columns, projected);
+        t = new Tuple(projected);
+        t.setRecordId(new RecordId(pid, slotId));
+        for (int k = 0; k < columns.length; k++)
+            td.getFieldType(columns[k]).read(data, valueOffset(slotId, columns[k]), t, k);
+        return t;
+    }
+
+    /**
+     * A view of the tuple in a used slot that reads fields from the page
+     * bytes, or from the tuple if it has been decoded or inserted, so an
+     * Evaluator can test it without decoding it. Int fields are read
+     * without creating Fields.
+     */
+    private final class SlotView implements TupleView {
+        private int slot;
+        private Tuple tuple;
+
+        SlotView at(int slot) {
+            this.slot = slot;
+            this.tuple = tuples[slot];
+            return this;
+        }
+
+        @Override
+        public int getInt(int i) {
+            return tuple != null ? tuple.getInt(i) : data.getInt(valueOffset(slot, i));
+        }
+
+        @Override
+        public Field getField(int i) {
+            return tuple != null ? tuple.getField(i) : td.getFieldType(i).parse(data, valueOffset(slot, i));
+        }
+    }
+}
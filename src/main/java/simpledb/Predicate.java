@@ -12,6 +12,7 @@ public class Predicate implements Serializable {
     private int fieldNum;
     private Op op;
     private Field operand;
+    private transient Evaluator evaluator;
 
     /**
      * Constructor.
@@ -54,15 +55,24 @@ public class Predicate implements Serializable {
     /**
      * Compares the field number of t specified in the constructor to the
      * operand field specified in the constructor using the operator specific in
-     * the constructor. The comparison can be made through Field's compare
-     * method.
+     * the constructor. The comparison is made by an {@link Evaluator}
+     * compiled on first use.
      *
      * @param t The tuple to compare against
      * @return true if the comparison is true, false otherwise.
      */
     public boolean filter(Tuple t) {
         // some code goes here
-        return t.getField(fieldNum).compare(getOp(), getOperand());
+        return evaluator().eval(t);
+    }
+
+    /**
+     * @return this predicate compiled into an Evaluator
+     */
+    public Evaluator evaluator() {
+        if (evaluator == null)
+            evaluator = Evaluator.compile(this);
+        return evaluator;
     }
 
     /**
@@ -4,14 +4,17 @@ import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
 /**
- * Project is an operator that implements a relational projection.
+ * Project is an operator that implements a relational projection. Read in
+ * batches, it passes on the batches of its child with only the projected
+ * columns, without copying any values.
  */
-public class Project extends Operator {
+public class Project extends Operator implements BatchIterator {
 
     private static final long serialVersionUID = 1L;
     private DbIterator child;
     private TupleDesc td;
     private ArrayList<Integer> outFieldIds;
+    private transient BatchIterator batchChild;
 
     /**
      * Constructor accepts a child operator to read tuples to apply projection
@@ -71,13 +74,28 @@ public class Project extends Operator {
             Tuple newTuple = new Tuple(td);
             newTuple.setRecordId(t.getRecordId());
             for (int i = 0; i < td.numFields(); i++) {
-                newTuple.setField(i, t.getField(outFieldIds.get(i)));
+                newTuple.setField(i, t, outFieldIds.get(i));
             }
             return newTuple;
         }
         return null;
     }
 
+    /**
+     * Returns the projected columns of the next batch of the child.
+     */
+    public TupleBatch nextBatch() throws DbException, TransactionAbortedException {
+        if (batchChild == null)
+            batchChild = BatchIterator.of(child);
+        TupleBatch batch = batchChild.nextBatch();
+        if (batch == null)
+            return null;
+        int[] columns = new int[outFieldIds.size()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = outFieldIds.get(i);
+        return batch.project(columns, td);
+    }
+
     @Override
     public DbIterator[] getChildren() {
         return new DbIterator[]{this.child};
@@ -87,6 +105,7 @@ public class Project extends Operator {
     public void setChildren(DbIterator[] children) {
         if (this.child != children[0]) {
             this.child = children[0];
+            this.batchChild = null;
         }
     }
 
@@ -0,0 +1,129 @@
+package simpledb;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * ReadAheadPrefetcher watches the pages a scan asks for and, once the
+ * accesses look sequential, asks the BufferPool to read the next pages of
+ * the table in the background, so that the scan finds them ready when it
+ * crosses a page boundary.
+ * <p>
+ * The number of pages read ahead (the window) adapts to the scan: if the
+ * scan reaches a page whose read has not completed yet, the disk is falling
+ * behind and the window doubles; if every outstanding read has already
+ * completed when the scan moves on, the window shrinks by one page.
+ * <p>
+ * A prefetcher belongs to a single iterator and is not thread safe.
+ *
+ * @see BufferPool#prefetchPage
+ */
+public class ReadAheadPrefetcher {
+
+    public static final int MIN_WINDOW = 2;
+    public static final int MAX_WINDOW = 32;
+    /**
+     * Number of consecutive page accesses before read-ahead kicks in.
+     */
+    public static final int SEQUENTIAL_THRESHOLD = 2;
+
+    private final BufferPool pool;
+    private final int tableId;
+    private final int numPages;
+
+    private int lastPage = -1;
+    private int sequentialRun = 0;
+    private int window = MIN_WINDOW;
+    private int issuedUpTo = -1;
+    private final Map<Integer, Future<Page>> issued = new HashMap<>();
+
+    /**
+     * @param pool     the BufferPool to read pages into
+     * @param tableId  the table being scanned
+     * @param numPages the number of pages in that table
+     */
+    public ReadAheadPrefetcher(BufferPool pool, int tableId, int numPages) {
+        this.pool = pool;
+        this.tableId = tableId;
+        this.numPages = numPages;
+    }
+
+    /**
+     * @return the current number of pages read ahead
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Retrieve a page of the scanned table through the BufferPool and, if
+     * the scan looks sequential, start reading the pages after it.
+     *
+     * @param tid    the transaction of the scan
+     * @param pageNo the page number the scan requests next
+     * @param ring   the ring of the scan, or null
+     */
+    public Page getPage(TransactionId tid, int pageNo, BufferRing ring)
+            throws DbException, TransactionAbortedException {
+        if (pageNo == lastPage + 1) {
+            sequentialRun++;
+        } else {
+            sequentialRun = 1;
+            cancel();
+        }
+        lastPage = pageNo;
+
+        Future<Page> read = issued.remove(pageNo);
+        if (read != null) {
+            if (!read.isDone()) {
+                window = Math.min(MAX_WINDOW, window * 2);
+            } else if (allDone()) {
+                window = Math.max(MIN_WINDOW, window - 1);
+            }
+        }
+
+        HeapPageId pid = new HeapPageId(tableId, pageNo);
+        Page page = pool.getPage(tid, pid, Permissions.READ_ONLY, ring);
+        if (read != null) {
+            // no-op if getPage consumed the read; drops it if the page was
+            // already resident
+            pool.cancelPrefetch(pid, read);
+        }
+
+        // issue the reads only after the requested page is in hand, so they
+        // do not compete with a synchronous read of that page
+        if (sequentialRun >= SEQUENTIAL_THRESHOLD) {
+            int last = Math.min(numPages - 1, pageNo + window);
+            for (int p = Math.max(pageNo + 1, issuedUpTo + 1); p <= last; p++) {
+                Future<Page> f = pool.prefetchPage(new HeapPageId(tableId, p));
+                if (f != null)
+                    issued.put(p, f);
+            }
+            issuedUpTo = Math.max(issuedUpTo, last);
+        }
+        return page;
+    }
+
+    private boolean allDone() {
+        for (Future<Page> f : issued.values()) {
+            if (!f.isDone())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Abandon all reads that have been issued but not consumed yet.
+     */
+    public void cancel() {
+        Iterator<Map.Entry<Integer, Future<Page>>> it = issued.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<Page>> e = it.next();
+            pool.cancelPrefetch(new HeapPageId(tableId, e.getKey()), e.getValue());
+            it.remove();
+        }
+        issuedUpTo = lastPage;
+    }
+}
@@ -1,21 +1,32 @@
 package simpledb;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * SeqScan is an implementation of a sequential scan access method that reads
  * each tuple of a table in no particular order (e.g., as they are laid out on
- * disk).
+ * disk). It can also be read in batches, see {@link BatchIterator}.
+ * <p>
+ * A scan may be given predicates on the fields of the table, which are
+ * pushed down into the pages: tuples that do not satisfy them are skipped
+ * before they are decoded, instead of being returned to a Filter above.
+ * It may also be given the fields of the table that the query reads; it
+ * then returns tuples of only those fields, and only those are decoded.
  */
-public class SeqScan implements DbIterator {
+public class SeqScan implements DbIterator, BatchIterator {
 
     private static final long serialVersionUID = 1L;
 
     private TransactionId tid;
     private int tableid;
     private String tableAlias;
+    private List<Predicate> predicates;
+    private int[] columns;
 
     private DbFileIterator dbFileIterator;
+    private transient TupleBatch batch;
 
     /**
      * Creates a sequential scan over the specified table as a part of the
@@ -31,11 +42,41 @@ public class SeqScan implements DbIterator {
      *                   tableAlias.null, or null.null).
      */
     public SeqScan(TransactionId tid, int tableid, String tableAlias) {
+        this(tid, tableid, tableAlias, Collections.<Predicate>emptyList());
+    }
+
+    /**
+     * Creates a sequential scan that only returns the tuples satisfying all
+     * of the given predicates.
+     *
+     * @param predicates predicates on the fields of the table, numbered as
+     *                   in its TupleDesc
+     * @see #SeqScan(TransactionId, int, String)
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, List<Predicate> predicates) {
+        this(tid, tableid, tableAlias, predicates, null);
+    }
+
+    /**
+     * Creates a sequential scan that only returns the tuples satisfying all
+     * of the given predicates, holding the given fields of the table.
+     *
+     * @param predicates predicates on the fields of the table, numbered as
+     *                   in its TupleDesc
+     * @param columns    the indexes of the fields to return, in the order to
+     *                   return them, or null for all fields
+     * @throws IllegalArgumentException if a column is not a field of the
+     *                                  table
+     * @see #SeqScan(TransactionId, int, String)
+     */
+    public SeqScan(TransactionId tid, int tableid, String tableAlias, List<Predicate> predicates, int[] columns) {
         // some code goes here
         this.tid = tid;
         this.tableid = tableid;
         this.tableAlias = tableAlias;
-        dbFileIterator = Database.getCatalog().getDbFile(tableid).iterator(tid);
+        this.predicates = predicates;
+        this.columns = columns;
+        dbFileIterator = Database.getCatalog().getDbFile(tableid).iterator(tid, predicates, columns);
     }
 
     public SeqScan(TransactionId tid, int tableid) {
@@ -58,6 +99,21 @@ public class SeqScan implements DbIterator {
         return tableAlias;
     }
 
+    /**
+     * @return the predicates pushed down into this scan
+     */
+    public List<Predicate> getPredicates() {
+        return predicates;
+    }
+
+    /**
+     * @return the indexes of the table fields this scan returns, or null if
+     * it returns all of them
+     */
+    public int[] getColumns() {
+        return columns;
+    }
+
     /**
      * Reset the tableid, and tableAlias of this operator.
      *
@@ -80,12 +136,16 @@ public class SeqScan implements DbIterator {
 //        if (dbFileIterator != null) {
 //            throw new DbException("cannot open twice");
 //        }
+        // a closed scan can be opened again
+        if (dbFileIterator == null)
+            dbFileIterator = Database.getCatalog().getDbFile(tableid).iterator(tid, predicates, columns);
         dbFileIterator.open();
     }
 
     /**
      * Returns the TupleDesc with field names from the underlying HeapFile,
-     * prefixed with the tableAlias string from the constructor. This prefix
+     * prefixed with the tableAlias string from the constructor; if the scan
+     * was given columns, only those fields are included. This prefix
      * becomes useful when joining tables containing a field(s) with the same
      * name.
      *
@@ -95,6 +155,8 @@ public class SeqScan implements DbIterator {
     public TupleDesc getTupleDesc() {
         // some code goes here
         TupleDesc desc = Database.getCatalog().getTupleDesc(tableid);
+        if (columns != null)
+            desc = TupleDesc.project(desc, columns);
         int numFields = desc.numFields();
         Type[] types = new Type[numFields];
         String[] names = new String[numFields];
@@ -119,6 +181,19 @@ public class SeqScan implements DbIterator {
         return dbFileIterator.next();
     }
 
+    /**
+     * Returns the next batch of tuples of the table, in the order of
+     * {@link #next()}. The pages of a HeapFile are decoded straight into
+     * the columns of the batch, see {@link DbFileIterator#fill}.
+     */
+    public TupleBatch nextBatch() throws TransactionAbortedException, DbException {
+        if (batch == null)
+            batch = new TupleBatch(getTupleDesc());
+        batch.clear();
+        dbFileIterator.fill(batch);
+        return batch.size() == 0 ? null : batch;
+    }
+
     public void close() {
         // some code goes here
         if (dbFileIterator != null) {
@@ -0,0 +1,163 @@
+package simpledb;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SlotBitmap is the slot header of a page: one bit per slot, set when the
+ * slot holds a tuple. The bits are kept in an array of longs, so counting
+ * used slots and searching for the next used or free slot look at 64 slots
+ * at a time.
+ * <p>
+ * On disk, slot i is bit (i % 8) of byte (i / 8), least significant bit
+ * first, which is the layout HeapPage headers have always had; read and
+ * write convert between that and the in-memory words.
+ */
+public class SlotBitmap {
+
+    private final long[] words;
+    private final int numSlots;
+
+    /**
+     * Create a bitmap with every slot free.
+     *
+     * @param numSlots the number of slots
+     */
+    public SlotBitmap(int numSlots) {
+        this.numSlots = numSlots;
+        this.words = new long[(numSlots + 63) >>> 6];
+    }
+
+    /**
+     * Read a bitmap stored in the on-disk format.
+     *
+     * @param buf      the buffer holding the bitmap
+     * @param offset   the absolute offset of the bitmap in buf
+     * @param numSlots the number of slots
+     */
+    public static SlotBitmap read(ByteBuffer buf, int offset, int numSlots) {
+        SlotBitmap bitmap = new SlotBitmap(numSlots);
+        ByteBuffer in = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int bytes = byteLength(numSlots);
+        int w = 0;
+        for (; (w + 1) * 8 <= bytes; w++) {
+            bitmap.words[w] = in.getLong(offset + w * 8);
+        }
+        for (int b = w * 8; b < bytes; b++) {
+            bitmap.words[w] |= (in.get(offset + b) & 0xFFL) << ((b & 7) * 8);
+        }
+        // ignore stray bits past the last slot
+        if ((numSlots & 63) != 0)
+            bitmap.words[bitmap.words.length - 1] &= -1L >>> (64 - (numSlots & 63));
+        return bitmap;
+    }
+
+    /**
+     * Write this bitmap in the on-disk format at the current position of
+     * buf, advancing it by {@link #byteLength(int)} bytes.
+     */
+    public void write(ByteBuffer buf) {
+        int bytes = byteLength(numSlots);
+        int w = 0;
+        for (; (w + 1) * 8 <= bytes; w++) {
+            long word = words[w];
+            for (int b = 0; b < 8; b++) {
+                buf.put((byte) (word >>> (b * 8)));
+            }
+        }
+        for (int b = w * 8; b < bytes; b++) {
+            buf.put((byte) (words[w] >>> ((b & 7) * 8)));
+        }
+    }
+
+    /**
+     * @return the number of bytes the on-disk format of a bitmap with
+     * numSlots slots takes
+     */
+    public static int byteLength(int numSlots) {
+        return (numSlots + 7) / 8;
+    }
+
+    /**
+     * @return a copy of this bitmap with numSlots slots; slots past the end
+     * of this bitmap are free
+     */
+    public SlotBitmap resize(int numSlots) {
+        SlotBitmap copy = new SlotBitmap(numSlots);
+        System.arraycopy(words, 0, copy.words, 0, Math.min(words.length, copy.words.length));
+        if ((numSlots & 63) != 0)
+            copy.words[copy.words.length - 1] &= -1L >>> (64 - (numSlots & 63));
+        return copy;
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int size() {
+        return numSlots;
+    }
+
+    /**
+     * @return true if slot i is used
+     */
+    public boolean get(int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Mark slot i as used or free.
+     */
+    public void set(int i, boolean used) {
+        if (used)
+            words[i >>> 6] |= 1L << i;
+        else
+            words[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * @return the number of used slots
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * @return the first used slot at or after from, or -1 if there is none
+     */
+    public int nextUsed(int from) {
+        if (from >= numSlots)
+            return -1;
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length)
+                return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * @return the first free slot at or after from, or -1 if there is none
+     */
+    public int nextFree(int from) {
+        if (from >= numSlots)
+            return -1;
+        int w = from >>> 6;
+        long word = ~words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                return slot < numSlots ? slot : -1;
+            }
+            if (++w == words.length)
+                return -1;
+            word = ~words[w];
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package simpledb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * SlottedPage is a page layout for tables with variable length data. Unlike
+ * a HeapPage, which gives every tuple a fixed size slot and pads every string
+ * to {@link Type#STRING_LEN} bytes, a SlottedPage stores each tuple in a
+ * record of exactly the size it needs, so the number of tuples per page
+ * follows from the actual data.
+ * <p>
+ * The page starts with a header of two ints: the number of entries in the
+ * slot directory and the offset of the record area. The directory follows,
+ * one entry per slot holding the offset and the length of its record as
+ * unsigned shorts; an offset of 0 marks an empty slot. Records are packed at
+ * the end of the page, growing towards the directory. In a record, an
+ * INT_TYPE field takes 4 bytes and a STRING_TYPE field takes a 4 byte length
+ * followed by that many bytes, without padding.
+ * <p>
+ * A slot keeps its number for as long as its tuple is on the page, so
+ * RecordIds stay valid; records are compacted whenever the page is written.
+ * For tables of only fixed size fields the 4 byte directory entry makes this
+ * layout larger than a HeapPage, so it only pays off with strings.
+ * <p>
+ * Like HeapPage, a SlottedPage keeps the bytes it was created from and
+ * decodes tuples on demand.
+ *
+ * @see PageLayout#SLOTTED
+ */
+public class SlottedPage implements TuplePage {
+
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 4;
+
+    final HeapPageId pid;
+    final TupleDesc td;
+
+    /**
+     * The bytes the page was created from; never modified. A read-only
+     * buffer is replaced by a copy before the page is first modified or
+     * overwritten on disk, see {@link #detach()}
+     */
+    volatile ByteBuffer data;
+
+    int numSlots;
+    /**
+     * Offset of the record of each slot in data, or 0 if the slot is empty
+     * or its tuple was inserted after the page was read
+     */
+    int[] offsets;
+    /**
+     * Encoded length of the record of each slot, 0 for empty slots
+     */
+    int[] lengths;
+    /**
+     * Decoded or inserted tuples; a null entry of a used slot means the
+     * tuple has not been decoded from data yet
+     */
+    Tuple[] tuples;
+    int recordBytes;
+
+    /**
+     * The before image, or null while it is still equal to data
+     */
+    byte[] oldData;
+    TransactionId dirtier;
+
+    /**
+     * The size of this page in bytes, at most BufferPool.MAX_PAGE_SIZE so
+     * that offsets fit in the directory entries
+     */
+    final int pageSize;
+
+    private static final byte[] ZEROS = new byte[BufferPool.MAX_PAGE_SIZE];
+
+    /**
+     * Create a SlottedPage from a set of bytes of data read from disk. A
+     * page of zero bytes is an empty page.
+     *
+     * @see #SlottedPage(HeapPageId, ByteBuffer)
+     */
+    public SlottedPage(HeapPageId id, byte[] data) throws IOException {
+        this(id, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Create a SlottedPage from a buffer holding the bytes of the page. The
+     * page keeps the buffer (not a copy), so the bytes must not change while
+     * the page is in use; the buffer's position and limit are left alone.
+     */
+    public SlottedPage(HeapPageId id, ByteBuffer data) throws IOException {
+        this.pid = id;
+        this.td = Database.getCatalog().getTupleDesc(id.getTableId());
+        this.data = data.slice();
+        this.pageSize = this.data.remaining();
+        if (pageSize < HEADER_SIZE || pageSize > BufferPool.MAX_PAGE_SIZE)
+            throw new IOException("page " + id.pageNumber() + " has an unsupported size of " + pageSize + " bytes");
+
+        numSlots = this.data.getInt(0);
+        if (numSlots < 0 || HEADER_SIZE + numSlots * ENTRY_SIZE > pageSize)
+            throw new IOException("page " + id.pageNumber() + " has a corrupt slot directory");
+
+        int capacity = Math.max(numSlots, 16);
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        tuples = new Tuple[capacity];
+        for (int i = 0; i < numSlots; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            int offset = this.data.getShort(entry) & 0xFFFF;
+            int length = this.data.getShort(entry + 2) & 0xFFFF;
+            if (offset == 0)
+                continue;
+            if (offset + length > pageSize)
+                throw new IOException("slot " + i + " of page " + id.pageNumber() + " is out of bounds");
+            offsets[i] = offset;
+            lengths[i] = length;
+            recordBytes += length;
+        }
+    }
+
+    /**
+     * @return the PageId associated with this page.
+     */
+    public HeapPageId getId() {
+        return pid;
+    }
+
+    /**
+     * Return a view of this page before it was modified
+     * -- used by recovery
+     */
+    public SlottedPage getBeforeImage() {
+        try {
+            if (oldData == null)
+                return new SlottedPage(pid, data);
+            return new SlottedPage(pid, oldData);
+        } catch (IOException e) {
+            e.printStackTrace();
+            //should never happen -- we parsed it OK before!
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public void setBeforeImage() {
+        oldData = getPageData();
+    }
+
+    /**
+     * Replace data by a private copy if it is a read-only buffer, e.g. a
+     * view into a memory mapped file. Called before the page is modified,
+     * and by the file before it overwrites the page: once it does, the view
+     * holds the new bytes, while the tuples this page has not decoded yet
+     * and its before image must still come from the old ones. Pages that
+     * are only read keep the view.
+     */
+    @Override
+    public void detach() {
+        if (data.isReadOnly()) {
+            byte[] copy = new byte[pageSize];
+            data.duplicate().get(copy);
+            data = ByteBuffer.wrap(copy);
+        }
+    }
+
+    /**
+     * Marks this page as dirty/not dirty and record that transaction
+     * that did the dirtying. The before image is copied out of the original
+     * bytes the first time the page is dirtied.
+     */
+    public void markDirty(boolean dirty, TransactionId tid) {
+        if (dirty && dirtier == null && oldData == null) {
+            detach();
+            oldData = new byte[pageSize];
+            data.duplicate().get(oldData);
+        }
+        dirtier = dirty ? tid : null;
+    }
+
+    /**
+     * Returns the tid of the transaction that last dirtied this page, or null if the page is not dirty
+     */
+    public TransactionId isDirty() {
+        return dirtier;
+    }
+
+    public int getMemorySize() {
+        return oldData == null ? pageSize : pageSize + oldData.length;
+    }
+
+    /**
+     * @return the number of bytes t takes in a record
+     */
+    static int encodedLength(Tuple t) {
+        TupleDesc td = t.getTupleDesc();
+        int len = 0;
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.STRING_TYPE)
+                len += 4 + Math.min(((StringField) t.getField(j)).getValue().length(), Type.STRING_LEN);
+            else
+                len += td.getFieldType(j).getLen();
+        }
+        return len;
+    }
+
+    /**
+     * Write the record of t at the current position of buf.
+     */
+    private static void writeRecord(ByteBuffer buf, Tuple t) {
+        TupleDesc td = t.getTupleDesc();
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.STRING_TYPE) {
+                String s = ((StringField) t.getField(j)).getValue();
+                int len = Math.min(s.length(), Type.STRING_LEN);
+                buf.putInt(len);
+                for (int i = 0; i < len; i++)
+                    buf.put((byte) s.charAt(i));
+            } else {
+                td.getFieldType(j).write(buf, t, j);
+            }
+        }
+    }
+
+    /**
+     * Decode the tuple in the given slot from the page data.
+     */
+    private Tuple readTuple(int slotId) {
+        Tuple t = new Tuple(td);
+        t.setRecordId(new RecordId(pid, slotId));
+        int pos = offsets[slotId];
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.STRING_TYPE) {
+                int len = data.getInt(pos);
+                byte[] bs = new byte[len];
+                for (int i = 0; i < len; i++)
+                    bs[i] = data.get(pos + 4 + i);
+                t.setField(j, new StringField(new String(bs), Type.STRING_LEN));
+                pos += 4 + len;
+            } else {
+                td.getFieldType(j).read(data, pos, t, j);
+                pos += td.getFieldType(j).getLen();
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Returns true if associated slot on this page is filled.
+     */
+    public boolean isSlotUsed(int i) {
+        return i < numSlots && lengths[i] > 0;
+    }
+
+    /**
+     * Returns the tuple in the given slot, decoding it if this has not
+     * happened yet.
+     *
+     * @param slotId the slot to read
+     * @return the tuple in that slot, or null if the slot is empty
+     */
+    public Tuple getTuple(int slotId) {
+        if (!isSlotUsed(slotId))
+            return null;
+        Tuple t = tuples[slotId];
+        if (t == null) {
+            t = readTuple(slotId);
+            tuples[slotId] = t;
+        }
+        return t;
+    }
+
+    /**
+     * @return the number of bytes not taken by the header, the directory or
+     * records
+     */
+    public int getFreeSpace() {
+        return pageSize - HEADER_SIZE - numSlots * ENTRY_SIZE - recordBytes;
+    }
+
+    /**
+     * Returns the number of tuples of the smallest possible size (with empty
+     * strings) that still fit on this page; larger tuples fit fewer times.
+     */
+    public int getNumEmptySlots() {
+        int minLength = 0;
+        for (int j = 0; j < td.numFields(); j++)
+            minLength += td.getFieldType(j) == Type.STRING_TYPE ? 4 : td.getFieldType(j).getLen();
+        int reusable = 0;
+        for (int i = 0; i < numSlots; i++) {
+            if (!isSlotUsed(i))
+                reusable++;
+        }
+        int free = getFreeSpace();
+        int inReused = Math.min(reusable, free / minLength);
+        return inReused + (free - inReused * minLength) / (minLength + ENTRY_SIZE);
+    }
+
+    /**
+     * @return the first empty directory entry, or numSlots if all are used
+     */
+    private int firstFreeSlot() {
+        int i = 0;
+        while (i < numSlots && isSlotUsed(i))
+            i++;
+        return i;
+    }
+
+    public boolean hasRoomFor(Tuple t) {
+        if (!td.equals(t.getTupleDesc()))
+            return false;
+        int needed = encodedLength(t);
+        if (firstFreeSlot() == numSlots)
+            needed += ENTRY_SIZE;
+        return needed <= getFreeSpace();
+    }
+
+    /**
+     * Adds the specified tuple to the page;  the tuple should be updated to reflect
+     * that it is now stored on this page.
+     *
+     * @param t The tuple to add.
+     * @throws DbException if the tuple does not fit on the page or tupledesc
+     *                     is mismatch.
+     */
+    public void insertTuple(Tuple t) throws DbException {
+        detach();
+        if (!td.equals(t.getTupleDesc()))
+            throw new DbException("tupledesc is mismatch");
+        if (!hasRoomFor(t))
+            throw new DbException("no room for tuple on page " + pid.pageNumber());
+        int slot = firstFreeSlot();
+        if (slot == numSlots) {
+            if (slot == offsets.length) {
+                int capacity = offsets.length * 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                tuples = Arrays.copyOf(tuples, capacity);
+            }
+            numSlots++;
+        }
+        offsets[slot] = 0;
+        lengths[slot] = encodedLength(t);
+        tuples[slot] = t;
+        recordBytes += lengths[slot];
+        t.setRecordId(new RecordId(pid, slot));
+    }
+
+    /**
+     * Delete the specified tuple from the page;  the tuple should be updated to reflect
+     * that it is no longer stored on any page.
+     *
+     * @param t The tuple to delete
+     * @throws DbException if this tuple is not on this page, or tuple slot is
+     *                     already empty.
+     */
+    public void deleteTuple(Tuple t) throws DbException {
+        detach();
+        RecordId rid = t.getRecordId();
+        if (rid == null || !pid.equals(rid.getPageId()))
+            throw new DbException("tuple is not on page " + pid.pageNumber());
+        int slot = rid.tupleno();
+        if (slot < 0 || !isSlotUsed(slot))
+            throw new DbException("slot " + slot + " is already empty");
+        recordBytes -= lengths[slot];
+        offsets[slot] = 0;
+        lengths[slot] = 0;
+        tuples[slot] = null;
+        // drop empty entries at the end of the directory
+        while (numSlots > 0 && !isSlotUsed(numSlots - 1))
+            numSlots--;
+        t.setRecordId(null);
+    }
+
+    /**
+     * Generates a byte array representing the contents of this page.
+     * Used to serialize this page to disk.
+     *
+     * @return A byte array correspond to the bytes of this page.
+     * @see #SlottedPage
+     */
+    public byte[] getPageData() {
+        byte[] out = new byte[pageSize];
+        writeTo(ByteBuffer.wrap(out));
+        return out;
+    }
+
+    public void writeTo(ByteBuffer buf) {
+        int recordStart = pageSize - recordBytes;
+        buf.putInt(numSlots);
+        buf.putInt(recordStart);
+
+        // the directory; records go in slot order from the end of the page
+        int offset = pageSize;
+        for (int i = 0; i < numSlots; i++) {
+            if (isSlotUsed(i)) {
+                offset -= lengths[i];
+                buf.putShort((short) offset);
+                buf.putShort((short) lengths[i]);
+            } else {
+                buf.putInt(0);
+            }
+        }
+
+        buf.put(ZEROS, 0, recordStart - HEADER_SIZE - numSlots * ENTRY_SIZE);
+
+        // the records, lowest offset (last slot) first
+        for (int i = numSlots - 1; i >= 0; i--) {
+            if (!isSlotUsed(i))
+                continue;
+            if (tuples[i] == null) {
+                ByteBuffer src = data.duplicate();
+                src.position(offsets[i]);
+                src.limit(offsets[i] + lengths[i]);
+                buf.put(src);
+            } else {
+                writeRecord(buf, tuples[i]);
+            }
+        }
+    }
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on this iterator throws an UnsupportedOperationException)
+     */
+    public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+            private int slot = nextUsedSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < numSlots;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = getTuple(slot);
+                slot = nextUsedSlot(slot + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * @return the first used slot at or after from, or numSlots if there is none
+     */
+    private int nextUsedSlot(int from) {
+        int i = from;
+        while (i < numSlots && !isSlotUsed(i))
+            i++;
+        return i;
+    }
+}
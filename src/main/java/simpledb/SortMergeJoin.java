@@ -0,0 +1,227 @@
+package simpledb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * SortMergeJoin joins its children on the equality of a field of each by
+ * merging them in ascending order of the join fields, so neither input is
+ * hashed or read more than once. A child that is not already sorted on its
+ * join field (see {@link #isSortedOn}) is sorted by an {@link OrderBy},
+ * which spills to disk if the child does not fit in memory.
+ * <p>
+ * Runs of equal keys are handled on both sides: the inner tuples with the
+ * current key are kept in memory and joined with each outer tuple with
+ * that key. The result is sorted on the join field, so it can feed another
+ * merge join on that field without a sort.
+ */
+public class SortMergeJoin extends Operator {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JoinPredicate joinPredicate;
+    private DbIterator child1;
+    private DbIterator child2;
+
+    private transient TupleDesc td;
+    /**
+     * True if both join fields are INT_TYPE, so keys are compared unboxed
+     */
+    private transient boolean intKeys;
+    /**
+     * The next outer tuple, or null if the outer child is exhausted
+     */
+    private transient Tuple left;
+    /**
+     * The next inner tuple that is not in group, or null
+     */
+    private transient Tuple right;
+    /**
+     * The inner tuples whose key equals that of left, or null
+     */
+    private transient List<Tuple> group;
+    private transient int groupIndex;
+
+    /**
+     * Constructor. Accepts two children to join on an EQUALS predicate and
+     * sorts those that are not sorted on their join field.
+     *
+     * @param p      The predicate to use to join the children
+     * @param child1 Iterator for the left(outer) relation to join
+     * @param child2 Iterator for the right(inner) relation to join
+     * @throws IllegalArgumentException if the operator of p is not EQUALS
+     */
+    public SortMergeJoin(JoinPredicate p, DbIterator child1, DbIterator child2) {
+        if (p.getOperator() != Predicate.Op.EQUALS)
+            throw new IllegalArgumentException("merge joins need an EQUALS predicate, not " + p.getOperator());
+        this.joinPredicate = p;
+        this.child1 = sorted(child1, p.getField1());
+        this.child2 = sorted(child2, p.getField2());
+    }
+
+    private static DbIterator sorted(DbIterator child, int field) {
+        return isSortedOn(child, field) ? child : new OrderBy(field, true, child);
+    }
+
+    /**
+     * Returns true if the tuples of an iterator are known to be in
+     * ascending order of a field: it is an ascending OrderBy on that field,
+     * or a SortMergeJoin and the field is one of its join fields.
+     *
+     * @param it    the iterator
+     * @param field the index of a field of its tuples
+     */
+    public static boolean isSortedOn(DbIterator it, int field) {
+        if (it instanceof OrderBy) {
+            OrderBy o = (OrderBy) it;
+            return o.isASC() && o.getOrderByField() == field;
+        }
+        if (it instanceof SortMergeJoin) {
+            SortMergeJoin j = (SortMergeJoin) it;
+            JoinPredicate p = j.getJoinPredicate();
+            return field == p.getField1()
+                    || field == j.child1.getTupleDesc().numFields() + p.getField2();
+        }
+        return false;
+    }
+
+    public JoinPredicate getJoinPredicate() {
+        return joinPredicate;
+    }
+
+    /**
+     * @return the field name of join field1. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField1Name() {
+        return child1.getTupleDesc().getFieldName(joinPredicate.getField1());
+    }
+
+    /**
+     * @return the field name of join field2. Should be quantified by
+     * alias or table name.
+     */
+    public String getJoinField2Name() {
+        return child2.getTupleDesc().getFieldName(joinPredicate.getField2());
+    }
+
+    public TupleDesc getTupleDesc() {
+        return TupleDesc.merge(child1.getTupleDesc(), child2.getTupleDesc());
+    }
+
+    public void open() throws DbException, NoSuchElementException,
+            TransactionAbortedException {
+        td = getTupleDesc();
+        intKeys = child1.getTupleDesc().getFieldType(joinPredicate.getField1()) == Type.INT_TYPE
+                && child2.getTupleDesc().getFieldType(joinPredicate.getField2()) == Type.INT_TYPE;
+        child1.open();
+        child2.open();
+        start();
+        super.open();
+    }
+
+    private void start() throws DbException, TransactionAbortedException {
+        left = next(child1);
+        right = next(child2);
+        group = null;
+    }
+
+    private static Tuple next(DbIterator child) throws DbException, TransactionAbortedException {
+        return child.hasNext() ? child.next() : null;
+    }
+
+    /**
+     * Compare the join field of an outer tuple with that of an inner one.
+     *
+     * @return a negative number, zero or a positive number if the outer key
+     * is smaller than, equal to or larger than the inner one
+     */
+    private int compareKeys(Tuple outer, Tuple inner) {
+        int field1 = joinPredicate.getField1();
+        int field2 = joinPredicate.getField2();
+        if (intKeys)
+            return Integer.compare(outer.getInt(field1), inner.getInt(field2));
+        Field k1 = outer.getField(field1);
+        Field k2 = inner.getField(field2);
+        if (k1.compare(Predicate.Op.LESS_THAN, k2))
+            return -1;
+        return k1.compare(Predicate.Op.GREATER_THAN, k2) ? 1 : 0;
+    }
+
+    private Tuple merge(Tuple t1, Tuple t2) {
+        Tuple tuple = new Tuple(td);
+        int n1 = t1.getTupleDesc().numFields();
+        for (int i = 0; i < n1; i++)
+            tuple.setField(i, t1, i);
+        for (int i = 0; i < t2.getTupleDesc().numFields(); i++)
+            tuple.setField(n1 + i, t2, i);
+        return tuple;
+    }
+
+    /**
+     * Returns the next tuple generated by the join, or null if there are no
+     * more tuples. The tuples are returned in ascending order of the join
+     * field.
+     *
+     * @see Join#fetchNext
+     */
+    protected Tuple fetchNext() throws TransactionAbortedException, DbException {
+        while (true) {
+            if (group != null) {
+                if (groupIndex < group.size())
+                    return merge(left, group.get(groupIndex++));
+                // the next outer tuple may have the same key
+                left = next(child1);
+                if (left != null && compareKeys(left, group.get(0)) == 0) {
+                    groupIndex = 0;
+                    continue;
+                }
+                group = null;
+            }
+            if (left == null || right == null)
+                return null;
+            int c = compareKeys(left, right);
+            if (c < 0) {
+                left = next(child1);
+            } else if (c > 0) {
+                right = next(child2);
+            } else {
+                group = new ArrayList<Tuple>();
+                group.add(right);
+                right = next(child2);
+                while (right != null && compareKeys(left, right) == 0) {
+                    group.add(right);
+                    right = next(child2);
+                }
+                groupIndex = 0;
+            }
+        }
+    }
+
+    public void close() {
+        super.close();
+        group = null;
+        left = null;
+        right = null;
+        child1.close();
+        child2.close();
+    }
+
+    public void rewind() throws DbException, TransactionAbortedException {
+        child1.rewind();
+        child2.rewind();
+        start();
+    }
+
+    @Override
+    public DbIterator[] getChildren() {
+        return new DbIterator[]{child1, child2};
+    }
+
+    @Override
+    public void setChildren(DbIterator[] children) {
+        this.child1 = sorted(children[0], joinPredicate.getField1());
+        this.child2 = sorted(children[1], joinPredicate.getField2());
+    }
+}
@@ -0,0 +1,136 @@
+package simpledb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * SpillFile is a temporary HeapFile that an operator writes tuples to when
+ * they do not fit in memory, e.g. the partitions of a {@link HashJoin}.
+ * Tuples are appended one page at a time and read back in the order they
+ * were written. A spill file is private to the operator that writes it, so
+ * its pages bypass the BufferPool: they need neither locks nor frames in
+ * the pool, and only the page being filled is kept in memory.
+ * <p>
+ * The file is in the Catalog, under a random name, until it is deleted,
+ * since pages look up their schema there.
+ */
+public class SpillFile {
+
+    private final HeapFile file;
+    private final int[] columns;
+    private TuplePage page;
+    private int numPages;
+    private long numTuples;
+
+    /**
+     * Create an empty spill file in the temporary directory.
+     *
+     * @param td the schema of the tuples to store
+     * @throws IOException if the file cannot be created
+     */
+    public SpillFile(TupleDesc td) throws IOException {
+        File f = File.createTempFile("spill", ".dat");
+        f.deleteOnExit();
+        this.file = new HeapFile(f, td);
+        Database.getCatalog().addTable(file);
+        this.columns = new int[td.numFields()];
+        for (int j = 0; j < columns.length; j++)
+            columns[j] = j;
+    }
+
+    /**
+     * @return the number of tuples added to this file
+     */
+    public long size() {
+        return numTuples;
+    }
+
+    /**
+     * @return the number of bytes the added tuples take on disk
+     */
+    public long getSize() {
+        return numTuples * file.getTupleDesc().getSize();
+    }
+
+    /**
+     * Append a tuple to this file. The tuple itself is not changed.
+     *
+     * @throws IOException if a full page cannot be written
+     */
+    public void add(Tuple t) throws IOException {
+        // a copy, as inserting a tuple changes its RecordId
+        Tuple copy = t.project(columns, file.getTupleDesc());
+        try {
+            if (page == null || !page.hasRoomFor(copy)) {
+                flush();
+                page = file.getLayout().createPage(new HeapPageId(file.getId(), numPages),
+                        ByteBuffer.wrap(HeapPage.createEmptyPageData(file.getPageSize())));
+            }
+            page.insertTuple(copy);
+        } catch (DbException e) {
+            throw new IOException("cannot store tuple on page " + numPages, e);
+        }
+        numTuples++;
+    }
+
+    /**
+     * Write the page being filled, if any.
+     */
+    private void flush() throws IOException {
+        if (page != null) {
+            file.writePage(page);
+            numPages++;
+            page = null;
+        }
+    }
+
+    /**
+     * Returns an iterator over the tuples of this file, in the order they
+     * were added. The page being filled is written first; tuples added
+     * after this call are not returned.
+     *
+     * @throws IOException if the page being filled cannot be written
+     */
+    public Iterator<Tuple> iterator() throws IOException {
+        flush();
+        final int pages = numPages;
+        return new Iterator<Tuple>() {
+            private int pageNo = 0;
+            private Iterator<Tuple> tuples;
+
+            @Override
+            public boolean hasNext() {
+                while (tuples == null || !tuples.hasNext()) {
+                    if (pageNo >= pages)
+                        return false;
+                    tuples = ((TuplePage) file.readPage(new HeapPageId(file.getId(), pageNo++))).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return tuples.next();
+            }
+        };
+    }
+
+    /**
+     * Remove this file from the Catalog and the disk.
+     */
+    public void delete() {
+        page = null;
+        Database.getCatalog().removeTable(file.getId());
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        file.getFile().delete();
+    }
+}
@@ -4,19 +4,29 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Tuple maintains information about the contents of a tuple. Tuples have a
  * specified schema specified by a TupleDesc object and contain Field objects
  * with the data for each field.
+ * <p>
+ * Values of int fields can also be stored unboxed with {@link #setInt} and
+ * read with {@link #getInt}, which is how pages decode tuples and how
+ * predicates and projections access them: a scan then does not allocate an
+ * IntField per value. {@link #getField} still returns a Field for such a
+ * value, boxing it on every call.
  */
-public class Tuple implements Serializable {
+public class Tuple implements TupleView, Serializable {
 
     private static final long serialVersionUID = 1L;
     // store data
     private final Field[] fields;
+    /**
+     * Unboxed int values, and which fields hold one; allocated by the first
+     * setInt
+     */
+    private int[] ints;
+    private boolean[] unboxed;
     private TupleDesc tupleDesc;
 
     private RecordId recordId;
@@ -71,15 +81,31 @@ public class Tuple implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tuple tuple = (Tuple) o;
-        return Arrays.equals(fields, tuple.fields) &&
-                Objects.equals(tupleDesc, tuple.tupleDesc);
+        if (!Objects.equals(tupleDesc, tuple.tupleDesc) || fields.length != tuple.fields.length)
+            return false;
+        for (int i = 0; i < fields.length; i++) {
+            if (isUnboxed(i) && tuple.isUnboxed(i)) {
+                if (ints[i] != tuple.ints[i])
+                    return false;
+            } else if (!Objects.equals(getField(i), tuple.getField(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(tupleDesc);
-        result = 31 * result + Arrays.hashCode(fields);
-        return result;
+        // the same as Arrays.hashCode(fields) with all values boxed
+        int h = 1;
+        for (int i = 0; i < fields.length; i++) {
+            if (isUnboxed(i))
+                h = 31 * h + ints[i];
+            else
+                h = 31 * h + (fields[i] == null ? 0 : fields[i].hashCode());
+        }
+        return 31 * result + h;
     }
 
     /**
@@ -94,6 +120,67 @@ public class Tuple implements Serializable {
             throw new IllegalArgumentException("index not valid.");
         }
         this.fields[i] = f;
+        if (unboxed != null)
+            unboxed[i] = false;
+    }
+
+    /**
+     * Set the ith field of this tuple to an int value without boxing it.
+     *
+     * @param i index of the field to change; it must be an INT_TYPE field
+     * @param v new value for the field
+     */
+    public void setInt(int i, int v) {
+        if (i < 0 || i > fields.length - 1) {
+            throw new IllegalArgumentException("index not valid.");
+        }
+        if (ints == null) {
+            ints = new int[fields.length];
+            unboxed = new boolean[fields.length];
+        }
+        fields[i] = null;
+        ints[i] = v;
+        unboxed[i] = true;
+    }
+
+    /**
+     * @param i index of an INT_TYPE field whose value has been set
+     * @return the value of the ith field, without boxing it
+     */
+    public int getInt(int i) {
+        if (isUnboxed(i))
+            return ints[i];
+        return ((IntField) getField(i)).getValue();
+    }
+
+    /**
+     * Copy field j of source into field i of this tuple, without boxing an
+     * unboxed int value.
+     */
+    public void setField(int i, Tuple source, int j) {
+        if (source.isUnboxed(j))
+            setInt(i, source.ints[j]);
+        else
+            setField(i, source.getField(j));
+    }
+
+    /**
+     * Returns a new tuple with the given fields of this one, in the given
+     * order, and the same record id.
+     *
+     * @param columns the indexes of the fields to keep
+     * @param td      the schema of the new tuple
+     */
+    public Tuple project(int[] columns, TupleDesc td) {
+        Tuple t = new Tuple(td);
+        for (int k = 0; k < columns.length; k++)
+            t.setField(k, this, columns[k]);
+        t.setRecordId(getRecordId());
+        return t;
+    }
+
+    private boolean isUnboxed(int i) {
+        return unboxed != null && unboxed[i];
     }
 
     /**
@@ -105,6 +192,11 @@ public class Tuple implements Serializable {
         if (i < 0 || i > fields.length - 1) {
             throw new IllegalArgumentException("index not valid.");
         }
+        if (isUnboxed(i)) {
+            // not cached: tuples of pages in the BufferPool are read by
+            // several threads
+            return new IntField(ints[i]);
+        }
         return this.fields[i];
     }
 
@@ -118,7 +210,13 @@ public class Tuple implements Serializable {
      */
     public String toString() {
         // some code goes here
-        return Stream.of(fields).map(Field::toString).collect(Collectors.joining("\t")) + "\n";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                sb.append('\t');
+            sb.append(isUnboxed(i) ? Integer.toString(ints[i]) : String.valueOf(fields[i]));
+        }
+        return sb.append('\n').toString();
     }
 
     /**
@@ -126,6 +224,9 @@ public class Tuple implements Serializable {
      */
     public Iterator<Field> fields() {
         // some code goes here
-        return Arrays.asList(this.fields).iterator();
+        Field[] values = new Field[fields.length];
+        for (int i = 0; i < fields.length; i++)
+            values[i] = getField(i);
+        return Arrays.asList(values).iterator();
     }
 }
@@ -0,0 +1,438 @@
+package simpledb;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * TupleBatch holds up to {@link #capacity()} rows of tuples column by column:
+ * the values of an INT_TYPE column are an int array, those of other columns
+ * an array of Fields. Batch operators (see {@link BatchIterator}) work on a
+ * whole batch per call, in loops over a column, instead of calling next()
+ * and the Field methods once per tuple.
+ * <p>
+ * A selection vector tells which rows of the batch are part of the result:
+ * a filter does not move rows, it only selects the ones that pass.
+ * {@link #numRows()} is the number of selected rows and {@link #row(int)}
+ * maps the k-th selected row to its index in the column arrays.
+ */
+public class TupleBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of rows of batches created without a capacity
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final TupleDesc td;
+    private final int capacity;
+    /**
+     * The values of each INT_TYPE column, null for other columns
+     */
+    private final int[][] ints;
+    /**
+     * The values of each column that is not an INT_TYPE column
+     */
+    private final Field[][] fields;
+    private final RecordId[] recordIds;
+
+    private int size;
+    /**
+     * Whether the batch has a selection; if not, all rows are selected
+     */
+    private boolean filtered;
+    /**
+     * The first selected entries are the selected rows in increasing order
+     */
+    private int[] selection;
+    private int selected;
+
+    /**
+     * Create an empty batch of {@link #DEFAULT_CAPACITY} rows.
+     *
+     * @param td the schema of the rows
+     */
+    public TupleBatch(TupleDesc td) {
+        this(td, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty batch.
+     *
+     * @param td       the schema of the rows
+     * @param capacity the maximum number of rows
+     */
+    public TupleBatch(TupleDesc td, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.td = td;
+        this.capacity = capacity;
+        this.ints = new int[td.numFields()][];
+        this.fields = new Field[td.numFields()][];
+        for (int j = 0; j < td.numFields(); j++) {
+            if (td.getFieldType(j) == Type.INT_TYPE)
+                ints[j] = new int[capacity];
+            else
+                fields[j] = new Field[capacity];
+        }
+        this.recordIds = new RecordId[capacity];
+    }
+
+    /**
+     * A batch sharing the rows of another one, starting with a copy of its
+     * selection.
+     */
+    private TupleBatch(TupleDesc td, TupleBatch source, int[] columns) {
+        this.td = td;
+        this.capacity = source.capacity;
+        this.ints = new int[columns.length][];
+        this.fields = new Field[columns.length][];
+        for (int j = 0; j < columns.length; j++) {
+            ints[j] = source.ints[columns[j]];
+            fields[j] = source.fields[columns[j]];
+        }
+        this.recordIds = source.recordIds;
+        this.size = source.size;
+        this.filtered = source.filtered;
+        this.selection = source.selection == null ? null : source.selection.clone();
+        this.selected = source.selected;
+    }
+
+    /**
+     * @return the schema of the rows of this batch
+     */
+    public TupleDesc getTupleDesc() {
+        return td;
+    }
+
+    /**
+     * @return the maximum number of rows of this batch
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of rows in the column arrays, selected or not
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no more rows can be added
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return the number of selected rows
+     */
+    public int numRows() {
+        return filtered ? selected : size;
+    }
+
+    /**
+     * @param k the index of a selected row, from 0 to numRows() - 1
+     * @return the index of that row in the column arrays
+     */
+    public int row(int k) {
+        return filtered ? selection[k] : k;
+    }
+
+    /**
+     * Remove all rows and the selection.
+     */
+    public void clear() {
+        size = 0;
+        filtered = false;
+        selected = 0;
+    }
+
+    /**
+     * Append a tuple to this batch. The batch must not be full or have a
+     * selection.
+     *
+     * @param t a tuple of the schema of this batch
+     */
+    public void add(Tuple t) {
+        if (size == capacity)
+            throw new IllegalStateException("batch is full");
+        if (filtered)
+            throw new IllegalStateException("cannot add rows to a filtered batch");
+        for (int j = 0; j < ints.length; j++) {
+            if (ints[j] != null)
+                ints[j][size] = t.getInt(j);
+            else
+                fields[j][size] = t.getField(j);
+        }
+        recordIds[size] = t.getRecordId();
+        size++;
+    }
+
+    /**
+     * Append a row to this batch, whose values are then set with
+     * {@link #setInt} and {@link #setField}. The batch must not be full or
+     * have a selection. Pages use this to decode their bytes straight into
+     * the columns.
+     *
+     * @param rid the record id of the row, or null
+     * @return the index of the new row
+     */
+    public int addRow(RecordId rid) {
+        if (size == capacity)
+            throw new IllegalStateException("batch is full");
+        if (filtered)
+            throw new IllegalStateException("cannot add rows to a filtered batch");
+        recordIds[size] = rid;
+        return size++;
+    }
+
+    /**
+     * Append count rows to this batch, like {@link #addRow} but with no
+     * record ids yet; set them with {@link #setRecordId}. Pages use this to
+     * copy a run of values into an int column with one bulk copy, into the
+     * array returned by {@link #getIntColumn}.
+     *
+     * @param count the number of rows, at most capacity() - size()
+     * @return the index of the first new row
+     */
+    public int addRows(int count) {
+        if (count < 0 || size + count > capacity)
+            throw new IllegalStateException("batch is full");
+        if (filtered)
+            throw new IllegalStateException("cannot add rows to a filtered batch");
+        int first = size;
+        for (int row = first; row < first + count; row++)
+            recordIds[row] = null;
+        size += count;
+        return first;
+    }
+
+    /**
+     * Set the record id of a row.
+     */
+    public void setRecordId(int row, RecordId rid) {
+        recordIds[row] = rid;
+    }
+
+    /**
+     * Set the value of an INT_TYPE column of a row.
+     */
+    public void setInt(int column, int row, int value) {
+        ints[column][row] = value;
+    }
+
+    /**
+     * Set the value of a column of a row; int values are unboxed.
+     */
+    public void setField(int column, int row, Field value) {
+        if (ints[column] != null)
+            ints[column][row] = ((IntField) value).getValue();
+        else
+            fields[column][row] = value;
+    }
+
+    /**
+     * Append a row of int values to this batch, which must only have
+     * INT_TYPE columns, not be full and not have a selection.
+     */
+    public void add(int... values) {
+        if (size == capacity)
+            throw new IllegalStateException("batch is full");
+        if (filtered)
+            throw new IllegalStateException("cannot add rows to a filtered batch");
+        for (int j = 0; j < ints.length; j++)
+            ints[j][size] = values[j];
+        recordIds[size] = null;
+        size++;
+    }
+
+    /**
+     * Returns the values of an INT_TYPE column, indexed by row. Only the
+     * first size() values are rows of the batch, and only the selected ones
+     * are part of the result. The array is shared with the batch.
+     *
+     * @param column the index of the column
+     */
+    public int[] getIntColumn(int column) {
+        if (ints[column] == null)
+            throw new IllegalArgumentException("column " + column + " is not an int column");
+        return ints[column];
+    }
+
+    /**
+     * @return the value of an INT_TYPE column of a row
+     */
+    public int getInt(int column, int row) {
+        return ints[column][row];
+    }
+
+    /**
+     * @return the value of a column of a row; int values are boxed
+     */
+    public Field getField(int column, int row) {
+        if (ints[column] != null)
+            return new IntField(ints[column][row]);
+        return fields[column][row];
+    }
+
+    /**
+     * @return a new tuple holding the values of a row
+     */
+    public Tuple getTuple(int row) {
+        Tuple t = new Tuple(td);
+        for (int j = 0; j < ints.length; j++) {
+            if (ints[j] != null)
+                t.setInt(j, ints[j][row]);
+            else
+                t.setField(j, fields[j][row]);
+        }
+        t.setRecordId(recordIds[row]);
+        return t;
+    }
+
+    /**
+     * Narrow the selection to the selected rows that satisfy p.
+     *
+     * @param p a predicate on a column of this batch
+     */
+    public void filter(Predicate p) {
+        int column = p.getField();
+        int n = numRows();
+        boolean all = !filtered;
+        if (selection == null)
+            selection = new int[capacity];
+        int[] sel = selection;
+        int out = 0;
+        if (ints[column] != null && p.getOperand() instanceof IntField) {
+            // one loop per operator, so the comparison is not a switch per
+            // row
+            int[] values = ints[column];
+            int operand = ((IntField) p.getOperand()).getValue();
+            switch (p.getOp()) {
+            case EQUALS:
+            case LIKE:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] == operand ? 1 : 0;
+                }
+                break;
+            case NOT_EQUALS:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] != operand ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] > operand ? 1 : 0;
+                }
+                break;
+            case GREATER_THAN_OR_EQ:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] >= operand ? 1 : 0;
+                }
+                break;
+            case LESS_THAN:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] < operand ? 1 : 0;
+                }
+                break;
+            case LESS_THAN_OR_EQ:
+                for (int k = 0; k < n; k++) {
+                    int row = all ? k : sel[k];
+                    sel[out] = row;
+                    out += values[row] <= operand ? 1 : 0;
+                }
+                break;
+            }
+        } else {
+            for (int k = 0; k < n; k++) {
+                int row = all ? k : sel[k];
+                if (getField(column, row).compare(p.getOp(), p.getOperand()))
+                    sel[out++] = row;
+            }
+        }
+        filtered = true;
+        selected = out;
+    }
+
+    /**
+     * Narrow the selection to the selected rows that satisfy a compiled
+     * predicate. Each row is tested through a view of its columns, so no
+     * Tuple is created and int fields are not boxed.
+     *
+     * @param e the predicates to test, compiled with
+     *          {@link Evaluator#compile(List)}, on the columns of this batch
+     */
+    public void filter(Evaluator e) {
+        int n = numRows();
+        boolean all = !filtered;
+        if (selection == null)
+            selection = new int[capacity];
+        int[] sel = selection;
+        RowView view = new RowView();
+        int out = 0;
+        for (int k = 0; k < n; k++) {
+            int row = all ? k : sel[k];
+            view.row = row;
+            if (e.eval(view))
+                sel[out++] = row;
+        }
+        filtered = true;
+        selected = out;
+    }
+
+    /**
+     * A view of a row of this batch that an Evaluator can test.
+     */
+    private class RowView implements TupleView {
+        int row;
+
+        @Override
+        public int getInt(int i) {
+            return ints[i][row];
+        }
+
+        @Override
+        public Field getField(int i) {
+            return TupleBatch.this.getField(i, row);
+        }
+    }
+
+    /**
+     * Returns a batch with the rows of this one and a copy of its
+     * selection, so that it can be filtered without changing the selection
+     * of this batch. The rows are shared, as in {@link #project}.
+     */
+    public TupleBatch duplicate() {
+        int[] columns = new int[td.numFields()];
+        for (int j = 0; j < columns.length; j++)
+            columns[j] = j;
+        return new TupleBatch(td, this, columns);
+    }
+
+    /**
+     * Returns a batch with the given columns of this one, in the given
+     * order. The new batch shares the rows of this one, so no values are
+     * copied; it is a view that is only valid until this batch is changed.
+     * It starts with a copy of the selection of this batch, so filtering
+     * one does not change the selection of the other.
+     *
+     * @param columns the indexes of the columns to keep
+     * @param td      the schema of the new batch
+     */
+    public TupleBatch project(int[] columns, TupleDesc td) {
+        return new TupleBatch(td, this, columns);
+    }
+}
@@ -84,6 +84,27 @@ public class TupleDesc implements Serializable {
         return new TupleDesc(mergeType, mergeField);
     }
 
+    /**
+     * Returns a TupleDesc with the given fields of td, in the given order.
+     *
+     * @param td      the TupleDesc to take the fields from
+     * @param columns the indexes of the fields in td
+     * @return the new TupleDesc
+     * @throws IllegalArgumentException if an index is not a valid field
+     *                                  reference
+     */
+    public static TupleDesc project(TupleDesc td, int[] columns) {
+        Type[] types = new Type[columns.length];
+        String[] names = new String[columns.length];
+        for (int k = 0; k < columns.length; k++) {
+            if (columns[k] < 0 || columns[k] >= td.typeAr.length)
+                throw new IllegalArgumentException("field " + columns[k] + " is not a valid field reference");
+            types[k] = td.typeAr[columns[k]];
+            names[k] = td.fieldAr[columns[k]];
+        }
+        return new TupleDesc(types, names);
+    }
+
     /**
      * @return An iterator which iterates over all the field TDItems
      * that are included in this TupleDesc
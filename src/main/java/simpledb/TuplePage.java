@@ -0,0 +1,171 @@
+package simpledb;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * TuplePage is a page of a HeapFile that stores tuples, whatever its on-disk
+ * layout. Scans and inserts go through this interface so that a HeapFile can
+ * use any {@link PageLayout}.
+ */
+public interface TuplePage extends Page {
+
+    /**
+     * Stop sharing the bytes this page was created from if they are a
+     * read-only buffer, e.g. a view into a memory mapped file, by copying
+     * them. A page calls this before it is modified; a file calls it on
+     * the pages it handed out before it overwrites their bytes.
+     */
+    void detach();
+
+    /**
+     * @return an iterator over all tuples on this page (calling remove on
+     * this iterator throws an UnsupportedOperationException)
+     */
+    Iterator<Tuple> iterator();
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy all of
+     * the given predicates.
+     *
+     * @param predicates the predicates pushed down into the scan
+     */
+    default Iterator<Tuple> iterator(List<Predicate> predicates) {
+        if (predicates.isEmpty())
+            return iterator();
+        return iterator(Evaluator.compile(predicates), null, null);
+    }
+
+    /**
+     * Returns an iterator over the tuples on this page that satisfy filter,
+     * holding only the given fields. The scan compiles its predicates into
+     * filter once; pages override this to test filter
+     * on a view of the bytes of each slot, so tuples that do not match are
+     * never decoded, and to decode only the given fields of those that do.
+     * By default whole tuples are decoded, tested and then projected.
+     *
+     * @param filter  the predicates pushed down into the scan, on the fields
+     *                of the whole tuples, compiled with
+     *                {@link Evaluator#compile(List)}, or null if there are
+     *                none
+     * @param columns the indexes of the fields to return, or null for all
+     * @param td      the schema of the returned tuples, see
+     *                {@link TupleDesc#project}
+     */
+    default Iterator<Tuple> iterator(Evaluator filter, int[] columns, TupleDesc td) {
+        Iterator<Tuple> it = filter == null ? iterator() : filter(iterator(), filter);
+        return columns == null ? it : project(it, columns, td);
+    }
+
+    /**
+     * Appends the tuples on this page that satisfy filter to batch, holding
+     * only the given fields, until the batch is full. Pages override this
+     * to decode their bytes straight into the columns of the batch; by
+     * default tuples are read with
+     * {@link #iterator(Evaluator, int[], TupleDesc)} and copied.
+     *
+     * @param batch   the batch to append to, of the schema of the returned
+     *                tuples
+     * @param from    0 to start at the first tuple of the page, or a
+     *                position returned by an earlier call
+     * @param filter  the compiled predicates pushed down into the scan, or
+     *                null if there are none
+     * @param columns the indexes of the fields to return, or null for all
+     * @return the position to continue from once batch has been emptied,
+     * or -1 if all tuples of the page have been appended
+     */
+    default int fill(TupleBatch batch, int from, Evaluator filter, int[] columns) {
+        Iterator<Tuple> it = iterator(filter, columns, batch.getTupleDesc());
+        int position = 0;
+        for (; position < from && it.hasNext(); position++)
+            it.next();
+        for (; it.hasNext(); position++) {
+            if (batch.isFull())
+                return position;
+            batch.add(it.next());
+        }
+        return -1;
+    }
+
+    /**
+     * @return an iterator over the tuples of it projected onto columns
+     * @see Tuple#project
+     */
+    static Iterator<Tuple> project(final Iterator<Tuple> it, final int[] columns, final TupleDesc td) {
+        return new Iterator<Tuple>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Tuple next() {
+                return it.next().project(columns, td);
+            }
+        };
+    }
+
+    /**
+     * @return an iterator over the tuples of it that satisfy e
+     */
+    static Iterator<Tuple> filter(final Iterator<Tuple> it, final Evaluator e) {
+        return new Iterator<Tuple>() {
+            private Tuple next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && it.hasNext()) {
+                    Tuple t = it.next();
+                    if (e.eval(t))
+                        next = t;
+                }
+                return next != null;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Tuple t = next;
+                next = null;
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Adds the specified tuple to the page; the tuple should be updated to
+     * reflect that it is now stored on this page.
+     *
+     * @param t The tuple to add.
+     * @throws DbException if there is no room for the tuple or its tupledesc
+     *                     does not match
+     */
+    void insertTuple(Tuple t) throws DbException;
+
+    /**
+     * Delete the specified tuple from the page; the tuple should be updated
+     * to reflect that it is no longer stored on any page.
+     *
+     * @param t The tuple to delete
+     * @throws DbException if this tuple is not on this page, or its slot is
+     *                     already empty.
+     */
+    void deleteTuple(Tuple t) throws DbException;
+
+    /**
+     * @return true if insertTuple(t) would succeed
+     */
+    boolean hasRoomFor(Tuple t);
+
+    /**
+     * Encodes this page into buf, in the format produced by getPageData,
+     * starting at the current position of buf; the position is advanced by
+     * the size of the page.
+     *
+     * @param buf the buffer to write to
+     */
+    void writeTo(ByteBuffer buf);
+}
@@ -0,0 +1,22 @@
+package simpledb;
+
+/**
+ * TupleView gives read access to the fields of a tuple that may not have
+ * been decoded. A {@link Tuple} is one; pages also have views of a slot that
+ * read fields straight from the page bytes, so that an {@link Evaluator} can
+ * test a tuple before it is decoded.
+ */
+public interface TupleView {
+
+    /**
+     * @param i index of an INT_TYPE field
+     * @return the value of the ith field, without boxing it
+     */
+    int getInt(int i);
+
+    /**
+     * @param i field index to return. Must be a valid index.
+     * @return the value of the ith field
+     */
+    Field getField(int i);
+}
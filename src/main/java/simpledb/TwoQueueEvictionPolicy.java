@@ -0,0 +1,96 @@
+package simpledb;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.stream.Stream;
+
+/**
+ * The full 2Q policy of Johnson and Shasha. Pages seen for the first time
+ * enter a FIFO queue A1in. When a page falls out of A1in its id is remembered
+ * in a ghost queue A1out; if it is requested again while its id is still in
+ * A1out it is considered hot and admitted to the LRU queue Am. A page that
+ * is touched only once (e.g. by a large scan) therefore never displaces the
+ * pages in Am.
+ */
+public class TwoQueueEvictionPolicy implements EvictionPolicy {
+
+    private final int kin;
+    private final int kout;
+
+    private final LinkedHashSet<PageId> a1in = new LinkedHashSet<>();
+    private final LinkedHashSet<PageId> a1out = new LinkedHashSet<>();
+    private final LinkedHashMap<PageId, Boolean> am = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a 2Q policy with the queue sizes recommended by the paper: A1in
+     * holds a quarter of the pool and A1out remembers half of it.
+     *
+     * @param numPages the number of frames in the BufferPool
+     */
+    public TwoQueueEvictionPolicy(int numPages) {
+        this(Math.max(1, numPages / 4), Math.max(1, numPages / 2));
+    }
+
+    /**
+     * @param kin  the target size of A1in, in pages
+     * @param kout the number of page ids remembered by A1out
+     */
+    public TwoQueueEvictionPolicy(int kin, int kout) {
+        this.kin = kin;
+        this.kout = kout;
+    }
+
+    @Override
+    public String getName() {
+        return "2Q";
+    }
+
+    @Override
+    public void pageAdmitted(PageId pid) {
+        if (am.containsKey(pid) || a1in.contains(pid)) {
+            pageAccessed(pid);
+            return;
+        }
+        if (a1out.remove(pid)) {
+            am.put(pid, Boolean.TRUE);
+        } else {
+            a1in.add(pid);
+        }
+    }
+
+    @Override
+    public void pageAccessed(PageId pid) {
+        // hits in A1in are deliberately ignored: correlated references right
+        // after the first one should not promote the page
+        am.get(pid);
+    }
+
+    @Override
+    public void pageRemoved(PageId pid) {
+        if (a1in.remove(pid)) {
+            a1out.add(pid);
+            if (a1out.size() > kout) {
+                Iterator<PageId> it = a1out.iterator();
+                it.next();
+                it.remove();
+            }
+        } else {
+            am.remove(pid);
+        }
+    }
+
+    @Override
+    public Iterator<PageId> victims() {
+        if (a1in.size() > kin)
+            return Stream.concat(a1in.stream(), am.keySet().stream()).iterator();
+        return Stream.concat(am.keySet().stream(), a1in.stream()).iterator();
+    }
+
+    @Override
+    public void clear() {
+        a1in.clear();
+        a1out.clear();
+        am.clear();
+    }
+}
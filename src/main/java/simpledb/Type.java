@@ -3,6 +3,7 @@ package simpledb;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -26,6 +27,26 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            return new IntField(buf.getInt(offset));
+        }
+
+        @Override
+        public void write(ByteBuffer buf, Field f) {
+            buf.putInt(((IntField) f).getValue());
+        }
+
+        @Override
+        public void read(ByteBuffer buf, int offset, Tuple t, int i) {
+            t.setInt(i, buf.getInt(offset));
+        }
+
+        @Override
+        public void write(ByteBuffer buf, Tuple t, int i) {
+            buf.putInt(t.getInt(i));
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -44,9 +65,30 @@ public enum Type implements Serializable {
                 throw new ParseException("couldn't parse", 0);
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buf, int offset) {
+            int strLen = buf.getInt(offset);
+            byte bs[] = new byte[strLen];
+            for (int i = 0; i < strLen; i++)
+                bs[i] = buf.get(offset + 4 + i);
+            return new StringField(new String(bs), STRING_LEN);
+        }
+
+        @Override
+        public void write(ByteBuffer buf, Field f) {
+            // same bytes as StringField.serialize
+            String s = ((StringField) f).getValue();
+            int len = Math.min(s.length(), STRING_LEN);
+            buf.putInt(len);
+            for (int i = 0; i < len; i++)
+                buf.put((byte) s.charAt(i));
+            buf.put(PADDING, 0, STRING_LEN - len);
+        }
     };
 
     public static final int STRING_LEN = 128;
+    private static final byte[] PADDING = new byte[STRING_LEN];
 
     /**
      * @return the number of bytes required to store a field of this type.
@@ -62,4 +104,56 @@ public enum Type implements Serializable {
      */
     public abstract Field parse(DataInputStream dis) throws ParseException;
 
+    /**
+     * @param buf The buffer to read from, starting at its current position.
+     *            The position is advanced by {@link #getLen()} bytes.
+     * @return a Field object of the same type as this object that has contents
+     * read from the specified buffer.
+     */
+    public Field parse(ByteBuffer buf) {
+        Field f = parse(buf, buf.position());
+        buf.position(buf.position() + getLen());
+        return f;
+    }
+
+    /**
+     * @param buf    The buffer to read from.
+     * @param offset The absolute offset of the field in buf. The position of
+     *               the buffer is not changed.
+     * @return a Field object of the same type as this object that has contents
+     * read from the specified buffer.
+     */
+    public abstract Field parse(ByteBuffer buf, int offset);
+
+    /**
+     * Write f to buf at its current position, in the format read by
+     * {@link #parse(ByteBuffer)}, and advance the position by
+     * {@link #getLen()} bytes.
+     *
+     * @param buf The buffer to write to.
+     * @param f   A field of this type.
+     */
+    public abstract void write(ByteBuffer buf, Field f);
+
+    /**
+     * Read a field of this type from buf into field i of t, like
+     * {@link #parse(ByteBuffer, int)}; int values are stored unboxed.
+     *
+     * @param buf    The buffer to read from.
+     * @param offset The absolute offset of the field in buf.
+     * @param t      The tuple to set the field of.
+     * @param i      The index of the field in t.
+     */
+    public void read(ByteBuffer buf, int offset, Tuple t, int i) {
+        t.setField(i, parse(buf, offset));
+    }
+
+    /**
+     * Write field i of t to buf like {@link #write(ByteBuffer, Field)},
+     * without boxing int values.
+     */
+    public void write(ByteBuffer buf, Tuple t, int i) {
+        write(buf, t.getField(i));
+    }
+
 }
@@ -117,6 +117,25 @@ public class AggregateTest extends SimpleDbTestBase {
         TestUtil.matchAllTuples(min, op);
     }
 
+    /**
+     * An aggregate that is closed and opened again aggregates its child
+     * once.
+     */
+    @Test
+    public void reopen() throws Exception {
+        Aggregate op = new Aggregate(scan1, 1, 0,
+                Aggregator.Op.COUNT);
+        op.open();
+        while (op.hasNext()) {
+            assertNotNull(op.next());
+        }
+        op.close();
+
+        op.open();
+        count.open();
+        TestUtil.matchAllTuples(count, op);
+    }
+
     /**
      * Unit test for Aggregate.getNext() using a count aggregate with string types
      */
@@ -0,0 +1,307 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class BufferPoolTest extends SimpleDbTestBase {
+
+    private static final int POOL_PAGES = 8;
+
+    private HeapFile small;
+    private HeapFile large;
+    private TransactionId tid;
+
+    @Before public void createTables() throws Exception {
+        // 2 int columns fit 504 tuples on a page
+        small = SystemTestUtil.createRandomHeapFile(2, 504, null, null);
+        large = SystemTestUtil.createRandomHeapFile(2, 504 * 20, null, null);
+        tid = new TransactionId();
+    }
+
+    /**
+     * Only tables larger than the configured fraction of the pool get a ring.
+     */
+    @Test public void getScanRing() {
+        BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+        assertNull(bp.getScanRing(small.numPages()));
+        BufferRing ring = bp.getScanRing(large.numPages());
+        assertNotNull(ring);
+        assertEquals(BufferPool.DEFAULT_SCAN_RING_SIZE, ring.size());
+
+        bp.setScanRingPolicy(Double.MAX_VALUE, 4);
+        assertNull(bp.getScanRing(large.numPages()));
+    }
+
+    /**
+     * A scan of a large table must leave the pages of other tables resident.
+     */
+    @Test public void scanKeepsWorkingSet() throws Exception {
+        BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+        HeapPageId hot = new HeapPageId(small.getId(), 0);
+        Page hotPage = bp.getPage(tid, hot, Permissions.READ_ONLY);
+
+        int count = 0;
+        DbFileIterator it = large.iterator(tid);
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        it.close();
+        assertEquals(504 * 20, count);
+
+        long misses = bp.getMissCount();
+        assertSame(hotPage, bp.getPage(tid, hot, Permissions.READ_ONLY));
+        assertEquals(misses, bp.getMissCount());
+    }
+
+    /**
+     * Pages that are already resident are served from the pool, not read
+     * again into the ring.
+     */
+    @Test public void ringUsesResidentPages() throws Exception {
+        BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+        HeapPageId pid = new HeapPageId(large.getId(), 3);
+        Page resident = bp.getPage(tid, pid, Permissions.READ_ONLY);
+        BufferRing ring = bp.getScanRing(large.numPages());
+        assertSame(resident, bp.getPage(tid, pid, Permissions.READ_ONLY, ring));
+        assertNull(ring.get(pid));
+    }
+
+    /**
+     * Concurrent requests for the same pages read each page exactly once.
+     */
+    @Test public void concurrentGetPage() throws Exception {
+        final BufferPool bp = Database.resetBufferPool(large.numPages());
+        final int threads = 8;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < large.numPages(); i++) {
+                            HeapPageId pid = new HeapPageId(large.getId(), i);
+                            assertEquals(pid, bp.getPage(tid, pid, Permissions.READ_ONLY).getId());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertEquals(large.numPages(), bp.getMissCount());
+        assertEquals((long) (threads - 1) * large.numPages(), bp.getHitCount());
+    }
+
+    /**
+     * Hits on resident pages do not take the BufferPool monitor: they
+     * complete while another thread holds it.
+     */
+    @Test public void hitsDoNotTakeMonitor() throws Exception {
+        final BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+        final HeapPageId pid = new HeapPageId(large.getId(), 0);
+        bp.getPage(tid, pid, Permissions.READ_ONLY);
+        final int hits = POOL_PAGES * BufferPool.ACCESSES_PER_FRAME * 100;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] workers = new Thread[4];
+        synchronized (bp) {
+            for (int t = 0; t < workers.length; t++) {
+                workers[t] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int i = 0; i < hits; i++)
+                                bp.getPage(tid, pid, Permissions.READ_ONLY);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                };
+                workers[t].start();
+            }
+            for (Thread w : workers) {
+                w.join(10000);
+                assertFalse("a hit blocked on the BufferPool monitor", w.isAlive());
+            }
+        }
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        assertEquals((long) workers.length * hits, bp.getHitCount());
+    }
+
+    /**
+     * Hits recorded without the monitor still reach the policy, in order,
+     * before it picks a victim.
+     */
+    @Test public void bufferedHitsReachPolicy() throws Exception {
+        BufferPool bp = new BufferPool(2, new LruEvictionPolicy());
+        HeapPageId a = new HeapPageId(large.getId(), 0);
+        HeapPageId b = new HeapPageId(large.getId(), 1);
+        HeapPageId c = new HeapPageId(large.getId(), 2);
+        Page pageA = bp.getPage(tid, a, Permissions.READ_ONLY);
+        bp.getPage(tid, b, Permissions.READ_ONLY);
+        bp.getPage(tid, a, Permissions.READ_ONLY);
+        bp.getPage(tid, c, Permissions.READ_ONLY);
+        assertSame(pageA, bp.getPage(tid, a, Permissions.READ_ONLY));
+        assertEquals(3, bp.getMissCount());
+    }
+
+    /**
+     * A dirty page is written back when it is evicted, and reading it again
+     * returns the written contents.
+     */
+    @Test public void evictionWritesBack() throws Exception {
+        BufferPool bp = Database.resetBufferPool(1);
+        HeapPageId pid = new HeapPageId(small.getId(), 0);
+        HeapPage page = (HeapPage) bp.getPage(tid, pid, Permissions.READ_WRITE);
+        int empty = page.getNumEmptySlots();
+        page.deleteTuple(page.iterator().next());
+        page.markDirty(true, tid);
+        bp.getPage(tid, new HeapPageId(large.getId(), 0), Permissions.READ_ONLY);
+        assertNull(page.isDirty());
+
+        HeapPage reread = (HeapPage) bp.getPage(tid, pid, Permissions.READ_ONLY);
+        assertTrue(reread != page);
+        assertEquals(empty + 1, reread.getNumEmptySlots());
+    }
+
+    /**
+     * A sequential scan through a prefetcher sees every page once, in order,
+     * and reads each page from disk only once.
+     */
+    @Test public void readAhead() throws Exception {
+        BufferPool bp = Database.resetBufferPool(large.numPages());
+        ReadAheadPrefetcher prefetcher = new ReadAheadPrefetcher(bp, large.getId(), large.numPages());
+        for (int i = 0; i < large.numPages(); i++) {
+            Page p = prefetcher.getPage(tid, i, null);
+            assertEquals(new HeapPageId(large.getId(), i), p.getId());
+        }
+        prefetcher.cancel();
+        assertEquals(large.numPages(), bp.getMissCount());
+        assertTrue(prefetcher.getWindow() >= ReadAheadPrefetcher.MIN_WINDOW);
+        assertTrue(prefetcher.getWindow() <= ReadAheadPrefetcher.MAX_WINDOW);
+
+        // prefetched pages were installed in the pool
+        for (int i = 0; i < large.numPages(); i++) {
+            bp.getPage(tid, new HeapPageId(large.getId(), i), Permissions.READ_ONLY);
+        }
+        assertEquals(large.numPages(), bp.getMissCount());
+    }
+
+    /**
+     * A prefetch racing with a miss on the same page does not read the page
+     * a second time.
+     */
+    @Test public void prefetchRacesMiss() throws Exception {
+        final AtomicInteger reads = new AtomicInteger();
+        final HeapFile counting = new HeapFile(large.getFile(), large.getTupleDesc()) {
+            @Override
+            public Page readPage(PageId pid) {
+                reads.incrementAndGet();
+                return super.readPage(pid);
+            }
+        };
+        Database.getCatalog().addTable(counting, "counting");
+        final BufferPool bp = Database.resetBufferPool(counting.numPages());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        Thread prefetcher = new Thread() {
+            public void run() {
+                try {
+                    for (int i = 0; i < counting.numPages(); i++) {
+                        barrier.await();
+                        bp.prefetchPage(new HeapPageId(counting.getId(), i));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        prefetcher.start();
+        for (int i = 0; i < counting.numPages(); i++) {
+            barrier.await();
+            bp.getPage(tid, new HeapPageId(counting.getId(), i), Permissions.READ_ONLY);
+        }
+        prefetcher.join();
+        if (failure.get() != null)
+            throw new AssertionError(failure.get());
+        // a prefetch that lost the race may still be running
+        Thread.sleep(100);
+        for (int i = 0; i < counting.numPages(); i++)
+            bp.getPage(tid, new HeapPageId(counting.getId(), i), Permissions.READ_ONLY);
+        assertEquals(counting.numPages(), reads.get());
+    }
+
+    /**
+     * Clean pages cost one page of memory; dirtying a page copies its
+     * before image.
+     */
+    @Test public void memoryUsage() throws Exception {
+        BufferPool bp = Database.resetBufferPool(POOL_PAGES);
+        HeapPage p0 = (HeapPage) bp.getPage(tid, new HeapPageId(large.getId(), 0), Permissions.READ_ONLY);
+        HeapPage p1 = (HeapPage) bp.getPage(tid, new HeapPageId(large.getId(), 1), Permissions.READ_ONLY);
+        assertEquals(2L * BufferPool.PAGE_SIZE, bp.getMemoryUsage());
+
+        byte[] before = p1.getPageData();
+        p1.markDirty(true, tid);
+        assertEquals(tid, p1.isDirty());
+        assertEquals(3L * BufferPool.PAGE_SIZE, bp.getMemoryUsage());
+        assertTrue(Arrays.equals(before, p1.getBeforeImage().getPageData()));
+        assertNull(p0.isDirty());
+    }
+
+    /**
+     * A victim of the policy that is not in the page table is skipped and
+     * frees no bytes.
+     */
+    @Test public void staleVictim() throws Exception {
+        BufferPool bp = Database.resetBufferPool(2);
+        // the oldest entry of the LRU policy, but never resident
+        bp.getEvictionPolicy().pageAdmitted(new HeapPageId(small.getId(), 0));
+        for (int i = 0; i < 3; i++)
+            bp.getPage(tid, new HeapPageId(large.getId(), i), Permissions.READ_ONLY);
+        assertEquals(0, bp.getNumFreeBytes());
+
+        // the third page evicted the first one, not just the stale entry
+        bp.resetStats();
+        bp.getPage(tid, new HeapPageId(large.getId(), 2), Permissions.READ_ONLY);
+        assertEquals(1, bp.getHitCount());
+        bp.getPage(tid, new HeapPageId(large.getId(), 0), Permissions.READ_ONLY);
+        assertEquals(1, bp.getMissCount());
+        assertEquals(0, bp.getNumFreeBytes());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(BufferPoolTest.class);
+    }
+}
@@ -0,0 +1,180 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import com.jcraft.jzlib.JZlib;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class CompressedHeapFileTest extends SimpleDbTestBase {
+
+    private static final int ROWS = 10000;
+
+    private File tempFile() throws Exception {
+        File f = File.createTempFile("compressed", ".dat");
+        f.deleteOnExit();
+        new File(f.getPath() + ".idx").deleteOnExit();
+        return f;
+    }
+
+    /**
+     * Fill a compressed table of three int columns with ROWS tuples.
+     */
+    private CompressedHeapFile createTable(File f, int level, ArrayList<ArrayList<Integer>> rows)
+            throws Exception {
+        TupleDesc td = Utility.getTupleDesc(3);
+        CompressedHeapFile hf = new CompressedHeapFile(f, td, PageLayout.HEAP, BufferPool.PAGE_SIZE, level);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < ROWS; i++) {
+            ArrayList<Integer> row = new ArrayList<Integer>();
+            row.add(i);
+            row.add(i % 7);
+            row.add(i / 100);
+            rows.add(row);
+            Tuple t = new Tuple(td);
+            for (int j = 0; j < row.size(); j++)
+                t.setField(j, new IntField(row.get(j)));
+            tuples.add(t);
+        }
+        HeapFileEncoder.convert(tuples.iterator(), hf);
+        return hf;
+    }
+
+    /**
+     * A compressed table scans like an uncompressed one, takes less space,
+     * and is read back by a new file object through its page index.
+     */
+    @Test public void roundTrip() throws Exception {
+        File f = tempFile();
+        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+        CompressedHeapFile hf = createTable(f, JZlib.Z_DEFAULT_COMPRESSION, rows);
+        int perPage = (BufferPool.PAGE_SIZE * 8) / (hf.getTupleDesc().getSize() * 8 + 1);
+        assertEquals((ROWS + perPage - 1) / perPage, hf.numPages());
+        assertEquals(f.length(), hf.getCompressedSize());
+        assertTrue(f.length() * 4 < (long) hf.numPages() * BufferPool.PAGE_SIZE);
+        assertEquals((long) hf.numPages() * CompressedHeapFile.INDEX_ENTRY_SIZE, hf.getIndexFile().length());
+        SystemTestUtil.matchTuples(hf, rows);
+
+        hf.close();
+        CompressedHeapFile reopened = new CompressedHeapFile(f, hf.getTupleDesc(), PageLayout.HEAP,
+                BufferPool.PAGE_SIZE, JZlib.Z_DEFAULT_COMPRESSION, 0);
+        Database.getCatalog().addTable(reopened, SystemTestUtil.getUUID());
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        SystemTestUtil.matchTuples(reopened, rows);
+    }
+
+    /**
+     * A compressed table whose data and index files are read-only can be
+     * scanned.
+     */
+    @Test public void readOnlyFiles() throws Exception {
+        File f = tempFile();
+        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+        CompressedHeapFile hf = createTable(f, JZlib.Z_BEST_SPEED, rows);
+        hf.close();
+        assertTrue(f.setReadOnly());
+        assertTrue(hf.getIndexFile().setReadOnly());
+        try {
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            SystemTestUtil.matchTuples(hf, rows);
+        } finally {
+            hf.close();
+            f.setWritable(true);
+            hf.getIndexFile().setWritable(true);
+        }
+    }
+
+    /**
+     * A missing index of a table with pages is reported, not created empty.
+     */
+    @Test public void missingIndex() throws Exception {
+        CompressedHeapFile hf = createTable(tempFile(), JZlib.Z_BEST_SPEED, new ArrayList<ArrayList<Integer>>());
+        hf.close();
+        assertTrue(hf.getIndexFile().delete());
+        try {
+            hf.numPages();
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getCause() instanceof NoSuchFileException);
+        }
+        assertFalse(hf.getIndexFile().exists());
+    }
+
+    /**
+     * A rewritten page replaces the old one, and writing past the end of the
+     * file adds empty pages in between.
+     */
+    @Test public void writePage() throws Exception {
+        CompressedHeapFile hf = createTable(tempFile(), JZlib.Z_BEST_SPEED, new ArrayList<ArrayList<Integer>>());
+        int numPages = hf.numPages();
+        HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        int emptySlots = page.getNumEmptySlots();
+        page.deleteTuple(page.getTuple(3));
+        hf.writePage(page);
+        HeapPage reread = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        assertEquals(emptySlots + 1, reread.getNumEmptySlots());
+        assertFalse(reread.isSlotUsed(3));
+
+        HeapPage last = new HeapPage(new HeapPageId(hf.getId(), numPages + 2), page.getPageData());
+        hf.writePage(last);
+        assertEquals(numPages + 3, hf.numPages());
+        HeapPage empty = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), numPages));
+        assertFalse(empty.iterator().hasNext());
+        assertEquals(reread.getNumEmptySlots(),
+                ((HeapPage) hf.readPage(new HeapPageId(hf.getId(), numPages + 2))).getNumEmptySlots());
+    }
+
+    /**
+     * Writes the same table at several compression levels. Level 0 stores
+     * pages uncompressed; every other level at least halves the file, and
+     * the best level beats the fastest one.
+     */
+    @Test public void levels() throws Exception {
+        long fastest = 0;
+        long stored = 0;
+        for (int level : new int[]{JZlib.Z_NO_COMPRESSION, JZlib.Z_BEST_SPEED, 6, JZlib.Z_BEST_COMPRESSION}) {
+            ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+            CompressedHeapFile hf = createTable(tempFile(), level, rows);
+            long size = hf.getCompressedSize();
+            if (level == JZlib.Z_NO_COMPRESSION) {
+                stored = size;
+                assertTrue(size >= (long) hf.numPages() * BufferPool.PAGE_SIZE);
+            } else {
+                assertTrue(size * 2 < stored);
+            }
+            if (level == JZlib.Z_BEST_SPEED)
+                fastest = size;
+            if (level == JZlib.Z_BEST_COMPRESSION)
+                assertTrue(size <= fastest);
+
+            Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            SystemTestUtil.matchTuples(hf, rows);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLevel() throws Exception {
+        new CompressedHeapFile(tempFile(), Utility.getTupleDesc(3), PageLayout.HEAP, BufferPool.PAGE_SIZE, 10);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(CompressedHeapFileTest.class);
+    }
+}
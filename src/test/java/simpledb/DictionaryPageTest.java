@@ -0,0 +1,153 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class DictionaryPageTest extends SimpleDbTestBase {
+
+    private static final String[] STATES = {"open", "closed", "pending", "shipped"};
+    private static final int ROWS = 20000;
+
+    /**
+     * Create a table of an int and a string column with the given layout,
+     * holding ROWS tuples with one of four strings, in runs of ten.
+     */
+    private HeapFile createTable(PageLayout layout) throws Exception {
+        File f = File.createTempFile("dict", ".dat");
+        f.deleteOnExit();
+        TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+        HeapFile hf = new HeapFile(f, td, layout);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < ROWS; i++)
+            tuples.add(tuple(td, i, STATES[(i / 10) % STATES.length]));
+        HeapFileEncoder.convert(tuples.iterator(), hf);
+        return hf;
+    }
+
+    private static Tuple tuple(TupleDesc td, int i, String s) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s, Type.STRING_LEN));
+        return t;
+    }
+
+    private static int count(Iterator<Tuple> it) {
+        int n = 0;
+        for (; it.hasNext(); it.next())
+            n++;
+        return n;
+    }
+
+    /**
+     * A table of low cardinality strings takes over ten times fewer pages
+     * than with the heap layout, and scans the same tuples.
+     */
+    @Test public void compression() throws Exception {
+        HeapFile heap = createTable(PageLayout.HEAP);
+        HeapFile dict = createTable(PageLayout.DICTIONARY);
+        assertTrue(dict.numPages() * 10 <= heap.numPages());
+
+        TransactionId tid = new TransactionId();
+        DbFileIterator it = dict.iterator(tid);
+        it.open();
+        int i = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals(new IntField(i), t.getField(0));
+            assertEquals(new StringField(STATES[(i / 10) % STATES.length], Type.STRING_LEN), t.getField(1));
+            i++;
+        }
+        it.close();
+        assertEquals(ROWS, i);
+
+        DictionaryPage page = (DictionaryPage) dict.readPage(new HeapPageId(dict.getId(), 0));
+        assertTrue(page.isDictionaryEncoded(1));
+    }
+
+    /**
+     * An equality predicate on a dictionary column returns the tuples
+     * Predicate.filter accepts.
+     */
+    @Test public void equalsIterator() throws Exception {
+        HeapFile dict = createTable(PageLayout.DICTIONARY);
+        DictionaryPage page = (DictionaryPage) dict.readPage(new HeapPageId(dict.getId(), 0));
+        int tuples = count(page.iterator());
+        for (Predicate.Op op : new Predicate.Op[]{Predicate.Op.EQUALS, Predicate.Op.NOT_EQUALS}) {
+            for (String s : new String[]{"closed", "missing"}) {
+                Predicate p = new Predicate(1, op, new StringField(s, Type.STRING_LEN));
+                int n = 0;
+                for (Iterator<Tuple> it = page.iterator(p); it.hasNext(); n++)
+                    assertTrue(p.filter(it.next()));
+                int expected = 0;
+                for (Iterator<Tuple> it = page.iterator(); it.hasNext(); )
+                    if (p.filter(it.next()))
+                        expected++;
+                assertEquals(expected, n);
+            }
+        }
+        assertTrue(count(page.iterator(
+                new Predicate(1, Predicate.Op.EQUALS, new StringField("open", Type.STRING_LEN)))) < tuples);
+    }
+
+    /**
+     * Inserted and deleted tuples survive writing the page, and a modified
+     * page round trips through its bytes. A full page has room for a tuple
+     * in an empty slot that continues a run, but not for a new string.
+     */
+    @Test public void insertDelete() throws Exception {
+        HeapFile dict = createTable(PageLayout.DICTIONARY);
+        HeapPageId pid = new HeapPageId(dict.getId(), 0);
+        DictionaryPage page = (DictionaryPage) dict.readPage(pid);
+        int tuples = count(page.iterator());
+
+        page.deleteTuple(page.getTuple(5));
+        page.deleteTuple(page.getTuple(6));
+        assertFalse(page.hasRoomFor(tuple(dict.getTupleDesc(), -1, "returned")));
+        Tuple t = tuple(dict.getTupleDesc(), -1, "open");
+        assertTrue(page.hasRoomFor(t));
+        page.insertTuple(t);
+        assertEquals(new RecordId(pid, 5), t.getRecordId());
+        assertFalse(page.isSlotUsed(6));
+
+        DictionaryPage copy = new DictionaryPage(pid, page.getPageData());
+        assertTrue(Arrays.equals(page.getPageData(), copy.getPageData()));
+        assertEquals(tuples - 1, count(copy.iterator()));
+        assertEquals(t.getField(0), copy.getTuple(5).getField(0));
+        assertEquals(t.getField(1), copy.getTuple(5).getField(1));
+        assertEquals(page.getTuple(7).getField(1), copy.getTuple(7).getField(1));
+        assertEquals(null, copy.getTuple(6));
+    }
+
+    /**
+     * An empty page is all zeros.
+     */
+    @Test public void emptyPage() throws Exception {
+        HeapFile dict = createTable(PageLayout.DICTIONARY);
+        DictionaryPage page = new DictionaryPage(new HeapPageId(dict.getId(), 0),
+                HeapPage.createEmptyPageData());
+        assertEquals(0, count(page.iterator()));
+        assertTrue(Arrays.equals(HeapPage.createEmptyPageData(), page.getPageData()));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DictionaryPageTest.class);
+    }
+}
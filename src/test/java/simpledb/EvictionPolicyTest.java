@@ -0,0 +1,126 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class EvictionPolicyTest extends SimpleDbTestBase {
+
+    private static HeapPageId pid(int pageno) {
+        return new HeapPageId(-1, pageno);
+    }
+
+    private static PageId first(EvictionPolicy policy) {
+        Iterator<PageId> it = policy.victims();
+        assertTrue(it.hasNext());
+        return it.next();
+    }
+
+    /**
+     * LRU evicts the page that was accessed least recently.
+     */
+    @Test public void lru() {
+        EvictionPolicy policy = new LruEvictionPolicy();
+        policy.pageAdmitted(pid(0));
+        policy.pageAdmitted(pid(1));
+        policy.pageAdmitted(pid(2));
+        policy.pageAccessed(pid(0));
+        assertEquals(pid(1), first(policy));
+        policy.pageRemoved(pid(1));
+        assertEquals(pid(2), first(policy));
+    }
+
+    /**
+     * CLOCK gives referenced pages a second chance and offers every page
+     * exactly once.
+     */
+    @Test public void clock() {
+        EvictionPolicy policy = new ClockEvictionPolicy();
+        policy.pageAdmitted(pid(0));
+        policy.pageAdmitted(pid(1));
+        policy.pageAdmitted(pid(2));
+        // the first sweep clears all bits, so page 0 is offered first
+        assertEquals(pid(0), first(policy));
+        policy.pageAccessed(pid(1));
+        // the hand sits on page 1 now, whose bit was just set again
+        assertEquals(pid(2), first(policy));
+
+        int offered = 0;
+        Iterator<PageId> it = policy.victims();
+        while (it.hasNext()) {
+            it.next();
+            offered++;
+        }
+        assertEquals(3, offered);
+    }
+
+    /**
+     * 2Q keeps pages that were re-referenced after falling out of A1in ahead
+     * of pages that were seen only once.
+     */
+    @Test public void twoQueue() {
+        EvictionPolicy policy = new TwoQueueEvictionPolicy(1, 4);
+        policy.pageAdmitted(pid(0));
+        policy.pageRemoved(pid(0));
+        // page 0 comes back while remembered in A1out: it is hot now
+        policy.pageAdmitted(pid(0));
+        policy.pageAdmitted(pid(1));
+        policy.pageAdmitted(pid(2));
+        policy.pageAccessed(pid(1));
+        // A1in is over its budget of one page, so it is drained first
+        assertEquals(pid(1), first(policy));
+        policy.pageRemoved(pid(1));
+        assertEquals(pid(0), first(policy));
+        policy.pageRemoved(pid(0));
+        assertEquals(pid(2), first(policy));
+    }
+
+    /**
+     * LRU-2 prefers pages referenced only once over pages referenced twice.
+     */
+    @Test public void lruK() {
+        EvictionPolicy policy = new LruKEvictionPolicy(2);
+        policy.pageAdmitted(pid(0));
+        policy.pageAccessed(pid(0));
+        policy.pageAdmitted(pid(1));
+        policy.pageAdmitted(pid(2));
+        policy.pageAccessed(pid(2));
+        assertEquals(pid(1), first(policy));
+        policy.pageRemoved(pid(1));
+        assertEquals(pid(0), first(policy));
+    }
+
+    /**
+     * Every policy keeps a full BufferPool at its size and counts hits and
+     * misses.
+     */
+    @Test public void bufferPoolStats() throws Exception {
+        HeapFile f = SystemTestUtil.createRandomHeapFile(2, 4000, null, null);
+        assertTrue(f.numPages() > 4);
+        for (EvictionPolicy.Kind kind : EvictionPolicy.Kind.values()) {
+            BufferPool bp = Database.resetBufferPool(4, kind.create(4));
+            TransactionId tid = new TransactionId();
+            for (int i = 0; i < f.numPages(); i++) {
+                bp.getPage(tid, new HeapPageId(f.getId(), i), Permissions.READ_ONLY);
+            }
+            bp.getPage(tid, new HeapPageId(f.getId(), f.numPages() - 1), Permissions.READ_ONLY);
+            assertEquals(f.numPages(), bp.getMissCount());
+            assertEquals(1, bp.getHitCount());
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(EvictionPolicyTest.class);
+    }
+}
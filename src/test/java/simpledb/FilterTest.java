@@ -3,6 +3,9 @@ package simpledb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
 import junit.framework.JUnit4TestAdapter;
 
 import org.junit.Before;
@@ -120,6 +123,19 @@ public class FilterTest extends SimpleDbTestBase {
     op.close();
   }
 
+  /**
+   * Unit test for a Filter with a conjunction of predicates
+   */
+  @Test public void filterConjunction() throws Exception {
+    Filter op = new Filter(Arrays.asList(
+        new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, TestUtil.getField(-2)),
+        new Predicate(0, Predicate.Op.LESS_THAN, TestUtil.getField(3))), scan);
+    TestUtil.MockScan expectedOut = new TestUtil.MockScan(-2, 3, testWidth);
+    op.open();
+    TestUtil.compareDbIterators(op, expectedOut);
+    op.close();
+  }
+
   /**
    * JUnit suite target
    */
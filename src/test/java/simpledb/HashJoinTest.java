@@ -0,0 +1,109 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class HashJoinTest extends SimpleDbTestBase {
+
+    /**
+     * The equi-join of JoinTest, built in memory.
+     */
+    @Test public void eqJoin() throws Exception {
+        DbIterator scan1 = TestUtil.createTupleList(2, new int[]{1, 2, 3, 4, 5, 6, 7, 8});
+        DbIterator scan2 = TestUtil.createTupleList(3, new int[]{1, 2, 3, 2, 3, 4, 3, 4, 5, 4, 5, 6, 5, 6, 7});
+        DbIterator expected = TestUtil.createTupleList(5, new int[]{1, 2, 1, 2, 3, 3, 4, 3, 4, 5, 5, 6, 5, 6, 7});
+        HashJoin op = new HashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), scan1, scan2);
+        assertEquals(Utility.getTupleDesc(5), op.getTupleDesc());
+        op.open();
+        expected.open();
+        TestUtil.matchAllTuples(expected, op);
+        assertFalse(op.hasSpilled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notEquals() throws Exception {
+        DbIterator scan = TestUtil.createTupleList(1, new int[]{1});
+        new HashJoin(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0), scan, scan);
+    }
+
+    /**
+     * Join two random tables with the given memory budget, check the result
+     * against a nested loops join of the rows, and again after a rewind.
+     */
+    private HashJoin validate(int rows1, int rows2, long budget) throws Exception {
+        ArrayList<ArrayList<Integer>> t1 = new ArrayList<ArrayList<Integer>>();
+        ArrayList<ArrayList<Integer>> t2 = new ArrayList<ArrayList<Integer>>();
+        HeapFile f1 = SystemTestUtil.createRandomHeapFile(2, rows1, 100, null, t1);
+        HeapFile f2 = SystemTestUtil.createRandomHeapFile(2, rows2, 100, null, t2);
+        ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+        for (ArrayList<Integer> r1 : t1) {
+            for (ArrayList<Integer> r2 : t2) {
+                if (r1.get(1).equals(r2.get(0))) {
+                    ArrayList<Integer> out = new ArrayList<Integer>(r1);
+                    out.addAll(r2);
+                    expected.add(out);
+                }
+            }
+        }
+
+        TransactionId tid = new TransactionId();
+        HashJoin op = new HashJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 0),
+                new SeqScan(tid, f1.getId(), "a"), new SeqScan(tid, f2.getId(), "b"), budget);
+        SystemTestUtil.matchTuples(op, expected);
+
+        op.open();
+        while (op.hasNext())
+            op.next();
+        op.rewind();
+        int count = 0;
+        while (op.hasNext()) {
+            op.next();
+            count++;
+        }
+        op.close();
+        assertEquals(expected.size(), count);
+        return op;
+    }
+
+    /**
+     * The inner child does not fit in the budget but the outer one does.
+     */
+    @Test public void buildOuter() throws Exception {
+        assertFalse(validate(100, 2000, 100 * 8).hasSpilled());
+    }
+
+    /**
+     * Neither child fits: both are partitioned, and the partitions are
+     * split again, and their spill files are gone after close.
+     */
+    @Test public void spill() throws Exception {
+        int tables = countTables();
+        assertTrue(validate(2000, 3000, 50 * 8).hasSpilled());
+        assertEquals(tables + 2, countTables());
+    }
+
+    private int countTables() {
+        int n = 0;
+        for (Iterator<Integer> it = Database.getCatalog().tableIdIterator(); it.hasNext(); it.next())
+            n++;
+        return n;
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(HashJoinTest.class);
+    }
+}
@@ -3,6 +3,8 @@ package simpledb;
 import simpledb.systemtest.SimpleDbTestBase;
 import simpledb.systemtest.SystemTestUtil;
 
+import java.io.File;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
 import org.junit.After;
 import org.junit.Before;
@@ -77,6 +79,37 @@ public class HeapFileReadTest extends SimpleDbTestBase {
         assertFalse(page.isSlotUsed(20));
     }
 
+    /**
+     * Pages of a read-only file can be read.
+     */
+    @Test
+    public void readOnlyFile() throws Exception {
+        assertTrue(hf.getFile().setReadOnly());
+        try {
+            hf.close();
+            HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+            assertEquals(484, page.getNumEmptySlots());
+        } finally {
+            hf.close();
+            hf.getFile().setWritable(true);
+        }
+    }
+
+    /**
+     * Opening a file that does not exist fails instead of creating it.
+     */
+    @Test
+    public void missingFile() throws Exception {
+        File f = new File(hf.getFile().getParentFile(), "missing" + System.nanoTime() + ".dat");
+        HeapFile missing = new HeapFile(f, td);
+        try {
+            missing.getChannel();
+            fail("expected exception");
+        } catch (NoSuchFileException e) {
+        }
+        assertFalse(f.exists());
+    }
+
     @Test
     public void testIteratorBasic() throws Exception {
         HeapFile smallFile = SystemTestUtil.createRandomHeapFile(2, 3, null,
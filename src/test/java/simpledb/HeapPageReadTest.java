@@ -101,6 +101,37 @@ public class HeapPageReadTest extends SimpleDbTestBase {
         }
     }
 
+    /**
+     * A filtered iterator tests the given compiled filter once per used
+     * slot, on the page bytes, and returns the tuples it accepts.
+     */
+    @Test public void iteratorWithFilter() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        List<Predicate> predicates = Arrays.asList(
+                new Predicate(0, Predicate.Op.GREATER_THAN, new IntField(30000)));
+        final Evaluator compiled = Evaluator.compile(predicates);
+        final int[] calls = new int[1];
+        Evaluator counting = t -> {
+            calls[0]++;
+            return compiled.eval(t);
+        };
+
+        int row = 0;
+        Iterator<Tuple> it = page.iterator(counting, null, null);
+        for (int[] values : EXAMPLE_VALUES) {
+            if (values[0] <= 30000)
+                continue;
+            assertTrue(it.hasNext());
+            Tuple tup = it.next();
+            assertEquals(values[0], tup.getInt(0));
+            assertEquals(values[1], tup.getInt(1));
+            row++;
+        }
+        assertFalse(it.hasNext());
+        assertTrue(row > 0);
+        assertEquals(EXAMPLE_VALUES.length, calls[0]);
+    }
+
     /**
      * Unit test for HeapPage.getNumEmptySlots()
      */
@@ -125,6 +156,32 @@ public class HeapPageReadTest extends SimpleDbTestBase {
             assertFalse(page.isSlotUsed(i));
     }
 
+    /**
+     * Unit test for HeapPage.getField() and HeapPage.getTuple()
+     */
+    @Test public void getField() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        for (int row = 0; row < EXAMPLE_VALUES.length; row++) {
+            IntField f1 = (IntField) page.getField(row, 1);
+            assertEquals(EXAMPLE_VALUES[row][1], f1.getValue());
+        }
+        assertEquals(null, page.getField(20, 0));
+
+        Tuple t = page.getTuple(3);
+        assertEquals(new RecordId(pid, 3), t.getRecordId());
+        assertEquals(EXAMPLE_VALUES[3][0], ((IntField) t.getField(0)).getValue());
+        assertTrue(Arrays.equals(EXAMPLE_DATA, page.getPageData()));
+    }
+
+    /**
+     * Unit test for HeapPage.getBeforeImage() of a page that was never
+     * modified
+     */
+    @Test public void getBeforeImage() throws Exception {
+        HeapPage page = new HeapPage(pid, EXAMPLE_DATA);
+        assertTrue(Arrays.equals(EXAMPLE_DATA, page.getBeforeImage().getPageData()));
+    }
+
     /**
      * JUnit suite target
      */
@@ -0,0 +1,72 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+
+public class JoinHashTableTest extends SimpleDbTestBase {
+
+    private static Tuple unboxed(TupleDesc td, int... values) {
+        Tuple t = new Tuple(td);
+        for (int i = 0; i < values.length; i++)
+            t.setInt(i, values[i]);
+        return t;
+    }
+
+    /**
+     * INT keys are found unboxed through growth of the table and with
+     * several tuples per key, and probes with boxed fields find them too.
+     */
+    @Test public void intKeys() {
+        TupleDesc td = Utility.getTupleDesc(2);
+        JoinHashTable table = new JoinHashTable(td, 1, td, 0);
+        for (int i = 0; i < 1000; i++)
+            table.add(unboxed(td, i, i % 300));
+        for (int k = 0; k < 300; k++) {
+            List<Tuple> matches = table.get(unboxed(td, k, -1));
+            assertEquals(k < 100 ? 4 : 3, matches.size());
+            for (Tuple t : matches)
+                assertEquals(k, t.getInt(1));
+        }
+        assertNull(table.get(unboxed(td, 300, 0)));
+        assertEquals(3, table.get(Utility.getHeapTuple(new int[]{299, 0})).size());
+    }
+
+    /**
+     * Keys of other types are looked up by Field.
+     */
+    @Test public void stringKeys() {
+        TupleDesc td = new TupleDesc(new Type[]{Type.STRING_TYPE});
+        JoinHashTable table = new JoinHashTable(td, 0, td, 0);
+        Tuple a = new Tuple(td);
+        a.setField(0, new StringField("a", Type.STRING_LEN));
+        table.add(a);
+        assertEquals(1, table.get(a).size());
+        Tuple b = new Tuple(td);
+        b.setField(0, new StringField("b", Type.STRING_LEN));
+        assertNull(table.get(b));
+        assertEquals(JoinHashTable.keyHash(a, 0), a.getField(0).hashCode());
+    }
+
+    /**
+     * The hash of an unboxed INT field is that of its IntField.
+     */
+    @Test public void keyHash() {
+        TupleDesc td = Utility.getTupleDesc(1);
+        assertEquals(new IntField(-42).hashCode(), JoinHashTable.keyHash(unboxed(td, -42), 0));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(JoinHashTableTest.class);
+    }
+}
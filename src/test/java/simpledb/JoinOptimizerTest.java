@@ -0,0 +1,148 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Vector;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class JoinOptimizerTest extends SimpleDbTestBase {
+
+    private static final double DELTA = 1e-6;
+    /**
+     * The size of a tuple of two int fields
+     */
+    private static final int SIZE = 8;
+
+    private HeapFile a;
+    private HeapFile b;
+    private LogicalPlan plan;
+
+    /**
+     * A plan over tables x(a0, a1) and y(b0, b1).
+     */
+    @Before public void createPlan() throws Exception {
+        a = SystemTestUtil.createRandomHeapFile(2, 10, null, null, "a");
+        b = SystemTestUtil.createRandomHeapFile(2, 10, null, null, "b");
+        plan = new LogicalPlan();
+        plan.addScan(a.getId(), "x");
+        plan.addScan(b.getId(), "y");
+    }
+
+    /**
+     * The inner input of a nested loop join is read once per block of the
+     * outer one, whose size follows from the given memory budget and not
+     * from the state of the BufferPool.
+     */
+    @Test public void nestedLoopJoinCost() {
+        long budget = (Join.RESERVED_PAGES + 1) * (long) BufferPool.PAGE_SIZE;
+        int perBlock = BufferPool.PAGE_SIZE * 8 / (SIZE * 8 + 1);
+        assertEquals(perBlock, Join.blockSize(budget, SIZE));
+
+        double cost = JoinOptimizer.nestedLoopJoinCost(perBlock + 1, 50, 10, 20, SIZE, budget);
+        assertEquals(10 + 2 * 20 + (perBlock + 1) * 50.0, cost, DELTA);
+        Database.resetBufferPool(1);
+        assertEquals(cost, JoinOptimizer.nestedLoopJoinCost(perBlock + 1, 50, 10, 20, SIZE, budget), DELTA);
+
+        // a block that holds the whole outer input
+        assertEquals(10 + 20 + (perBlock + 1) * 50.0,
+                JoinOptimizer.nestedLoopJoinCost(perBlock + 1, 50, 10, 20, SIZE, 2 * budget), DELTA);
+    }
+
+    /**
+     * A hash join reads both inputs, builds on the smaller one and probes
+     * with the other, and partitions both to disk if the smaller one does
+     * not fit in memory.
+     */
+    @Test public void hashJoinCost() {
+        assertEquals(10 + 20 + 2 * 100 + 1000,
+                JoinOptimizer.hashJoinCost(100, 1000, 10, 20, SIZE, SIZE), DELTA);
+        assertEquals(10 + 20 + 2 * 100 + 1000,
+                JoinOptimizer.hashJoinCost(1000, 100, 10, 20, SIZE, SIZE), DELTA);
+
+        int card = (int) (HashJoin.DEFAULT_MEMORY_BUDGET / SIZE) + 1;
+        assertEquals(3 * (10 + 20) + 3.0 * card,
+                JoinOptimizer.hashJoinCost(card, card, 10, 20, SIZE, SIZE), DELTA);
+    }
+
+    /**
+     * A merge join sorts the inputs that are not sorted, spilling those
+     * that do not fit in memory, and compares each tuple once.
+     */
+    @Test public void sortMergeJoinCost() {
+        assertEquals(10, JoinOptimizer.sortCost(1, 10, SIZE), DELTA);
+        assertEquals(10 + 1024 * 10, JoinOptimizer.sortCost(1024, 10, SIZE), DELTA);
+        int card = (int) (OrderBy.DEFAULT_MEMORY_BUDGET / SIZE) + 1;
+        double log = Math.log(card) / Math.log(2);
+        assertEquals(3 * 10 + card * log, JoinOptimizer.sortCost(card, 10, SIZE), DELTA);
+
+        assertEquals(10 + 1024 * 10 + 20 + 1024 * 10 + 2048,
+                JoinOptimizer.sortMergeJoinCost(1024, 1024, 10, 20, SIZE, SIZE), DELTA);
+        assertEquals(10 + 20 + 1024 * 10 + 2048,
+                JoinOptimizer.sortMergeJoinCost(1024, 1024, 10, 20, SIZE, SIZE, true, false), DELTA);
+        assertEquals(10 + 20 + 2048,
+                JoinOptimizer.sortMergeJoinCost(1024, 1024, 10, 20, SIZE, SIZE, true, true), DELTA);
+    }
+
+    /**
+     * The cost of an equi-join is that of its cheapest operator; other
+     * joins are nested loop joins.
+     */
+    @Test public void estimateJoinCost() {
+        long budget = JoinOptimizer.DEFAULT_MEMORY_BUDGET;
+        JoinOptimizer jo = new JoinOptimizer(plan, new Vector<LogicalJoinNode>(), budget);
+        LogicalJoinNode eq = new LogicalJoinNode("x", "y", "x.a0", "y.b0", Predicate.Op.EQUALS);
+        double cost = Math.min(JoinOptimizer.nestedLoopJoinCost(10000, 5000, 100, 50, SIZE, budget),
+                Math.min(JoinOptimizer.hashJoinCost(10000, 5000, 100, 50, SIZE, SIZE),
+                        JoinOptimizer.sortMergeJoinCost(10000, 5000, 100, 50, SIZE, SIZE)));
+        assertEquals(cost, jo.estimateJoinCost(eq, 10000, 5000, 100, 50), DELTA);
+
+        LogicalJoinNode lt = new LogicalJoinNode("x", "y", "x.a0", "y.b0", Predicate.Op.LESS_THAN);
+        assertEquals(JoinOptimizer.nestedLoopJoinCost(10000, 5000, 100, 50, SIZE, budget),
+                jo.estimateJoinCost(lt, 10000, 5000, 100, 50), DELTA);
+    }
+
+    /**
+     * instantiateJoin returns the operator with the lowest estimated cost,
+     * taking into account that a merge join need not sort sorted inputs.
+     */
+    @Test public void instantiateJoin() throws Exception {
+        JoinOptimizer jo = new JoinOptimizer(plan, new Vector<LogicalJoinNode>());
+        TransactionId tid = new TransactionId();
+        LogicalJoinNode eq = new LogicalJoinNode("x", "y", "x.a0", "y.b0", Predicate.Op.EQUALS);
+        CostCard large = estimate(10000, 1000);
+        CostCard single = estimate(1, 1000);
+
+        assertTrue(jo.instantiateJoin(eq, new SeqScan(tid, a.getId(), "x"), new SeqScan(tid, b.getId(), "y"),
+                large, large) instanceof HashJoin);
+        assertTrue(jo.instantiateJoin(eq, new OrderBy(0, true, new SeqScan(tid, a.getId(), "x")),
+                new OrderBy(0, true, new SeqScan(tid, b.getId(), "y")), large, large) instanceof SortMergeJoin);
+        assertTrue(jo.instantiateJoin(eq, new SeqScan(tid, a.getId(), "x"), new SeqScan(tid, b.getId(), "y"),
+                single, single) instanceof Join);
+
+        LogicalJoinNode lt = new LogicalJoinNode("x", "y", "x.a0", "y.b0", Predicate.Op.LESS_THAN);
+        assertTrue(jo.instantiateJoin(lt, new SeqScan(tid, a.getId(), "x"), new SeqScan(tid, b.getId(), "y"),
+                large, large) instanceof Join);
+    }
+
+    private static CostCard estimate(int card, double cost) {
+        CostCard cc = new CostCard();
+        cc.card = card;
+        cc.cost = cost;
+        return cc;
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(JoinOptimizerTest.class);
+    }
+}
@@ -3,6 +3,7 @@ package simpledb;
 import org.junit.Test;
 
 import simpledb.systemtest.SimpleDbTestBase;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import junit.framework.JUnit4TestAdapter;
@@ -56,6 +57,42 @@ public class JoinPredicateTest extends SimpleDbTestBase {
     }
   }
 
+  /**
+   * INT fields stored unboxed compare like boxed ones, in any mix.
+   */
+  @Test public void filterUnboxed() {
+    TupleDesc td = Utility.getTupleDesc(2);
+    for (int i : new int[] { -1, 0, 1 }) {
+      Tuple unboxed = new Tuple(td);
+      unboxed.setInt(0, 7);
+      unboxed.setInt(1, i);
+      for (int j : new int[] { i - 1, i, i + 1 }) {
+        Tuple other = new Tuple(td);
+        other.setInt(0, j);
+        other.setField(1, new IntField(j));
+        for (Predicate.Op op : new Predicate.Op[] { Predicate.Op.EQUALS, Predicate.Op.NOT_EQUALS,
+            Predicate.Op.LESS_THAN, Predicate.Op.GREATER_THAN_OR_EQ }) {
+          boolean expected = new IntField(i).compare(op, new IntField(j));
+          assertEquals(expected, new JoinPredicate(1, op, 0).filter(unboxed, other));
+          assertEquals(expected, new JoinPredicate(1, op, 1).filter(unboxed, other));
+        }
+      }
+    }
+  }
+
+  /**
+   * Fields that are not both INT are compared as Fields.
+   */
+  @Test public void filterStrings() {
+    TupleDesc td = new TupleDesc(new Type[] { Type.STRING_TYPE });
+    Tuple a = new Tuple(td);
+    a.setField(0, new StringField("a", Type.STRING_LEN));
+    Tuple b = new Tuple(td);
+    b.setField(0, new StringField("b", Type.STRING_LEN));
+    assertTrue(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0).filter(a, b));
+    assertFalse(new JoinPredicate(0, Predicate.Op.EQUALS, 0).filter(a, b));
+  }
+
   /**
    * JUnit suite target
    */
@@ -1,8 +1,12 @@
 package simpledb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
 import junit.framework.JUnit4TestAdapter;
 
 import org.junit.Before;
@@ -105,6 +109,85 @@ public class JoinTest extends SimpleDbTestBase {
     TestUtil.matchAllTuples(eqJoin, op);
   }
 
+  /**
+   * The first result is returned before the inner child is drained
+   */
+  @Test public void pipelined() throws Exception {
+    JoinPredicate pred = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+    Join op = new Join(pred, scan1, scan2);
+    op.open();
+    assertTrue(op.hasNext());
+    assertTrue(TestUtil.compareTuples(Utility.getHeapTuple(new int[] { 1, 2, 1, 2, 3 }), op.next()));
+    assertTrue(scan2.hasNext());
+    op.close();
+  }
+
+  /**
+   * With a single free frame, the outer child is read in blocks of one
+   * page and the inner child is rewound once per further block
+   */
+  @Test public void blocks() throws Exception {
+    Database.resetBufferPool(Join.RESERVED_PAGES + 1);
+    ArrayList<Tuple> outer = new ArrayList<Tuple>();
+    for (int i = 0; i < 2000; i++)
+      outer.add(Utility.getHeapTuple(new int[] { i % 100, i }));
+    ArrayList<Tuple> inner = new ArrayList<Tuple>();
+    for (int i = 0; i < 300; i++)
+      inner.add(Utility.getHeapTuple(new int[] { i }));
+    final int[] rewinds = new int[1];
+    TupleIterator innerScan = new TupleIterator(Utility.getTupleDesc(1), inner) {
+      private static final long serialVersionUID = 1L;
+
+      @Override public void rewind() {
+        rewinds[0]++;
+        super.rewind();
+      }
+    };
+    Join op = new Join(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0),
+        new TupleIterator(Utility.getTupleDesc(2), outer), innerScan);
+    op.open();
+    int perPage = (BufferPool.PAGE_SIZE * 8) / (Utility.getTupleDesc(2).getSize() * 8 + 1);
+    assertEquals(perPage, op.getBlockSize());
+    int count = 0;
+    while (op.hasNext()) {
+      Tuple t = op.next();
+      assertTrue(t.getInt(0) < t.getInt(2));
+      count++;
+    }
+    op.close();
+    int expected = 0;
+    for (int i = 0; i < 2000; i++)
+      expected += 300 - (i % 100) - 1;
+    assertEquals(expected, count);
+    assertEquals((2000 + perPage - 1) / perPage - 1, rewinds[0]);
+  }
+
+  /**
+   * An empty inner child ends the join before the outer child is read
+   */
+  @Test public void emptyInner() throws Exception {
+    ArrayList<Tuple> outer = new ArrayList<Tuple>();
+    for (int i = 0; i < 2000; i++)
+      outer.add(Utility.getHeapTuple(new int[] { i, i }));
+    final int[] reads = new int[1];
+    TupleIterator outerScan = new TupleIterator(Utility.getTupleDesc(2), outer) {
+      private static final long serialVersionUID = 1L;
+
+      @Override public Tuple next() {
+        reads[0]++;
+        return super.next();
+      }
+    };
+    Join op = new Join(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0), outerScan,
+        new TupleIterator(Utility.getTupleDesc(1), new ArrayList<Tuple>()));
+    op.open();
+    assertFalse(op.hasNext());
+    op.rewind();
+    assertFalse(op.hasNext());
+    op.close();
+    assertEquals(0, reads[0]);
+  }
+
   /**
    * JUnit suite target
    */
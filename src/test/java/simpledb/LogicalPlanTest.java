@@ -0,0 +1,96 @@
+package simpledb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class LogicalPlanTest extends SimpleDbTestBase {
+
+    private LogicalPlan plan;
+
+    /**
+     * A plan over tables x(a0, a1, a2, a3) and y(b0, b1, b2, b3).
+     */
+    @Before public void createPlan() throws Exception {
+        HeapFile a = SystemTestUtil.createRandomHeapFile(4, 10, null, null, "a");
+        HeapFile b = SystemTestUtil.createRandomHeapFile(4, 10, null, null, "b");
+        plan = new LogicalPlan();
+        plan.addScan(a.getId(), "x");
+        plan.addScan(b.getId(), "y");
+    }
+
+    /**
+     * SELECT * reads every field.
+     */
+    @Test public void star() throws Exception {
+        plan.addProjectField("*", null);
+        assertNull(plan.scanColumns("x"));
+        assertNull(plan.scanColumns("y"));
+    }
+
+    /**
+     * SELECT x.* reads every field.
+     */
+    @Test public void tableStar() throws Exception {
+        plan.addProjectField("x.*", null);
+        assertNull(plan.scanColumns("x"));
+    }
+
+    /**
+     * The fields of the select list are read in table order; a scan that
+     * reads all fields is not given columns.
+     */
+    @Test public void selectList() throws Exception {
+        plan.addProjectField("x.a2", null);
+        plan.addProjectField("x.a0", null);
+        assertArrayEquals(new int[]{0, 2}, plan.scanColumns("x"));
+
+        plan.addProjectField("x.a1", null);
+        plan.addProjectField("x.a3", null);
+        assertNull(plan.scanColumns("x"));
+    }
+
+    /**
+     * The GROUP BY field is read with the aggregated one.
+     */
+    @Test public void groupBy() throws Exception {
+        plan.addProjectField("x.a3", "SUM");
+        plan.addAggregate("SUM", "x.a3", "x.a1");
+        assertArrayEquals(new int[]{1, 3}, plan.scanColumns("x"));
+    }
+
+    /**
+     * The ORDER BY field is read even if it is not selected.
+     */
+    @Test public void orderBy() throws Exception {
+        plan.addProjectField("x.a0", null);
+        plan.addOrderBy("x.a2", true);
+        assertArrayEquals(new int[]{0, 2}, plan.scanColumns("x"));
+    }
+
+    /**
+     * Each scan reads its join fields; filters are not read above the
+     * scan, so their fields are not.
+     */
+    @Test public void joinColumns() throws Exception {
+        plan.addProjectField("x.a0", null);
+        plan.addJoin("x.a1", "y.b2", Predicate.Op.EQUALS);
+        plan.addFilter("y.b3", Predicate.Op.LESS_THAN, "5");
+        assertArrayEquals(new int[]{0, 1}, plan.scanColumns("x"));
+        assertArrayEquals(new int[]{2}, plan.scanColumns("y"));
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LogicalPlanTest.class);
+    }
+}
@@ -0,0 +1,120 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class MappedHeapFileTest extends SimpleDbTestBase {
+
+    private MappedHeapFile open(File f, int columns, long segmentSize) {
+        MappedHeapFile hf = new MappedHeapFile(f, Utility.getTupleDesc(columns), segmentSize);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        return hf;
+    }
+
+    /**
+     * Pages read through the mapping match pages read by HeapFile.
+     */
+    @Test public void readPage() throws Exception {
+        File f = SystemTestUtil.createRandomHeapFileUnopened(2, 20, 1000, null, null);
+        MappedHeapFile hf = open(f, 2, MappedHeapFile.DEFAULT_SEGMENT_SIZE);
+        HeapPage page = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        assertEquals(484, page.getNumEmptySlots());
+        assertTrue(page.isSlotUsed(1));
+        assertFalse(page.isSlotUsed(20));
+    }
+
+    /**
+     * A file mapped as a chain of small segments scans like a plain HeapFile.
+     */
+    @Test public void scanAcrossSegments() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        File f = SystemTestUtil.createRandomHeapFileUnopened(2, 504 * 7 + 10, 1000, null, tuples);
+        MappedHeapFile hf = open(f, 2, 2 * BufferPool.PAGE_SIZE);
+        assertEquals(8, hf.numPages());
+        SystemTestUtil.matchTuples(hf, tuples);
+        hf.close();
+    }
+
+    /**
+     * The mapping follows the file when pages are appended.
+     */
+    @Test public void growingFile() throws Exception {
+        File f = SystemTestUtil.createRandomHeapFileUnopened(2, 504, 1000, null, null);
+        MappedHeapFile hf = open(f, 2, 2 * BufferPool.PAGE_SIZE);
+        hf.readPage(new HeapPageId(hf.getId(), 0));
+
+        HeapPage copy = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 0));
+        hf.writePage(new HeapPage(new HeapPageId(hf.getId(), 2), copy.getPageData()));
+        HeapPage appended = (HeapPage) hf.readPage(new HeapPageId(hf.getId(), 2));
+        assertEquals(0, appended.getNumEmptySlots());
+    }
+
+    /**
+     * Pages are views into the mapping until they are modified: a modified
+     * page copies its bytes first, so after it is written back it still
+     * decodes its tuples and before image from the bytes it was read from.
+     */
+    @Test public void copyOnWrite() throws Exception {
+        File f = SystemTestUtil.createRandomHeapFileUnopened(2, 20, 1000, null, null);
+        MappedHeapFile hf = open(f, 2, MappedHeapFile.DEFAULT_SEGMENT_SIZE);
+        HeapPageId pid = new HeapPageId(hf.getId(), 0);
+        HeapPage page = (HeapPage) hf.readPage(pid);
+        assertTrue(page.data.isReadOnly());
+
+        Tuple deleted = page.getTuple(0);
+        page.markDirty(true, new TransactionId());
+        page.deleteTuple(deleted);
+        assertFalse(page.data.isReadOnly());
+        hf.writePage(page);
+
+        // slot 1 was never decoded: it comes from the copy
+        HeapPage fresh = (HeapPage) hf.readPage(pid);
+        assertEquals(485, fresh.getNumEmptySlots());
+        assertEquals(fresh.getTuple(1).getInt(0), page.getTuple(1).getInt(0));
+        assertEquals(fresh.getTuple(1).getInt(1), page.getTuple(1).getInt(1));
+        Tuple before = page.getBeforeImage().getTuple(0);
+        assertEquals(deleted.getInt(0), before.getInt(0));
+        assertEquals(deleted.getInt(1), before.getInt(1));
+    }
+
+    /**
+     * Writing one copy of a page back leaves the tuples and the before
+     * image of another copy read from the mapping as they were read.
+     */
+    @Test public void writeDetachesReaders() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        File f = SystemTestUtil.createRandomHeapFileUnopened(2, 20, 1000, null, tuples);
+        MappedHeapFile hf = open(f, 2, MappedHeapFile.DEFAULT_SEGMENT_SIZE);
+        HeapPageId pid = new HeapPageId(hf.getId(), 0);
+        HeapPage reader = (HeapPage) hf.readPage(pid);
+        HeapPage writer = (HeapPage) hf.readPage(pid);
+        writer.deleteTuple(writer.getTuple(0));
+        hf.writePage(writer);
+
+        assertFalse(reader.data.isReadOnly());
+        assertEquals(484, reader.getNumEmptySlots());
+        for (Tuple t : new Tuple[]{reader.getTuple(0), reader.getBeforeImage().getTuple(0)}) {
+            assertEquals((int) tuples.get(0).get(0), t.getInt(0));
+            assertEquals((int) tuples.get(0).get(1), t.getInt(1));
+        }
+        assertEquals(485, ((HeapPage) hf.readPage(pid)).getNumEmptySlots());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(MappedHeapFileTest.class);
+    }
+}
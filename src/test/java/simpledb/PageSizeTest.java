@@ -0,0 +1,101 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class PageSizeTest extends SimpleDbTestBase {
+
+    private static final int ROWS = 20000;
+
+    /**
+     * Create a table of two int columns with the given layout and page size.
+     */
+    private HeapFile createTable(PageLayout layout, int pageSize, ArrayList<ArrayList<Integer>> rows)
+            throws Exception {
+        File f = File.createTempFile("pagesize", ".dat");
+        f.deleteOnExit();
+        TupleDesc td = Utility.getTupleDesc(2);
+        HeapFile hf = new HeapFile(f, td, layout, pageSize);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < ROWS; i++) {
+            ArrayList<Integer> row = new ArrayList<Integer>();
+            row.add(i);
+            row.add(-i);
+            rows.add(row);
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i));
+            t.setField(1, new IntField(-i));
+            tuples.add(t);
+        }
+        HeapFileEncoder.convert(tuples.iterator(), hf);
+        return hf;
+    }
+
+    /**
+     * Tables with 4, 16 and 64 KB pages scan the same tuples, reading one
+     * page per page of the file; larger pages mean fewer, larger reads.
+     */
+    @Test public void scan() throws Exception {
+        int lastPages = Integer.MAX_VALUE;
+        for (int pageSize : new int[]{4096, 16384, 65536}) {
+            ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+            HeapFile hf = createTable(PageLayout.HEAP, pageSize, rows);
+            int perPage = (pageSize * 8) / (hf.getTupleDesc().getSize() * 8 + 1);
+            assertEquals((ROWS + perPage - 1) / perPage, hf.numPages());
+            assertTrue(hf.numPages() < lastPages);
+            lastPages = hf.numPages();
+
+            BufferPool bp = Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+            SystemTestUtil.matchTuples(hf, rows);
+            assertEquals(hf.numPages(), bp.getMissCount());
+        }
+    }
+
+    /**
+     * Slotted pages use the page size of their file as well.
+     */
+    @Test public void slotted() throws Exception {
+        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+        HeapFile hf = createTable(PageLayout.SLOTTED, 65536, rows);
+        SystemTestUtil.matchTuples(hf, rows);
+    }
+
+    /**
+     * A page of a file with larger pages takes several frames of the pool.
+     */
+    @Test public void frames() throws Exception {
+        HeapFile hf = createTable(PageLayout.HEAP, 16384, new ArrayList<ArrayList<Integer>>());
+        BufferPool bp = Database.resetBufferPool(8);
+        TransactionId tid = new TransactionId();
+        for (int i = 0; i < 3; i++) {
+            bp.getPage(tid, new HeapPageId(hf.getId(), i), Permissions.READ_ONLY);
+        }
+        // 8 frames of 4 KB hold two 16 KB pages
+        assertEquals(2L * 16384, bp.getMemoryUsage());
+        assertTrue(bp.getScanRing(hf.numPages(), hf.getPageSize()) != null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPageSize() throws Exception {
+        new HeapFile(File.createTempFile("pagesize", ".dat"), Utility.getTupleDesc(2), PageLayout.HEAP, 10000);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PageSizeTest.class);
+    }
+}
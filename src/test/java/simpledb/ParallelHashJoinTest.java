@@ -0,0 +1,177 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class ParallelHashJoinTest extends SimpleDbTestBase {
+
+    /**
+     * The equi-join of JoinTest, in any order.
+     */
+    @Test public void eqJoin() throws Exception {
+        DbIterator scan1 = TestUtil.createTupleList(2, new int[]{1, 2, 3, 4, 5, 6, 7, 8});
+        DbIterator scan2 = TestUtil.createTupleList(3, new int[]{1, 2, 3, 2, 3, 4, 3, 4, 5, 4, 5, 6, 5, 6, 7});
+        DbIterator expected = TestUtil.createTupleList(5, new int[]{1, 2, 1, 2, 3, 3, 4, 3, 4, 5, 5, 6, 5, 6, 7});
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), scan1, scan2, 2);
+        assertEquals(Utility.getTupleDesc(5), op.getTupleDesc());
+        op.open();
+        expected.open();
+        TestUtil.matchAllTuples(expected, op);
+        op.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notEquals() throws Exception {
+        DbIterator scan = TestUtil.createTupleList(1, new int[]{1});
+        new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0), scan, scan);
+    }
+
+    /**
+     * Join two random tables with the given number of threads and check the
+     * result against a nested loops join of the rows, and again after a
+     * rewind.
+     */
+    private void validate(int parallelism) throws Exception {
+        ArrayList<ArrayList<Integer>> t1 = new ArrayList<ArrayList<Integer>>();
+        ArrayList<ArrayList<Integer>> t2 = new ArrayList<ArrayList<Integer>>();
+        HeapFile f1 = SystemTestUtil.createRandomHeapFile(2, 3000, 300, null, t1);
+        HeapFile f2 = SystemTestUtil.createRandomHeapFile(2, 1000, 300, null, t2);
+        ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+        for (ArrayList<Integer> r1 : t1) {
+            for (ArrayList<Integer> r2 : t2) {
+                if (r1.get(1).equals(r2.get(0))) {
+                    ArrayList<Integer> out = new ArrayList<Integer>(r1);
+                    out.addAll(r2);
+                    expected.add(out);
+                }
+            }
+        }
+        // more results than the queue holds, so the tasks have to wait
+        assertTrue(expected.size() > ParallelHashJoin.QUEUE_CAPACITY * ParallelHashJoin.BATCH_SIZE);
+
+        TransactionId tid = new TransactionId();
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 0),
+                new SeqScan(tid, f1.getId(), "a"), new SeqScan(tid, f2.getId(), "b"), parallelism);
+        SystemTestUtil.matchTuples(op, expected);
+
+        op.open();
+        for (int i = 0; i < 10 && op.hasNext(); i++)
+            op.next();
+        op.rewind();
+        int count = 0;
+        while (op.hasNext()) {
+            op.next();
+            count++;
+        }
+        op.close();
+        assertEquals(expected.size(), count);
+    }
+
+    @Test public void singleThread() throws Exception {
+        validate(1);
+    }
+
+    @Test public void fourThreads() throws Exception {
+        validate(4);
+    }
+
+    /**
+     * Closing the join before its results are consumed stops the tasks
+     * waiting on the full queue.
+     */
+    @Test public void closeEarly() throws Exception {
+        HeapFile f = SystemTestUtil.createRandomHeapFile(1, 2000, 4, null, null);
+        TransactionId tid = new TransactionId();
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0),
+                new SeqScan(tid, f.getId(), "a"), new SeqScan(tid, f.getId(), "b"), 2);
+        op.open();
+        assertTrue(op.hasNext());
+        op.next();
+        op.close();
+    }
+
+    /**
+     * A join that is closed and opened again returns its result again.
+     */
+    @Test public void reopen() throws Exception {
+        DbIterator scan1 = TestUtil.createTupleList(2, new int[]{1, 2, 3, 4, 5, 6, 7, 8});
+        DbIterator scan2 = TestUtil.createTupleList(3, new int[]{1, 2, 3, 2, 3, 4, 3, 4, 5, 4, 5, 6, 5, 6, 7});
+        DbIterator expected = TestUtil.createTupleList(5, new int[]{1, 2, 1, 2, 3, 3, 4, 3, 4, 5, 5, 6, 5, 6, 7});
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), scan1, scan2, 2);
+        for (int i = 0; i < 2; i++) {
+            op.open();
+            expected.open();
+            TestUtil.matchAllTuples(expected, op);
+            expected.close();
+            op.close();
+        }
+    }
+
+    /**
+     * Reading or rewinding a join that is not open is an error, not a
+     * NullPointerException.
+     */
+    @Test public void notOpen() throws Exception {
+        DbIterator scan = TestUtil.createTupleList(1, new int[]{1});
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), scan, scan, 2);
+        try {
+            op.next();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        op.open();
+        op.close();
+        try {
+            op.rewind();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * The exception of a failed task is the cause of the DbException that
+     * fetchNext throws.
+     */
+    @Test public void failure() throws Exception {
+        // a tuple wider than the schema of its child, so merging it fails
+        // in the task
+        DbIterator outer = new TupleIterator(Utility.getTupleDesc(1),
+                Arrays.asList(Utility.getHeapTuple(new int[]{1}))) {
+            private static final long serialVersionUID = 1L;
+
+            @Override public Tuple next() {
+                return Utility.getHeapTuple(new int[]{super.next().getInt(0), 1});
+            }
+        };
+        DbIterator inner = TestUtil.createTupleList(1, new int[]{1});
+        ParallelHashJoin op = new ParallelHashJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), outer, inner, 2);
+        op.open();
+        try {
+            op.hasNext();
+            fail("expected DbException");
+        } catch (DbException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        op.close();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ParallelHashJoinTest.class);
+    }
+}
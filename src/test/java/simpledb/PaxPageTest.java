@@ -0,0 +1,147 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class PaxPageTest extends SimpleDbTestBase {
+
+    private HeapFile toPax(HeapFile source) throws Exception {
+        File f = File.createTempFile("pax", ".dat");
+        f.deleteOnExit();
+        f.delete();
+        return HeapFileEncoder.convert(source, f, PageLayout.PAX);
+    }
+
+    /**
+     * A table converted to the PAX layout scans like the original, in as
+     * many pages.
+     */
+    @Test public void convert() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile heap = SystemTestUtil.createRandomHeapFile(3, 1500, null, tuples);
+        HeapFile pax = toPax(heap);
+        assertEquals(PageLayout.PAX, pax.getLayout());
+        assertEquals(heap.numPages(), pax.numPages());
+        SystemTestUtil.matchTuples(pax, tuples);
+    }
+
+    /**
+     * getIntColumn returns one value per tuple in iterator order, with and
+     * without gaps and inserted tuples.
+     */
+    @Test public void getIntColumn() throws Exception {
+        ArrayList<ArrayList<Integer>> tuples = new ArrayList<ArrayList<Integer>>();
+        HeapFile pax = toPax(SystemTestUtil.createRandomHeapFile(3, 100, null, tuples));
+        PaxPage page = (PaxPage) pax.readPage(new HeapPageId(pax.getId(), 0));
+
+        int[] column = page.getIntColumn(1);
+        assertEquals(100, column.length);
+        for (int i = 0; i < column.length; i++)
+            assertEquals((int) tuples.get(i).get(1), column[i]);
+
+        page.deleteTuple(page.getTuple(10));
+        Tuple t = Utility.getHeapTuple(new int[]{7, 8, 9});
+        page.deleteTuple(page.getTuple(50));
+        page.insertTuple(t);
+        assertEquals(new RecordId(page.getId(), 10), t.getRecordId());
+        column = page.getIntColumn(1);
+        assertEquals(99, column.length);
+        assertEquals(8, column[10]);
+        assertEquals((int) tuples.get(51).get(1), column[50]);
+
+        // the same values come back from the page bytes
+        PaxPage copy = new PaxPage(page.getId(), page.getPageData());
+        assertTrue(Arrays.equals(column, copy.getIntColumn(1)));
+        assertTrue(Arrays.equals(page.getPageData(), copy.getPageData()));
+    }
+
+    /**
+     * fill copies runs of slots into a batch with the same rows and record
+     * ids as the iterator, across gaps, inserted tuples and a small batch.
+     */
+    @Test public void fill() throws Exception {
+        HeapFile pax = toPax(SystemTestUtil.createRandomHeapFile(3, 100, null, new ArrayList<ArrayList<Integer>>()));
+        PaxPage page = (PaxPage) pax.readPage(new HeapPageId(pax.getId(), 0));
+        page.deleteTuple(page.getTuple(10));
+        page.deleteTuple(page.getTuple(40));
+        page.insertTuple(Utility.getHeapTuple(new int[]{7, 8, 9}));
+
+        ArrayList<Tuple> expected = new ArrayList<Tuple>();
+        for (Iterator<Tuple> it = page.iterator(); it.hasNext(); )
+            expected.add(it.next());
+        ArrayList<Tuple> actual = new ArrayList<Tuple>();
+        TupleBatch batch = new TupleBatch(page.td, 16);
+        int position = 0;
+        while (position >= 0) {
+            batch.clear();
+            position = page.fill(batch, position, null, null);
+            for (int row = 0; row < batch.size(); row++)
+                actual.add(batch.getTuple(row));
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRecordId(), actual.get(i).getRecordId());
+            assertEquals(expected.get(i).getInt(1), actual.get(i).getInt(1));
+            assertEquals(expected.get(i).getInt(2), actual.get(i).getInt(2));
+        }
+    }
+
+    /**
+     * Pushed down predicates select the same tuples on heap and PAX pages,
+     * whether a tuple was read from the page bytes or inserted.
+     */
+    @Test public void pushdown() throws Exception {
+        HeapFile heap = SystemTestUtil.createRandomHeapFile(3, 200, 20, null, new ArrayList<ArrayList<Integer>>());
+        HeapFile pax = toPax(heap);
+        List<Predicate> predicates = Arrays.asList(
+                new Predicate(0, Predicate.Op.LESS_THAN, new IntField(10)),
+                new Predicate(2, Predicate.Op.NOT_EQUALS, new IntField(3)));
+        Tuple t = Utility.getHeapTuple(new int[]{1, 2, 4});
+        for (HeapFile f : new HeapFile[]{heap, pax}) {
+            TuplePage page = (TuplePage) f.readPage(new HeapPageId(f.getId(), 0));
+            page.deleteTuple(page.iterator().next());
+            page.insertTuple(t);
+
+            ArrayList<Tuple> expected = new ArrayList<Tuple>();
+            for (Iterator<Tuple> it = page.iterator(); it.hasNext(); ) {
+                Tuple u = it.next();
+                if (predicates.get(0).filter(u) && predicates.get(1).filter(u))
+                    expected.add(u);
+            }
+            ArrayList<Tuple> actual = new ArrayList<Tuple>();
+            // a fresh copy, so every tuple is tested on the page bytes
+            TuplePage copy = f.getLayout().createPage((HeapPageId) page.getId(),
+                    ByteBuffer.wrap(page.getPageData()));
+            for (Iterator<Tuple> it = copy.iterator(predicates); it.hasNext(); )
+                actual.add(it.next());
+            assertTrue(expected.size() > 0);
+            assertEquals(expected, actual);
+
+            actual.clear();
+            for (Iterator<Tuple> it = page.iterator(predicates); it.hasNext(); )
+                actual.add(it.next());
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(PaxPageTest.class);
+    }
+}
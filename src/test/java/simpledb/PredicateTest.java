@@ -55,6 +55,49 @@ public class PredicateTest extends SimpleDbTestBase{
     }
   }
 
+  /**
+   * Compiled evaluators agree with Field.compare for every operator, on
+   * boxed and unboxed int fields and on string fields.
+   */
+  @Test public void evaluator() {
+    TupleDesc td = new TupleDesc(new Type[] { Type.INT_TYPE, Type.STRING_TYPE });
+    String[] strings = new String[] { "abc", "b", "bc" };
+    for (Predicate.Op op : Predicate.Op.values()) {
+      for (int i = -1; i <= 1; i++) {
+        for (int k = 0; k < strings.length; k++) {
+          Tuple t = new Tuple(td);
+          t.setInt(0, i);
+          t.setField(1, new StringField(strings[k], Type.STRING_LEN));
+          Tuple boxed = new Tuple(td);
+          boxed.setField(0, new IntField(i));
+          boxed.setField(1, t.getField(1));
+
+          IntField zero = new IntField(0);
+          StringField b = new StringField("b", Type.STRING_LEN);
+          Evaluator ints = new Predicate(0, op, zero).evaluator();
+          Evaluator strs = new Predicate(1, op, b).evaluator();
+          assertTrue(ints.eval(t) == t.getField(0).compare(op, zero));
+          assertTrue(ints.eval(boxed) == t.getField(0).compare(op, zero));
+          assertTrue(strs.eval(t) == t.getField(1).compare(op, b));
+        }
+      }
+    }
+  }
+
+  /**
+   * A conjunction is true if all of its terms are.
+   */
+  @Test public void and() {
+    Evaluator gt = new Predicate(0, Predicate.Op.GREATER_THAN, TestUtil.getField(0)).evaluator();
+    Evaluator lt = new Predicate(0, Predicate.Op.LESS_THAN, TestUtil.getField(5)).evaluator();
+    Evaluator ne = new Predicate(0, Predicate.Op.NOT_EQUALS, TestUtil.getField(3)).evaluator();
+    assertTrue(Evaluator.and().eval(Utility.getHeapTuple(7)));
+    assertTrue(Evaluator.and(gt, lt).eval(Utility.getHeapTuple(3)));
+    assertFalse(Evaluator.and(gt, lt).eval(Utility.getHeapTuple(5)));
+    assertFalse(Evaluator.and(gt, lt, ne).eval(Utility.getHeapTuple(3)));
+    assertTrue(Evaluator.and(gt, lt, ne).eval(Utility.getHeapTuple(4)));
+  }
+
   /**
    * JUnit suite target
    */
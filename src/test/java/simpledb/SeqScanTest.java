@@ -0,0 +1,74 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class SeqScanTest extends SimpleDbTestBase {
+
+    private HeapFile toPax(HeapFile source) throws Exception {
+        File f = File.createTempFile("pax", ".dat");
+        f.deleteOnExit();
+        f.delete();
+        return HeapFileEncoder.convert(source, f, PageLayout.PAX);
+    }
+
+    /**
+     * A scan given columns returns only those fields, in the given order,
+     * from heap and PAX pages.
+     */
+    @Test public void projection() throws Exception {
+        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+        HeapFile heap = SystemTestUtil.createRandomHeapFile(3, 1500, 100, null, rows);
+        ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+        for (ArrayList<Integer> row : rows) {
+            if (row.get(1) < 50)
+                expected.add(new ArrayList<Integer>(Arrays.asList(row.get(2), row.get(0))));
+        }
+        List<Predicate> predicates = Arrays.asList(new Predicate(1, Predicate.Op.LESS_THAN, new IntField(50)));
+        for (HeapFile f : new HeapFile[]{heap, toPax(heap)}) {
+            SeqScan scan = new SeqScan(new TransactionId(), f.getId(), "t", predicates, new int[]{2, 0});
+            assertEquals(2, scan.getTupleDesc().numFields());
+            assertEquals("t." + f.getTupleDesc().getFieldName(2), scan.getTupleDesc().getFieldName(0));
+            SystemTestUtil.matchTuples(scan, expected);
+        }
+    }
+
+    /**
+     * A table without pages scans as zero rows, tuple by tuple and in
+     * batches, without reading a page.
+     */
+    @Test public void emptyTable() throws Exception {
+        File f = File.createTempFile("empty", ".dat");
+        f.deleteOnExit();
+        HeapFile empty = Utility.openHeapFile(2, f);
+        assertEquals(0, empty.numPages());
+
+        SeqScan scan = new SeqScan(new TransactionId(), empty.getId(), "t");
+        scan.open();
+        assertFalse(scan.hasNext());
+        assertNull(scan.nextBatch());
+        scan.rewind();
+        assertFalse(scan.hasNext());
+        scan.close();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SeqScanTest.class);
+    }
+}
@@ -0,0 +1,71 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+
+public class SlotBitmapTest extends SimpleDbTestBase {
+
+    /**
+     * The on-disk format is the byte layout of HeapPage headers.
+     */
+    @Test public void readWrite() {
+        byte[] bytes = new byte[13];
+        bytes[0] = 0x05;   // slots 0 and 2
+        bytes[9] = (byte) 0x80;  // slot 79
+        bytes[12] = (byte) 0xFF; // slots 96 to 99, plus stray bits
+        SlotBitmap bitmap = SlotBitmap.read(ByteBuffer.wrap(bytes), 0, 100);
+        assertTrue(bitmap.get(0));
+        assertFalse(bitmap.get(1));
+        assertTrue(bitmap.get(2));
+        assertTrue(bitmap.get(79));
+        assertTrue(bitmap.get(99));
+        assertEquals(7, bitmap.cardinality());
+
+        ByteBuffer out = ByteBuffer.allocate(13);
+        bitmap.write(out);
+        assertEquals(13, out.position());
+        bytes[12] = 0x0F;
+        assertTrue(Arrays.equals(bytes, out.array()));
+    }
+
+    /**
+     * nextUsed and nextFree cross word boundaries and stop at the last slot.
+     */
+    @Test public void search() {
+        SlotBitmap bitmap = new SlotBitmap(130);
+        assertEquals(-1, bitmap.nextUsed(0));
+        assertEquals(0, bitmap.nextFree(0));
+
+        bitmap.set(3, true);
+        bitmap.set(64, true);
+        bitmap.set(129, true);
+        assertEquals(3, bitmap.nextUsed(0));
+        assertEquals(64, bitmap.nextUsed(4));
+        assertEquals(129, bitmap.nextUsed(65));
+        assertEquals(-1, bitmap.nextUsed(130));
+
+        for (int i = 0; i < 129; i++)
+            bitmap.set(i, true);
+        assertEquals(-1, bitmap.nextFree(0));
+        bitmap.set(70, false);
+        assertEquals(70, bitmap.nextFree(0));
+        assertEquals(129, bitmap.cardinality());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlotBitmapTest.class);
+    }
+}
@@ -0,0 +1,147 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class SlottedPageTest extends SimpleDbTestBase {
+
+    private TupleDesc td;
+    private HeapPageId pid;
+
+    @Before public void addTable() throws Exception {
+        td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE}, new String[]{"id", "name"});
+        HeapFile hf = new HeapFile(tempFile(), td, PageLayout.SLOTTED);
+        Database.getCatalog().addTable(hf, SystemTestUtil.getUUID());
+        pid = new HeapPageId(hf.getId(), 0);
+    }
+
+    private static File tempFile() throws Exception {
+        File f = File.createTempFile("slotted", ".dat");
+        f.deleteOnExit();
+        return f;
+    }
+
+    private Tuple tuple(int id, String name) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(id));
+        t.setField(1, new StringField(name, Type.STRING_LEN));
+        return t;
+    }
+
+    private ArrayList<Tuple> names(int count) {
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < count; i++)
+            tuples.add(tuple(i, "name" + i));
+        return tuples;
+    }
+
+    /**
+     * Tuples survive a round trip through getPageData, with their slots.
+     */
+    @Test public void roundTrip() throws Exception {
+        SlottedPage page = new SlottedPage(pid, HeapPage.createEmptyPageData());
+        assertFalse(page.iterator().hasNext());
+        for (Tuple t : names(10))
+            page.insertTuple(t);
+        page.deleteTuple(page.getTuple(3));
+
+        SlottedPage copy = new SlottedPage(pid, page.getPageData());
+        assertFalse(copy.isSlotUsed(3));
+        assertEquals("name4", ((StringField) copy.getTuple(4).getField(1)).getValue());
+        assertEquals(new RecordId(pid, 9), copy.getTuple(9).getRecordId());
+        int count = 0;
+        Iterator<Tuple> it = copy.iterator();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        assertEquals(9, count);
+        assertTrue(Arrays.equals(page.getPageData(), copy.getPageData()));
+    }
+
+    /**
+     * Records take the size of their data, and freed space is reused.
+     */
+    @Test public void insertUntilFull() throws Exception {
+        SlottedPage page = new SlottedPage(pid, HeapPage.createEmptyPageData());
+        Tuple t = tuple(1, "abcd");
+        // 4 byte int, 4 byte length and 4 characters
+        assertEquals(12, SlottedPage.encodedLength(t));
+        int fit = (BufferPool.PAGE_SIZE - SlottedPage.HEADER_SIZE) / (12 + SlottedPage.ENTRY_SIZE);
+        for (int i = 0; i < fit; i++)
+            page.insertTuple(tuple(i, "abcd"));
+        assertFalse(page.hasRoomFor(t));
+        try {
+            page.insertTuple(t);
+            throw new Exception("page should be full; expected DbException");
+        } catch (DbException e) {
+            // explicitly ignored
+        }
+
+        page.deleteTuple(page.getTuple(5));
+        assertTrue(page.hasRoomFor(t));
+        page.insertTuple(t);
+        assertEquals(new RecordId(pid, 5), t.getRecordId());
+    }
+
+    /**
+     * The same table of short strings takes far fewer pages, and so far
+     * fewer page reads to scan, in the slotted layout.
+     */
+    @Test public void pagesRead() throws Exception {
+        HeapFile heap = new HeapFile(tempFile(), td, PageLayout.HEAP);
+        HeapFile slotted = new HeapFile(tempFile(), td, PageLayout.SLOTTED);
+        Database.getCatalog().addTable(heap, SystemTestUtil.getUUID());
+        Database.getCatalog().addTable(slotted, SystemTestUtil.getUUID());
+        HeapFileEncoder.convert(names(3000).iterator(), heap);
+        HeapFileEncoder.convert(names(3000).iterator(), slotted);
+
+        long heapReads = scan(heap);
+        long slottedReads = scan(slotted);
+        assertEquals(heap.numPages(), heapReads);
+        assertEquals(slotted.numPages(), slottedReads);
+        // 136 byte fixed size tuples against records of about 16 bytes
+        assertTrue(slottedReads * 4 < heapReads);
+    }
+
+    /**
+     * Scan f with a cold buffer pool and return the number of pages read.
+     */
+    private long scan(HeapFile f) throws Exception {
+        BufferPool bp = Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+        ArrayList<Tuple> expected = names(3000);
+        DbFileIterator it = f.iterator(new TransactionId());
+        it.open();
+        int i = 0;
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            assertEquals(expected.get(i).getField(0), t.getField(0));
+            assertEquals(expected.get(i).getField(1), t.getField(1));
+            i++;
+        }
+        it.close();
+        assertEquals(expected.size(), i);
+        return bp.getMissCount();
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SlottedPageTest.class);
+    }
+}
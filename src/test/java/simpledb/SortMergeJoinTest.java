@@ -0,0 +1,114 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class SortMergeJoinTest extends SimpleDbTestBase {
+
+    /**
+     * The equi-join of JoinTest, whose inputs are sorted and have runs of
+     * equal keys on both sides.
+     */
+    @Test public void eqJoin() throws Exception {
+        DbIterator scan1 = TestUtil.createTupleList(2, new int[]{1, 2, 3, 4, 3, 9, 5, 6, 7, 8});
+        DbIterator scan2 = TestUtil.createTupleList(3, new int[]{1, 2, 3, 2, 3, 4, 3, 4, 5, 3, 5, 6, 5, 6, 7});
+        DbIterator expected = TestUtil.createTupleList(5, new int[]{
+                1, 2, 1, 2, 3,
+                3, 4, 3, 4, 5,
+                3, 4, 3, 5, 6,
+                3, 9, 3, 4, 5,
+                3, 9, 3, 5, 6,
+                5, 6, 5, 6, 7});
+        SortMergeJoin op = new SortMergeJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), scan1, scan2);
+        assertEquals(Utility.getTupleDesc(5), op.getTupleDesc());
+        op.open();
+        expected.open();
+        TestUtil.matchAllTuples(expected, op);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notEquals() throws Exception {
+        DbIterator scan = TestUtil.createTupleList(1, new int[]{1});
+        new SortMergeJoin(new JoinPredicate(0, Predicate.Op.LESS_THAN, 0), scan, scan);
+    }
+
+    /**
+     * Children that are already sorted on their join fields are not sorted
+     * again, and the join is sorted on both of its join fields.
+     */
+    @Test public void sortedChildren() throws Exception {
+        DbIterator scan = TestUtil.createTupleList(2, new int[]{1, 2});
+        OrderBy sorted1 = new OrderBy(1, true, scan);
+        OrderBy sorted2 = new OrderBy(0, true, scan);
+        SortMergeJoin op = new SortMergeJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 0), sorted1, sorted2);
+        assertSame(sorted1, op.getChildren()[0]);
+        assertSame(sorted2, op.getChildren()[1]);
+        assertTrue(SortMergeJoin.isSortedOn(op, 1));
+        assertTrue(SortMergeJoin.isSortedOn(op, 2));
+        assertTrue(!SortMergeJoin.isSortedOn(op, 0));
+
+        op = new SortMergeJoin(new JoinPredicate(0, Predicate.Op.EQUALS, 0), sorted1, scan);
+        assertTrue(op.getChildren()[0] instanceof OrderBy);
+        assertTrue(op.getChildren()[0] != sorted1);
+    }
+
+    /**
+     * Join two random tables whose sorts spill to disk and check the result
+     * against a nested loops join of the rows, and again after a rewind.
+     */
+    @Test public void externalSort() throws Exception {
+        ArrayList<ArrayList<Integer>> t1 = new ArrayList<ArrayList<Integer>>();
+        ArrayList<ArrayList<Integer>> t2 = new ArrayList<ArrayList<Integer>>();
+        HeapFile f1 = SystemTestUtil.createRandomHeapFile(2, 2000, 100, null, t1);
+        HeapFile f2 = SystemTestUtil.createRandomHeapFile(2, 1000, 100, null, t2);
+        ArrayList<ArrayList<Integer>> expected = new ArrayList<ArrayList<Integer>>();
+        for (ArrayList<Integer> r1 : t1) {
+            for (ArrayList<Integer> r2 : t2) {
+                if (r1.get(1).equals(r2.get(0))) {
+                    ArrayList<Integer> out = new ArrayList<Integer>(r1);
+                    out.addAll(r2);
+                    expected.add(out);
+                }
+            }
+        }
+
+        TransactionId tid = new TransactionId();
+        long budget = 8 * 100;
+        OrderBy sort1 = new OrderBy(1, true, new SeqScan(tid, f1.getId(), "a"), budget);
+        OrderBy sort2 = new OrderBy(0, true, new SeqScan(tid, f2.getId(), "b"), budget);
+        SortMergeJoin op = new SortMergeJoin(new JoinPredicate(1, Predicate.Op.EQUALS, 0), sort1, sort2);
+        SystemTestUtil.matchTuples(op, expected);
+
+        op.open();
+        assertTrue(sort1.getNumRuns() > 1);
+        assertTrue(sort2.getNumRuns() > 1);
+        while (op.hasNext())
+            op.next();
+        op.rewind();
+        int count = 0;
+        while (op.hasNext()) {
+            op.next();
+            count++;
+        }
+        op.close();
+        assertEquals(expected.size(), count);
+        assertEquals(0, sort1.getNumRuns());
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SortMergeJoinTest.class);
+    }
+}
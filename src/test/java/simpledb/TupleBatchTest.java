@@ -0,0 +1,216 @@
+package simpledb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.JUnit4TestAdapter;
+
+import org.junit.Test;
+
+import simpledb.systemtest.SimpleDbTestBase;
+import simpledb.systemtest.SystemTestUtil;
+
+public class TupleBatchTest extends SimpleDbTestBase {
+
+    /**
+     * Filters narrow the selection, and a projection starts with a copy
+     * of it.
+     */
+    @Test public void filterAndProject() {
+        TupleBatch batch = new TupleBatch(Utility.getTupleDesc(2), 8);
+        for (int i = 0; i < 8; i++)
+            batch.add(i, 10 * i);
+        assertEquals(8, batch.numRows());
+
+        batch.filter(new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(3)));
+        assertEquals(5, batch.numRows());
+        assertEquals(3, batch.row(0));
+        batch.filter(new Predicate(1, Predicate.Op.NOT_EQUALS, new IntField(50)));
+        assertEquals(4, batch.numRows());
+        assertEquals(6, batch.row(2));
+
+        TupleBatch projected = batch.project(new int[]{1}, Utility.getTupleDesc(1));
+        assertEquals(4, projected.numRows());
+        assertEquals(60, projected.getInt(0, projected.row(2)));
+        assertEquals(Utility.getHeapTuple(new int[]{70}), projected.getTuple(projected.row(3)));
+
+        batch.clear();
+        assertEquals(0, batch.numRows());
+    }
+
+    /**
+     * A compiled conjunction selects the same rows as its predicates one by
+     * one, within the current selection.
+     */
+    @Test public void filterEvaluator() {
+        TupleBatch batch = new TupleBatch(Utility.getTupleDesc(2), 8);
+        for (int i = 0; i < 8; i++)
+            batch.add(i, 10 * i);
+        batch.filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(7)));
+        batch.filter(Evaluator.compile(Arrays.asList(
+                new Predicate(0, Predicate.Op.GREATER_THAN_OR_EQ, new IntField(3)),
+                new Predicate(1, Predicate.Op.NOT_EQUALS, new IntField(50)))));
+        assertEquals(3, batch.numRows());
+        assertEquals(3, batch.row(0));
+        assertEquals(4, batch.row(1));
+        assertEquals(6, batch.row(2));
+    }
+
+    /**
+     * Batches of an operator without batch support, through the adapter.
+     */
+    @Test public void adapter() throws Exception {
+        ArrayList<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < TupleBatch.DEFAULT_CAPACITY + 10; i++)
+            tuples.add(Utility.getHeapTuple(new int[]{i}));
+        BatchIterator it = BatchIterator.of(new TupleIterator(Utility.getTupleDesc(1), tuples));
+        it.open();
+        assertEquals(TupleBatch.DEFAULT_CAPACITY, it.nextBatch().numRows());
+        TupleBatch last = it.nextBatch();
+        assertEquals(10, last.numRows());
+        assertEquals(TupleBatch.DEFAULT_CAPACITY + 9, last.getInt(0, last.row(9)));
+        assertNull(it.nextBatch());
+        it.close();
+    }
+
+    /**
+     * A scan, filter, project and aggregate pipeline read in batches gives
+     * the result computed from the rows of the table, both as batches and
+     * as tuples through BatchTupleIterator.
+     */
+    @Test public void pipeline() throws Exception {
+        ArrayList<ArrayList<Integer>> rows = new ArrayList<ArrayList<Integer>>();
+        HeapFile table = SystemTestUtil.createRandomHeapFile(3, 5000, 100, null, rows);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        long total = 0;
+        for (ArrayList<Integer> row : rows) {
+            if (row.get(0) < 50) {
+                expected.merge(row.get(2), row.get(1), Integer::sum);
+                total += row.get(1);
+            }
+        }
+
+        TransactionId tid = new TransactionId();
+        Aggregate sum = new Aggregate(project(tid, table), 0, Aggregator.NO_GROUPING, Aggregator.Op.SUM);
+        sum.open();
+        TupleBatch batch = sum.nextBatch();
+        assertEquals(1, batch.numRows());
+        assertEquals((int) total, batch.getInt(0, batch.row(0)));
+        assertNull(sum.nextBatch());
+        sum.close();
+
+        Aggregate grouped = new Aggregate(project(tid, table), 0, 1, Aggregator.Op.SUM);
+        BatchTupleIterator it = new BatchTupleIterator(grouped);
+        it.open();
+        Map<Integer, Integer> actual = new HashMap<Integer, Integer>();
+        while (it.hasNext()) {
+            Tuple t = it.next();
+            actual.put(t.getInt(0), t.getInt(1));
+        }
+        it.close();
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * A scan read in batches returns the rows, record ids and projected
+     * fields that it returns as tuples, from heap and PAX pages.
+     */
+    @Test public void scanBatches() throws Exception {
+        HeapFile heap = SystemTestUtil.createRandomHeapFile(3, 3000, 100, null, new ArrayList<ArrayList<Integer>>());
+        File f = File.createTempFile("pax", ".dat");
+        f.deleteOnExit();
+        f.delete();
+        HeapFile pax = HeapFileEncoder.convert(heap, f, PageLayout.PAX);
+        List<Predicate> predicates = Arrays.asList(new Predicate(1, Predicate.Op.LESS_THAN, new IntField(50)));
+        for (HeapFile table : new HeapFile[]{heap, pax}) {
+            TransactionId tid = new TransactionId();
+            SeqScan scan = new SeqScan(tid, table.getId(), "t", predicates, new int[]{2, 0});
+            scan.open();
+            ArrayList<Tuple> expected = new ArrayList<Tuple>();
+            while (scan.hasNext())
+                expected.add(scan.next());
+            scan.rewind();
+            ArrayList<Tuple> actual = new ArrayList<Tuple>();
+            TupleBatch batch;
+            while ((batch = scan.nextBatch()) != null) {
+                for (int k = 0; k < batch.numRows(); k++) {
+                    Tuple t = batch.getTuple(batch.row(k));
+                    assertEquals(expected.get(actual.size()).getRecordId(), t.getRecordId());
+                    actual.add(t);
+                }
+            }
+            scan.close();
+            assertTrue(expected.size() > TupleBatch.DEFAULT_CAPACITY);
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * An aggregate that is closed and opened again aggregates its child
+     * once.
+     */
+    @Test public void aggregateReopen() throws Exception {
+        Aggregate count = new Aggregate(groups(), 1, 0, Aggregator.Op.COUNT);
+        for (int i = 0; i < 2; i++) {
+            count.open();
+            TupleBatch batch = count.nextBatch();
+            assertEquals(3, batch.numRows());
+            for (int k = 0; k < batch.numRows(); k++)
+                assertEquals(batch.getInt(0, batch.row(k)), batch.getInt(1, batch.row(k)));
+            assertNull(count.nextBatch());
+            count.close();
+        }
+    }
+
+    /**
+     * A filter over an aggregate narrows the selection of the batches it
+     * is given without changing the result the aggregate replays after a
+     * rewind.
+     */
+    @Test public void rewindUnderFilter() throws Exception {
+        Aggregate count = new Aggregate(groups(), 1, 0, Aggregator.Op.COUNT);
+        Filter filter = new Filter(new Predicate(1, Predicate.Op.GREATER_THAN, new IntField(1)), count);
+        filter.open();
+        for (int i = 0; i < 2; i++) {
+            TupleBatch batch = filter.nextBatch();
+            assertEquals(2, batch.numRows());
+            assertNull(filter.nextBatch());
+            filter.rewind();
+        }
+        TupleBatch all = count.nextBatch();
+        assertEquals(3, all.numRows());
+        filter.close();
+    }
+
+    /**
+     * Groups 1, 2 and 3 of 1, 2 and 3 rows.
+     */
+    private TupleIterator groups() {
+        return TestUtil.createTupleList(2, new int[]{1, 0, 2, 0, 2, 0, 3, 0, 3, 0, 3, 0});
+    }
+
+    /**
+     * SELECT f1, f2 FROM table WHERE f0 < 50, as batch operators.
+     */
+    private Project project(TransactionId tid, HeapFile table) {
+        SeqScan scan = new SeqScan(tid, table.getId(), "t");
+        Filter filter = new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(50)), scan);
+        return new Project(new ArrayList<Integer>(Arrays.asList(1, 2)),
+                new Type[]{Type.INT_TYPE, Type.INT_TYPE}, filter);
+    }
+
+    /**
+     * JUnit suite target
+     */
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TupleBatchTest.class);
+    }
+}
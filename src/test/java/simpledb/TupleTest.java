@@ -36,6 +36,37 @@ public class TupleTest extends SimpleDbTestBase {
         assertEquals(new IntField(37), tup.getField(1));
     }
 
+    /**
+     * Unit test for Tuple.getInt() and Tuple.setInt(): unboxed values read
+     * like boxed ones, and tuples compare equal either way.
+     */
+    @Test
+    public void unboxedInts() {
+        TupleDesc td = Utility.getTupleDesc(3);
+
+        Tuple unboxed = new Tuple(td);
+        unboxed.setInt(0, -1);
+        unboxed.setInt(1, 37);
+        unboxed.setField(2, new IntField(5));
+        Tuple boxed = Utility.getHeapTuple(new int[]{-1, 37, 5});
+
+        assertEquals(new IntField(-1), unboxed.getField(0));
+        assertEquals(37, unboxed.getInt(1));
+        assertEquals(5, unboxed.getInt(2));
+        assertEquals(boxed, unboxed);
+        assertEquals(boxed.hashCode(), unboxed.hashCode());
+        assertEquals(boxed.toString(), unboxed.toString());
+
+        Tuple copy = new Tuple(td);
+        for (int i = 0; i < 3; i++)
+            copy.setField(i, unboxed, i);
+        assertEquals(boxed, copy);
+
+        unboxed.setField(1, new IntField(2));
+        assertEquals(2, unboxed.getInt(1));
+        assertEquals(new IntField(2), unboxed.getField(1));
+    }
+
     /**
      * Unit test for Tuple.getTupleDesc()
      */
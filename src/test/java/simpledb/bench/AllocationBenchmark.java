@@ -0,0 +1,109 @@
+package simpledb.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import simpledb.Database;
+import simpledb.Filter;
+import simpledb.HeapFile;
+import simpledb.IntField;
+import simpledb.Predicate;
+import simpledb.Project;
+import simpledb.SeqScan;
+import simpledb.TransactionId;
+import simpledb.Tuple;
+import simpledb.TupleBatch;
+import simpledb.Type;
+
+/**
+ * Measures the bytes allocated per row, and the time, of a
+ * SeqScan -&gt; Filter -&gt; Project plan that keeps half of the rows and
+ * two of four int columns, and sums the projected values. The consumer
+ * reads the values in three ways:
+ * <ul>
+ * <li><i>getField</i>: Tuple.getField, which boxes every value into an
+ * IntField, as every value was stored when tuples held a Field[];</li>
+ * <li><i>getInt</i>: Tuple.getInt, which reads the unboxed value;</li>
+ * <li><i>batch</i>: nextBatch, reading the int columns of the batches.</li>
+ * </ul>
+ * The BufferPool holds the whole table and is filled before measuring, so
+ * no page is read from the file. Allocations are counted by the JVM for the
+ * thread running the plan (HotSpot's com.sun.management.ThreadMXBean).
+ * The JIT may remove boxes that the consumer drops at once, so the cost of
+ * getField can show up in the time rather than in the bytes.
+ * <p>
+ * Arguments: the number of rows (default 1000000) of the table.
+ */
+public class AllocationBenchmark {
+
+    private static final int MAX_VALUE = 1 << 20;
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int rows = Bench.intArg(args, 0, 1000000);
+        Database.reset();
+        final HeapFile hf = Bench.table(4, rows, MAX_VALUE, 1);
+        Database.resetBufferPool(hf.numPages());
+        Bench.drain(new SeqScan(new TransactionId(), hf.getId(), "t"));
+
+        System.out.printf("SeqScan -> Filter (50%%) -> Project (2 of 4 int columns), %d rows%n", rows);
+        System.out.printf("%-10s %12s %10s %10s%n", "read by", "bytes/row", "ms", "M rows/s");
+        for (final String mode : new String[]{"getField", "getInt", "batch"}) {
+            Bench.Body body = () -> sink += run(plan(hf), mode);
+            long nanos = Bench.median(2, 5, body);
+            long bytes = allocatedBytes(body);
+            System.out.printf("%-10s %12.1f %10.1f %10.2f%n", mode, (double) bytes / rows,
+                    Bench.millis(nanos), Bench.millionsPerSecond(rows, nanos));
+        }
+    }
+
+    private static Project plan(HeapFile hf) {
+        SeqScan scan = new SeqScan(new TransactionId(), hf.getId(), "t");
+        Filter filter = new Filter(new Predicate(0, Predicate.Op.LESS_THAN, new IntField(MAX_VALUE / 2)), scan);
+        return new Project(new ArrayList<Integer>(Arrays.asList(1, 3)), new Type[]{Type.INT_TYPE, Type.INT_TYPE},
+                filter);
+    }
+
+    /**
+     * @return the sum of the projected values
+     */
+    private static long run(Project plan, String mode) throws Exception {
+        long sum = 0;
+        plan.open();
+        if (mode.equals("batch")) {
+            for (TupleBatch b = plan.nextBatch(); b != null; b = plan.nextBatch()) {
+                int[] a = b.getIntColumn(0);
+                int[] c = b.getIntColumn(1);
+                for (int k = 0; k < b.numRows(); k++) {
+                    int row = b.row(k);
+                    sum += a[row] + c[row];
+                }
+            }
+        } else {
+            boolean boxed = mode.equals("getField");
+            while (plan.hasNext()) {
+                Tuple t = plan.next();
+                if (boxed)
+                    sum += ((IntField) t.getField(0)).getValue() + ((IntField) t.getField(1)).getValue();
+                else
+                    sum += t.getInt(0) + t.getInt(1);
+            }
+        }
+        plan.close();
+        return sum;
+    }
+
+    /**
+     * @return the bytes the current thread allocates running body once
+     */
+    private static long allocatedBytes(Bench.Body body) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        body.run();
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+}
@@ -0,0 +1,183 @@
+package simpledb.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import simpledb.Database;
+import simpledb.DbException;
+import simpledb.DbIterator;
+import simpledb.HeapFile;
+import simpledb.HeapFileEncoder;
+import simpledb.TransactionAbortedException;
+import simpledb.Tuple;
+import simpledb.TupleDesc;
+import simpledb.Utility;
+
+/**
+ * Helpers of the timing harnesses in this package. The harnesses are plain
+ * main programs, not JUnit tests, so the build does not run them and they
+ * need no benchmark library. After <code>mvn test-compile</code> run one
+ * with
+ * <pre>
+ * java -cp target/classes:target/test-classes:lib/* simpledb.bench.&lt;Name&gt; [args]
+ * </pre>
+ * Each harness documents its arguments; all of them have defaults that
+ * finish in well under a minute. Times are the median of several runs after
+ * warm-up runs, so the JIT has compiled the code being measured.
+ */
+final class Bench {
+
+    private Bench() {
+    }
+
+    /**
+     * The code being timed.
+     */
+    interface Body {
+        void run() throws Exception;
+    }
+
+    /**
+     * Run body warmup times, then runs times.
+     *
+     * @return the median time of the timed runs in nanoseconds
+     */
+    static long median(int warmup, int runs, Body body) throws Exception {
+        return median(warmup, runs, null, body);
+    }
+
+    /**
+     * Like {@link #median(int, int, Body)}, but run setup, untimed, before
+     * every run of body.
+     *
+     * @param setup run before each run of body, or null
+     */
+    static long median(int warmup, int runs, Body setup, Body body) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            if (setup != null)
+                setup.run();
+            body.run();
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            if (setup != null)
+                setup.run();
+            long start = System.nanoTime();
+            body.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    /**
+     * @return args[i] as an int, or def if there are fewer arguments
+     */
+    static int intArg(String[] args, int i, int def) {
+        return i < args.length ? Integer.parseInt(args[i]) : def;
+    }
+
+    /**
+     * @return a new, empty temporary file, deleted when the JVM exits
+     */
+    static File tempFile(String prefix) throws IOException {
+        File f = File.createTempFile(prefix, ".dat");
+        f.deleteOnExit();
+        return f;
+    }
+
+    /**
+     * Add an empty HeapFile to the catalog and append rows tuples of random
+     * ints from 0 to maxValue - 1 to it, streaming them so that tables
+     * larger than the heap can be built.
+     *
+     * @param hf   the file, which must be empty
+     * @param seed the seed of the values, so that tables built with the
+     *             same seed hold the same tuples
+     * @return hf
+     */
+    static <T extends HeapFile> T fill(T hf, final int rows, final int maxValue, long seed) throws IOException {
+        Database.getCatalog().addTable(hf, hf.getFile().getName());
+        final TupleDesc td = hf.getTupleDesc();
+        final Random random = new Random(seed);
+        HeapFileEncoder.convert(new Iterator<Tuple>() {
+            private int row;
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                row++;
+                Tuple t = new Tuple(td);
+                for (int j = 0; j < td.numFields(); j++)
+                    t.setInt(j, random.nextInt(maxValue));
+                return t;
+            }
+        }, hf);
+        return hf;
+    }
+
+    /**
+     * @return a HeapFile of 4 KB heap pages holding rows random tuples of
+     * the given number of int columns
+     */
+    static HeapFile table(int columns, int rows, int maxValue, long seed) throws IOException {
+        return fill(new HeapFile(tempFile("bench"), Utility.getTupleDesc(columns)), rows, maxValue, seed);
+    }
+
+    /**
+     * Open it, read all of its tuples and close it.
+     *
+     * @return the number of tuples
+     */
+    static long drain(DbIterator it) throws DbException, TransactionAbortedException {
+        long n = 0;
+        it.open();
+        while (it.hasNext()) {
+            it.next();
+            n++;
+        }
+        it.close();
+        return n;
+    }
+
+    /**
+     * Drop the OS page cache, so the next reads of a file go to the disk.
+     * This writes <code>/proc/sys/vm/drop_caches</code>, so it needs Linux
+     * and root, and it slows down everything else running on the machine
+     * for a while.
+     */
+    static void dropCaches() throws Exception {
+        new ProcessBuilder("sync").inheritIO().start().waitFor();
+        try (Writer w = new FileWriter(new File("/proc/sys/vm/drop_caches"))) {
+            w.write("3");
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot drop the OS page cache (needs Linux and root)", e);
+        }
+    }
+
+    /**
+     * @return count per second, in millions, given the time in nanoseconds
+     */
+    static double millionsPerSecond(long count, long nanos) {
+        return count * 1e3 / nanos;
+    }
+
+    /**
+     * @return nanoseconds in milliseconds
+     */
+    static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,107 @@
+package simpledb.bench;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import simpledb.BufferPool;
+import simpledb.Database;
+import simpledb.HeapFile;
+import simpledb.HeapPageId;
+import simpledb.Permissions;
+import simpledb.TransactionId;
+
+/**
+ * Measures the throughput of BufferPool.getPage with 1, 4, 16 and 64
+ * threads that request random pages of one table, in two ways:
+ * <ul>
+ * <li><i>synchronized</i>: every call holds one global lock, as getPage
+ * did when it was a synchronized method over an unsynchronized HashMap;</li>
+ * <li><i>striped</i>: getPage as it is, with hits served from the concurrent
+ * page table and misses locked per stripe.</li>
+ * </ul>
+ * The <i>hit</i> workload uses a pool that holds the whole table; in the
+ * <i>miss</i> workload the pool holds half of it, so about half the calls
+ * read a page and evict another.
+ * <p>
+ * Arguments: the number of pages of the table (default 256) and the
+ * milliseconds each measurement runs (default 1000).
+ */
+public class BufferPoolBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    private static final Object GLOBAL = new Object();
+
+    public static void main(String[] args) throws Exception {
+        int pages = Bench.intArg(args, 0, 256);
+        int millis = Bench.intArg(args, 1, 1000);
+        Database.reset();
+        // 2 int columns fit 504 tuples on a page
+        HeapFile hf = Bench.table(2, pages * 504, 1 << 20, 1);
+
+        System.out.printf("getPage on a table of %d pages, %d cores, M calls/s%n",
+                hf.numPages(), Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %8s %14s %10s %8s%n", "workload", "threads", "synchronized", "striped", "speedup");
+        for (String workload : new String[]{"hit", "miss"}) {
+            int poolPages = workload.equals("hit") ? hf.numPages() : hf.numPages() / 2;
+            for (int threads : THREADS) {
+                double locked = run(hf, poolPages, threads, millis, true);
+                double striped = run(hf, poolPages, threads, millis, false);
+                System.out.printf("%-8s %8d %14.2f %10.2f %7.1fx%n",
+                        workload, threads, locked, striped, striped / locked);
+            }
+        }
+    }
+
+    /**
+     * @return millions of getPage calls per second of all threads together
+     */
+    private static double run(final HeapFile hf, int poolPages, int threads, final int millis,
+                              final boolean global) throws Exception {
+        final BufferPool bp = Database.resetBufferPool(poolPages);
+        final int numPages = hf.numPages();
+        for (int i = 0; i < numPages; i++)
+            bp.getPage(new TransactionId(), new HeapPageId(hf.getId(), i), Permissions.READ_ONLY);
+
+        final AtomicLong calls = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed);
+                TransactionId tid = new TransactionId();
+                long n = 0;
+                try {
+                    start.await();
+                    long deadline = System.nanoTime() + millis * 1000000L;
+                    while (System.nanoTime() < deadline) {
+                        // 64 calls per clock read
+                        for (int i = 0; i < 64; i++) {
+                            HeapPageId pid = new HeapPageId(hf.getId(), random.nextInt(numPages));
+                            if (global) {
+                                synchronized (GLOBAL) {
+                                    bp.getPage(tid, pid, Permissions.READ_ONLY);
+                                }
+                            } else {
+                                bp.getPage(tid, pid, Permissions.READ_ONLY);
+                            }
+                        }
+                        n += 64;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    calls.addAndGet(n);
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return Bench.millionsPerSecond(calls.get(), System.nanoTime() - begin);
+    }
+}
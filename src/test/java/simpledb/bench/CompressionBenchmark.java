@@ -0,0 +1,94 @@
+package simpledb.bench;
+
+import java.io.File;
+
+import com.jcraft.jzlib.JZlib;
+
+import simpledb.BufferPool;
+import simpledb.CompressedHeapFile;
+import simpledb.Database;
+import simpledb.HeapFile;
+import simpledb.PageLayout;
+import simpledb.SeqScan;
+import simpledb.TransactionId;
+import simpledb.Utility;
+
+/**
+ * Writes and scans the same table uncompressed and as a CompressedHeapFile
+ * at levels 0 (stored), 1, 6 and 9, and reports the bytes a scan reads from
+ * disk (the data file plus the page index), the write time and the scan
+ * time. Before every scan the file is closed, which drops the inflated pages
+ * CompressedHeapFile caches, and the BufferPool is reset, so every page is
+ * read and inflated again.
+ * <p>
+ * With a warm OS cache the scan time is mostly the time spent inflating.
+ * Compression pays off when the pages come from the disk: pass
+ * <code>cold</code> to drop the page cache before every scan, see
+ * {@link Bench#dropCaches()}.
+ * <p>
+ * Arguments: the number of rows (default 1000000) of the table, which has 4
+ * int columns, the values are drawn from (default 1000; smaller values
+ * compress better), and optionally <code>cold</code>.
+ */
+public class CompressionBenchmark {
+
+    private static final int[] LEVELS = {JZlib.Z_NO_COMPRESSION, JZlib.Z_BEST_SPEED, 6, JZlib.Z_BEST_COMPRESSION};
+
+    public static void main(String[] args) throws Exception {
+        int rows = Bench.intArg(args, 0, 1000000);
+        int maxValue = Bench.intArg(args, 1, 1000);
+        boolean cold = args.length > 2 && args[2].equals("cold");
+        Database.reset();
+
+        System.out.printf("%d rows of 4 int columns from 0 to %d, %s OS cache%n",
+                rows, maxValue - 1, cold ? "cold" : "warm");
+        System.out.printf("%-12s %10s %7s %10s %10s %10s%n",
+                "file", "I/O KB", "ratio", "write ms", "scan ms", "M rows/s");
+        long uncompressed = 0;
+        for (int i = -1; i < LEVELS.length; i++) {
+            final int level = i < 0 ? 0 : LEVELS[i];
+            final boolean compressed = i >= 0;
+            final HeapFile[] table = new HeapFile[1];
+            long write = Bench.median(1, 3, () -> {
+                if (table[0] != null)
+                    delete(table[0]);
+            }, () -> table[0] = write(compressed, level, rows, maxValue));
+            final HeapFile hf = table[0];
+
+            long bytes;
+            if (compressed) {
+                CompressedHeapFile chf = (CompressedHeapFile) hf;
+                bytes = chf.getCompressedSize() + chf.getIndexFile().length();
+            } else {
+                bytes = (long) hf.numPages() * hf.getPageSize();
+                uncompressed = bytes;
+            }
+            long scan = Bench.median(1, 5, () -> {
+                hf.close();
+                Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+                if (cold)
+                    Bench.dropCaches();
+            }, () -> Bench.drain(new SeqScan(new TransactionId(), hf.getId(), "t")));
+
+            System.out.printf("%-12s %10d %6.2fx %10.1f %10.1f %10.2f%n",
+                    compressed ? "level " + level : "uncompressed", bytes / 1024, (double) uncompressed / bytes,
+                    Bench.millis(write), Bench.millis(scan), Bench.millionsPerSecond(rows, scan));
+            delete(hf);
+        }
+    }
+
+    private static HeapFile write(boolean compressed, int level, int rows, int maxValue) throws Exception {
+        File f = Bench.tempFile("compression");
+        HeapFile hf = compressed
+                ? new CompressedHeapFile(f, Utility.getTupleDesc(4), PageLayout.HEAP, BufferPool.PAGE_SIZE, level)
+                : new HeapFile(f, Utility.getTupleDesc(4));
+        return Bench.fill(hf, rows, maxValue, 1);
+    }
+
+    private static void delete(HeapFile hf) throws Exception {
+        hf.close();
+        hf.getFile().delete();
+        if (hf instanceof CompressedHeapFile)
+            ((CompressedHeapFile) hf).getIndexFile().delete();
+    }
+}
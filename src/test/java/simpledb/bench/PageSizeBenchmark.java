@@ -0,0 +1,58 @@
+package simpledb.bench;
+
+import simpledb.BufferPool;
+import simpledb.Database;
+import simpledb.HeapFile;
+import simpledb.PageLayout;
+import simpledb.SeqScan;
+import simpledb.TransactionId;
+import simpledb.TupleBatch;
+import simpledb.Utility;
+
+/**
+ * Scans the same table stored in pages of 4, 16 and 64 KB and reports the
+ * scan throughput at each page size, through next() and through
+ * nextBatch(). The BufferPool is reset before every scan, so every page is
+ * read from the file (the OS cache is warm).
+ * <p>
+ * Arguments: the number of rows (default 2000000) of the table, which has
+ * 4 int columns.
+ */
+public class PageSizeBenchmark {
+
+    private static final int[] PAGE_SIZES = {4096, 16384, 65536};
+
+    public static void main(String[] args) throws Exception {
+        int rows = Bench.intArg(args, 0, 2000000);
+        Database.reset();
+
+        System.out.printf("%d rows of 4 int columns%n", rows);
+        System.out.printf("%9s %7s %10s %10s %8s %10s %10s%n",
+                "page size", "pages", "next() ms", "M rows/s", "MB/s", "batch ms", "M rows/s");
+        for (int pageSize : PAGE_SIZES) {
+            final HeapFile hf = Bench.fill(new HeapFile(Bench.tempFile("pages"), Utility.getTupleDesc(4),
+                    PageLayout.HEAP, pageSize), rows, 1 << 20, 1);
+            long tuples = Bench.median(2, 5, PageSizeBenchmark::resetPool, () -> {
+                Bench.drain(new SeqScan(new TransactionId(), hf.getId(), "t"));
+            });
+            long batches = Bench.median(2, 5, PageSizeBenchmark::resetPool, () -> {
+                SeqScan scan = new SeqScan(new TransactionId(), hf.getId(), "t");
+                scan.open();
+                for (TupleBatch b = scan.nextBatch(); b != null; b = scan.nextBatch())
+                    ;
+                scan.close();
+            });
+            long bytes = (long) hf.numPages() * pageSize;
+            System.out.printf("%7d K %7d %10.1f %10.2f %8.1f %10.1f %10.2f%n",
+                    pageSize / 1024, hf.numPages(),
+                    Bench.millis(tuples), Bench.millionsPerSecond(rows, tuples),
+                    bytes / (tuples / 1e9) / (1 << 20),
+                    Bench.millis(batches), Bench.millionsPerSecond(rows, batches));
+            hf.close();
+        }
+    }
+
+    private static void resetPool() {
+        Database.resetBufferPool(BufferPool.DEFAULT_PAGES);
+    }
+}
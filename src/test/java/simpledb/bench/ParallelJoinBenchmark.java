@@ -0,0 +1,77 @@
+package simpledb.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import simpledb.Database;
+import simpledb.DbIterator;
+import simpledb.HashJoin;
+import simpledb.JoinPredicate;
+import simpledb.ParallelHashJoin;
+import simpledb.Predicate;
+import simpledb.Tuple;
+import simpledb.TupleDesc;
+import simpledb.TupleIterator;
+import simpledb.Utility;
+
+/**
+ * Measures how ParallelHashJoin scales with its parallelism, from 1 to 16
+ * threads, against the single threaded HashJoin, on a synthetic join of a
+ * probe table with a build table whose keys are unique, so every probe row
+ * has exactly one match. Both tables are held in memory and the HashJoin
+ * gets a memory budget that holds its build side, so neither join reads
+ * or writes files; the times include partitioning and draining the results.
+ * <p>
+ * Arguments: the number of probe rows (default 1000000) and build rows
+ * (default 100000). The 10M x 1M join needs a heap of several GB, e.g.
+ * <code>java -Xmx8g ... simpledb.bench.ParallelJoinBenchmark 10000000 1000000</code>.
+ */
+public class ParallelJoinBenchmark {
+
+    private static final int[] PARALLELISM = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        int probeRows = Bench.intArg(args, 0, 1000000);
+        int buildRows = Bench.intArg(args, 1, 100000);
+        Database.reset();
+        final TupleDesc td = Utility.getTupleDesc(2);
+        final List<Tuple> probe = new ArrayList<Tuple>(probeRows);
+        final List<Tuple> build = new ArrayList<Tuple>(buildRows);
+        Random random = new Random(1);
+        for (int i = 0; i < probeRows; i++)
+            probe.add(tuple(td, random.nextInt(buildRows), i));
+        for (int i = 0; i < buildRows; i++)
+            build.add(tuple(td, i, i));
+        final JoinPredicate p = new JoinPredicate(0, Predicate.Op.EQUALS, 0);
+
+        System.out.printf("%d x %d rows, %d cores%n", probeRows, buildRows,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-16s %10s %10s %8s%n", "join", "ms", "M rows/s", "speedup");
+        long single = Bench.median(1, 3, () -> Bench.drain(
+                new HashJoin(p, scan(td, probe), scan(td, build), Long.MAX_VALUE)));
+        print("HashJoin", probeRows, single, single);
+        for (final int threads : PARALLELISM) {
+            // one join, so the later runs reuse its pool
+            final ParallelHashJoin join = new ParallelHashJoin(p, scan(td, probe), scan(td, build), threads);
+            long parallel = Bench.median(1, 3, () -> Bench.drain(join));
+            print("parallel, " + threads, probeRows, parallel, single);
+        }
+    }
+
+    private static Tuple tuple(TupleDesc td, int key, int payload) {
+        Tuple t = new Tuple(td);
+        t.setInt(0, key);
+        t.setInt(1, payload);
+        return t;
+    }
+
+    private static DbIterator scan(TupleDesc td, List<Tuple> tuples) {
+        return new TupleIterator(td, tuples);
+    }
+
+    private static void print(String join, int rows, long nanos, long single) {
+        System.out.printf("%-16s %10.1f %10.2f %7.1fx%n", join, Bench.millis(nanos),
+                Bench.millionsPerSecond(rows, nanos), (double) single / nanos);
+    }
+}
@@ -0,0 +1,102 @@
+package simpledb.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import simpledb.Database;
+import simpledb.Evaluator;
+import simpledb.HeapFile;
+import simpledb.IntField;
+import simpledb.Predicate;
+import simpledb.SeqScan;
+import simpledb.TransactionId;
+import simpledb.Tuple;
+import simpledb.TupleBatch;
+
+/**
+ * Measures how fast a predicate <code>a &lt; c</code> is tested on rows held
+ * in memory, with c chosen so that 0.1%, 10% and 90% of the rows pass, in
+ * four ways:
+ * <ul>
+ * <li><i>interpreted</i>: Field.compare(Op, Field) on each tuple, which
+ * switches on the operator and casts the operand, as Predicate.filter did
+ * before predicates were compiled;</li>
+ * <li><i>compiled</i>: the Evaluator of Evaluator.compile on each tuple, as
+ * Filter.next() does;</li>
+ * <li><i>batch compiled</i>: TupleBatch.filter(Evaluator) on batches, as
+ * Filter.nextBatch() does;</li>
+ * <li><i>batch loop</i>: TupleBatch.filter(Predicate), a loop per operator
+ * over the int column, for comparison.</li>
+ * </ul>
+ * <p>
+ * Arguments: the number of rows (default 1000000).
+ */
+public class PredicateBenchmark {
+
+    private static final int MAX_VALUE = 1000000;
+
+    private static final double[] SELECTIVITIES = {0.001, 0.1, 0.9};
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        int rows = Bench.intArg(args, 0, 1000000);
+        Database.reset();
+        HeapFile hf = Bench.table(4, rows, MAX_VALUE, 1);
+
+        final List<Tuple> tuples = new ArrayList<Tuple>(rows);
+        final List<TupleBatch> batches = new ArrayList<TupleBatch>();
+        SeqScan scan = new SeqScan(new TransactionId(), hf.getId(), "t");
+        scan.open();
+        while (scan.hasNext()) {
+            Tuple t = scan.next();
+            tuples.add(t);
+            if (batches.isEmpty() || batches.get(batches.size() - 1).isFull())
+                batches.add(new TupleBatch(hf.getTupleDesc()));
+            batches.get(batches.size() - 1).add(t);
+        }
+        scan.close();
+
+        System.out.printf("a < c on %d rows in memory, M rows/s%n", rows);
+        System.out.printf("%11s %12s %10s %15s %11s%n",
+                "selectivity", "interpreted", "compiled", "batch compiled", "batch loop");
+        for (double selectivity : SELECTIVITIES) {
+            final Predicate p = new Predicate(0, Predicate.Op.LESS_THAN,
+                    new IntField((int) (MAX_VALUE * selectivity)));
+            final Evaluator e = Evaluator.compile(p);
+            long interpreted = Bench.median(3, 5, () -> {
+                long n = 0;
+                for (Tuple t : tuples)
+                    if (t.getField(p.getField()).compare(p.getOp(), p.getOperand()))
+                        n++;
+                sink += n;
+            });
+            long compiled = Bench.median(3, 5, () -> {
+                long n = 0;
+                for (Tuple t : tuples)
+                    if (e.eval(t))
+                        n++;
+                sink += n;
+            });
+            long batchCompiled = Bench.median(3, 5, () -> {
+                for (TupleBatch b : batches) {
+                    // filter a copy of the selection, so every run starts
+                    // with all rows
+                    TupleBatch d = b.duplicate();
+                    d.filter(e);
+                    sink += d.numRows();
+                }
+            });
+            long batchLoop = Bench.median(3, 5, () -> {
+                for (TupleBatch b : batches) {
+                    TupleBatch d = b.duplicate();
+                    d.filter(p);
+                    sink += d.numRows();
+                }
+            });
+            System.out.printf("%10.1f%% %12.1f %10.1f %15.1f %11.1f%n", selectivity * 100,
+                    Bench.millionsPerSecond(rows, interpreted), Bench.millionsPerSecond(rows, compiled),
+                    Bench.millionsPerSecond(rows, batchCompiled), Bench.millionsPerSecond(rows, batchLoop));
+        }
+    }
+}
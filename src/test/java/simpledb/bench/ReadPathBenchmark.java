@@ -0,0 +1,112 @@
+package simpledb.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import simpledb.Database;
+import simpledb.HeapFile;
+import simpledb.HeapPageId;
+
+/**
+ * Compares the two ways HeapFile.readPage has read a page, in pages per
+ * second:
+ * <ul>
+ * <li><i>RandomAccessFile</i>: open the file, seek, read the page and close
+ * it again for every page, as readPage did before it kept a channel;</li>
+ * <li><i>FileChannel</i>: HeapFile.readPage as it is, a positional read on
+ * the channel the file keeps open.</li>
+ * </ul>
+ * Both decode the bytes into a page the same way, and both are run by 1
+ * and by 4 threads reading the pages of the table in a random order.
+ * <p>
+ * With a warm OS cache the table is read from the page cache, so the
+ * difference is the cost of the system calls. Pass <code>cold</code> to
+ * drop the page cache before every run, see {@link Bench#dropCaches()}.
+ * <p>
+ * Arguments: the number of pages of the table (default 4096, 16 MB) and
+ * optionally <code>cold</code>.
+ */
+public class ReadPathBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = Bench.intArg(args, 0, 4096);
+        boolean cold = args.length > 1 && args[1].equals("cold");
+        Database.reset();
+        // 2 int columns fit 504 tuples on a page
+        final HeapFile hf = Bench.table(2, pages * 504, 1 << 20, 1);
+        final int[] order = shuffled(hf.numPages());
+        Bench.Body setup = cold ? Bench::dropCaches : null;
+
+        System.out.printf("%d pages of %d bytes, %s OS cache, K pages/s%n",
+                order.length, hf.getPageSize(), cold ? "cold" : "warm");
+        System.out.printf("%8s %18s %12s %8s%n", "threads", "RandomAccessFile", "FileChannel", "speedup");
+        for (int threads : new int[]{1, 4}) {
+            final int n = threads;
+            long raf = Bench.median(1, 5, setup, () -> readAll(hf, order, n, false));
+            long channel = Bench.median(1, 5, setup, () -> readAll(hf, order, n, true));
+            System.out.printf("%8d %18.1f %12.1f %7.1fx%n", threads,
+                    Bench.millionsPerSecond(order.length, raf) * 1000,
+                    Bench.millionsPerSecond(order.length, channel) * 1000,
+                    (double) raf / channel);
+        }
+    }
+
+    /**
+     * Read the pages in the given order, split among threads.
+     */
+    private static void readAll(final HeapFile hf, final int[] order, int threads, final boolean channel)
+            throws Exception {
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            final int step = threads;
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = first; i < order.length; i += step) {
+                        HeapPageId pid = new HeapPageId(hf.getId(), order[i]);
+                        if (channel)
+                            hf.readPage(pid);
+                        else
+                            readWithRandomAccessFile(hf, pid);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+    }
+
+    /**
+     * The page read of HeapFile before it kept a FileChannel.
+     */
+    private static void readWithRandomAccessFile(HeapFile hf, HeapPageId pid) throws IOException {
+        byte[] data = new byte[hf.getPageSize()];
+        RandomAccessFile raf = new RandomAccessFile(hf.getFile(), "r");
+        try {
+            raf.seek((long) pid.pageNumber() * hf.getPageSize());
+            raf.readFully(data);
+        } finally {
+            raf.close();
+        }
+        hf.getLayout().createPage(pid, ByteBuffer.wrap(data));
+    }
+
+    private static int[] shuffled(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        Random random = new Random(1);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+}